@@ -0,0 +1,209 @@
+package enigma;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** Allocation budgets for the paths taken once per message character.
+ *  Each test runs a path until it reaches its steady state, then counts
+ *  the bytes the running thread allocates over many more runs, and fails
+ *  if they average more than the path's budget per character.  Most
+ *  budgets are zero: a per-character allocation creeping into
+ *  conversion, stepping or output fails the build rather than showing up
+ *  later as GC time.
+ *  @author Rayan Taghizadeh
+ */
+public class AllocationTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Source of this thread's allocation counter. */
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Number of measured (and of warm-up) runs of each path. */
+    private static final int RUNS = 200;
+
+    /** Characters converted by each run. */
+    private static final int CHARS = 1 << 12;
+
+    /** Run OP RUNS times to warm it up, then RUNS times more, and check
+     *  that the measured runs, each converting CHARS characters, allocate
+     *  no more than BUDGET bytes per character on average.  WHAT
+     *  names the path.  Where the JVM does not count allocation, there
+     *  is nothing to check. */
+    private static void checkBudget(String what, double budget,
+                                    Runnable op) {
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        long overhead = measure(() -> { });
+        for (int k = 0; k < RUNS; k += 1) {
+            op.run();
+        }
+        long bytes = measure(op) - overhead;
+        double perChar = (double) bytes / RUNS / CHARS;
+        assertTrue(TestUtils.msg(what, "%.3f bytes per character, budget "
+                                 + "%.3f", perChar, budget),
+                   perChar <= budget);
+    }
+
+    /** Return the bytes this thread allocates while running OP RUNS
+     *  times. */
+    private static long measure(Runnable op) {
+        long start = THREADS.getCurrentThreadAllocatedBytes();
+        for (int k = 0; k < RUNS; k += 1) {
+            op.run();
+        }
+        return THREADS.getCurrentThreadAllocatedBytes() - start;
+    }
+
+    /** Return a five-slot naval machine over ALPHA, the upper-case
+     *  alphabet or the byte alphabet, with a plugboard. */
+    private static Machine machine(Alphabet alpha) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        if (alpha == ByteStream.ALPHABET) {
+            Random random = new Random(24);
+            for (String name : new String[] { "I", "II", "III", "Beta" }) {
+                int[] forward = new int[ByteStream.SIZE];
+                for (int i = 0; i < forward.length; i += 1) {
+                    int j = random.nextInt(i + 1);
+                    forward[i] = forward[j];
+                    forward[j] = i;
+                }
+                Permutation perm = new Permutation(forward, alpha);
+                rotors.add(name.equals("Beta") ? new FixedRotor(name, perm)
+                           : new MovingRotor(name, perm,
+                                             ByteStream.decode("0080")));
+            }
+            int[] reflect = new int[ByteStream.SIZE];
+            for (int i = 0; i < reflect.length; i += 1) {
+                reflect[i] = i ^ 1;
+            }
+            rotors.add(new Reflector("B", new Permutation(reflect, alpha)));
+            Machine mach = new Machine(alpha, 5, 3, rotors);
+            Main.setUp(mach, "* B Beta III II I 00FE7F01 (4161)");
+            return mach;
+        }
+        Machine mach = TestUtils.navalMachine(5, 3, "I:QEV", "II:QEV",
+                                              "III:QEV", "Beta", "B");
+        Main.setUp(mach, "* B Beta III II I AXLE (AB) (CD) (YZ)");
+        return mach;
+    }
+
+    /** Return CHARS random upper-case letters. */
+    private static char[] letters() {
+        Random random = new Random(CHARS);
+        char[] text = new char[CHARS];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = (char) ('A' + random.nextInt(26));
+        }
+        return text;
+    }
+
+    @Test
+    public void testConvertChars() {
+        Machine mach = machine(TestUtils.UPPER);
+        char[] in = letters(), out = new char[CHARS];
+        checkBudget("convert(char[])", 0,
+                    () -> mach.convert(in, 0, out, 0, CHARS));
+        CharBuffer inBuf = CharBuffer.wrap(in),
+            outBuf = CharBuffer.allocate(CHARS);
+        checkBudget("convert(CharBuffer)", 0, () -> {
+            mach.convert(inBuf.clear(), outBuf.clear());
+        });
+        int[] indices = new int[CHARS];
+        checkBudget("convert(int[])", 0,
+                    () -> mach.convert(indices, 0, indices, 0, CHARS));
+    }
+
+    @Test
+    public void testConvertBytes() {
+        Machine mach = machine(ByteStream.ALPHABET);
+        ByteBuffer in = ByteBuffer.allocateDirect(CHARS),
+            out = ByteBuffer.allocateDirect(CHARS);
+        checkBudget("convert(ByteBuffer)", 0, () -> {
+            mach.convert(in.clear(), out.clear());
+        });
+    }
+
+    @Test
+    public void testConvertString() {
+        Machine mach = machine(TestUtils.UPPER);
+        String msg = new String(letters());
+        checkBudget("convert(String)", 2 * Character.BYTES,
+                    () -> mach.convert(msg));
+    }
+
+    @Test
+    public void testStep() {
+        Machine mach = machine(TestUtils.UPPER);
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (int i = 0; i < mach.numRotors(); i += 1) {
+            rotors.add(mach.getRotor(i));
+        }
+        Stepper stepper = new Stepper(rotors, TestUtils.UPPER.size());
+        int[] positions = mach.positions();
+        checkBudget("step(int[])", 0, () -> {
+            for (int i = 0; i < CHARS; i += 1) {
+                stepper.step(positions);
+            }
+        });
+        long[] word = { stepper.pack(positions) };
+        checkBudget("step(long)", 0, () -> {
+            for (int i = 0; i < CHARS; i += 1) {
+                word[0] = stepper.step(word[0]);
+            }
+        });
+    }
+
+    @Test
+    public void testGroupWriter() {
+        char[] text = letters();
+        text[7] = '\u00e4';
+        text[8] = '\u20ac';
+        for (String name : new String[] { "US-ASCII", "UTF-8" }) {
+            GroupWriter out =
+                GroupWriter.forStream(OutputStream.nullOutputStream(),
+                                      Charset.forName(name));
+            checkBudget("GroupWriter " + name, 0, () -> {
+                for (int i = 0; i < CHARS; i += 64) {
+                    out.write(text, i, 64);
+                    out.endLine();
+                }
+                out.flush();
+            });
+        }
+    }
+
+    @Test
+    public void testTranscriber() {
+        Machine mach = machine(TestUtils.UPPER);
+        char[] text = letters();
+        for (int i = 50; i < CHARS; i += 51) {
+            text[i] = i % 3 == 0 ? ' ' : '\n';
+        }
+        GroupWriter out =
+            GroupWriter.forStream(OutputStream.nullOutputStream(),
+                                  StandardCharsets.US_ASCII);
+        Transcriber transcriber =
+            new Transcriber(mach, s -> Main.setUp(mach, s), out);
+        char[] settings = "* B Beta III II I AXLE\n".toCharArray();
+        transcriber.feed(settings, 0, settings.length);
+        checkBudget("Transcriber", 0,
+                    () -> transcriber.feed(text, 0, CHARS));
+    }
+}
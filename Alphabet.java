@@ -1,17 +1,77 @@
 package enigma;
 
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
  *  @author Rayan Taghizadeh
  */
 class Alphabet {
     /** track of characters. */
-    private String chars1;
+    private char[] _chars;
+
+    /** Lowest character code in the alphabet. */
+    private char _low;
+
+    /** Direct-indexed table for dense alphabets: _dense[CH - _low] is the
+     *  index of CH, or -1 if CH is absent.  Null for sparse alphabets. */
+    private int[] _dense;
+
+    /** Open-addressed hash keys for sparse alphabets. */
+    private char[] _keys;
+
+    /** Indices matching _keys, or -1 for an empty slot. */
+    private int[] _values;
+
+    /** Mask for reducing hashes to slots of _keys. */
+    private int _mask;
+
+    /** Largest ratio of character span to alphabet size for which a
+     *  direct-indexed table is used. */
+    private static final int DENSE_RATIO = 4;
+
+    /** Spans at most this wide are always direct-indexed. */
+    private static final int DENSE_MIN_SPAN = 1024;
 
     /** A new alphabet containing CHARS. The K-th character has index
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
-        chars1 = chars;
+        _chars = chars.toCharArray();
+        char low = Character.MAX_VALUE, high = Character.MIN_VALUE;
+        for (char ch : _chars) {
+            low = (char) Math.min(low, ch);
+            high = (char) Math.max(high, ch);
+        }
+        int span = _chars.length == 0 ? 0 : high - low + 1;
+        _low = _chars.length == 0 ? 0 : low;
+        if (span <= Math.max(DENSE_MIN_SPAN, DENSE_RATIO * _chars.length)) {
+            _dense = new int[span];
+            Arrays.fill(_dense, -1);
+        } else {
+            int capacity = Integer.highestOneBit(2 * _chars.length - 1) << 1;
+            _keys = new char[capacity];
+            _values = new int[capacity];
+            _mask = capacity - 1;
+            Arrays.fill(_values, -1);
+        }
+        for (int i = 0; i < _chars.length; i++) {
+            if (indexOf(_chars[i]) >= 0) {
+                throw error("duplicate character '%c' in alphabet",
+                            _chars[i]);
+            }
+            if (_dense != null) {
+                _dense[_chars[i] - _low] = i;
+            } else {
+                int h = hash(_chars[i]);
+                while (_values[h] >= 0) {
+                    h = (h + 1) & _mask;
+                }
+                _keys[h] = _chars[i];
+                _values[h] = i;
+            }
+        }
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -21,37 +81,47 @@ class Alphabet {
 
     /** Returns the size of the alphabet. */
     int size() {
-        return chars1.length();
+        return _chars.length;
     }
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        for (int i = 0; i < size(); i++) {
-            if (chars1.charAt(i) == ch) {
-                return true;
-            }
-        }
-        return false;
+        return indexOf(ch) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
      *  0 <= INDEX < size(). */
     char toChar(int index) {
-        return chars1.charAt(index);
+        return _chars[index];
     }
 
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
-        int truth = 0;
-        for (int i = 0; i < size(); i++) {
-            if (chars1.charAt(i) == ch) {
-                truth = i;
-                break;
+        int index = indexOf(ch);
+        if (index < 0) {
+            throw error("character '%c' is not in the alphabet", ch);
+        }
+        return index;
+    }
+
+    /** Returns the index of CH, or -1 if CH is not in the alphabet. */
+    private int indexOf(char ch) {
+        if (_dense != null) {
+            int k = ch - _low;
+            return k >= 0 && k < _dense.length ? _dense[k] : -1;
+        }
+        for (int h = hash(ch); _values[h] >= 0; h = (h + 1) & _mask) {
+            if (_keys[h] == ch) {
+                return _values[h];
             }
         }
-        return truth;
+        return -1;
     }
 
+    /** Returns the home slot of CH in _keys. */
+    private int hash(char ch) {
+        return (ch * 0x9E3779B1 >>> 16) & _mask;
+    }
 
 }
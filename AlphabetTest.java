@@ -38,4 +38,40 @@ public class AlphabetTest {
         }
         assertFalse(test1.contains('A'));
     }
+
+    @Test(expected = EnigmaException.class)
+    public void unknownCharTest() {
+        test.toInt('Z');
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void duplicateCharTest() {
+        new Alphabet("ABCA");
+    }
+
+    @Test
+    public void sparseTest() {
+        String sparse = "A\u0100\u2603\u4e2d\uffef!";
+        Alphabet alpha = new Alphabet(sparse);
+        assertEquals(sparse.length(), alpha.size());
+        for (int i = 0; i < sparse.length(); i++) {
+            assertEquals(i, alpha.toInt(sparse.charAt(i)));
+            assertEquals(sparse.charAt(i), alpha.toChar(i));
+        }
+        assertFalse(alpha.contains('B'));
+        assertFalse(alpha.contains('\u4e2e'));
+    }
+
+    @Test
+    public void largeTest() {
+        StringBuilder chars = new StringBuilder();
+        for (char c = '\u0400'; c < '\uf000'; c += 1) {
+            chars.append(c);
+        }
+        Alphabet alpha = new Alphabet(chars.toString());
+        assertEquals(chars.length(), alpha.size());
+        assertEquals(0, alpha.toInt('\u0400'));
+        assertEquals(chars.length() - 1, alpha.toInt('\uefff'));
+        assertFalse(alpha.contains('A'));
+    }
 }
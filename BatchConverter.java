@@ -0,0 +1,62 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** Converts batches of independent messages, each with a machine of its
+ *  own.  This implementation simply converts one message after another;
+ *  newConverter() returns a faster one that converts many messages at
+ *  once in the lanes of SIMD vectors, when the JVM provides the
+ *  incubating Vector API (java --add-modules jdk.incubator.vector).
+ *  @author Rayan Taghizadeh
+ */
+class BatchConverter {
+
+    /** Return the fastest batch converter available. */
+    static BatchConverter newConverter() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector")
+            .isPresent()) {
+            try {
+                return (BatchConverter)
+                    Class.forName("enigma.VectorBatchConverter")
+                    .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError excp) {
+                /* Fall through to the scalar converter. */
+            }
+        }
+        return new BatchConverter();
+    }
+
+    /** Return the number of messages I convert at once. */
+    int lanes() {
+        return 1;
+    }
+
+    /** Return the conversions of MESSAGES, where MESSAGES[i] is converted
+     *  by MACHINES[i] exactly as MACHINES[i].convert(MESSAGES[i]) would,
+     *  leaving each machine's rotors in the corresponding final settings.
+     *  The machines must all have the same alphabet size and number of
+     *  slots.  Their tracers are not used. */
+    String[] convert(Machine[] machines, String[] messages) {
+        check(machines, messages);
+        String[] result = new String[messages.length];
+        for (int i = 0; i < messages.length; i += 1) {
+            result[i] = machines[i].convert(messages[i]);
+        }
+        return result;
+    }
+
+    /** Check that MACHINES and MESSAGES form a valid batch. */
+    static void check(Machine[] machines, String[] messages) {
+        if (machines.length != messages.length) {
+            throw error("batch has %d machines for %d messages",
+                        machines.length, messages.length);
+        }
+        for (Machine machine : machines) {
+            if (machine.alphabet().size() != machines[0].alphabet().size()
+                || machine.numRotors() != machines[0].numRotors()) {
+                throw error("machines in a batch must have the same "
+                            + "alphabet size and number of slots");
+            }
+        }
+    }
+}
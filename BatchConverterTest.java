@@ -0,0 +1,153 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the BatchConverter classes.
+ *  @author Rayan Taghizadeh
+ */
+public class BatchConverterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Names of the moving rotors, and their notches.  Several notches
+     *  make double steps frequent. */
+    private static final String[][] MOVING = {
+        { "I", "Q" }, { "II", "E" }, { "III", "V" }, { "IV", "JR" },
+        { "V", "ZAM" }, { "VI", "ZM" },
+    };
+
+    /** Return a machine with five slots, three pawls and the naval
+     *  rotors. */
+    private static Machine machine() {
+        ArrayList<String> rotors = new ArrayList<>();
+        for (String[] moving : MOVING) {
+            rotors.add(moving[0] + ":" + moving[1]);
+        }
+        rotors.addAll(List.of("Beta", "Gamma", "B", "C"));
+        return navalMachine(5, 3, rotors.toArray(new String[0]));
+    }
+
+    /** Return N machines forked from CONFIG with random rotors, settings
+     *  and plugboards drawn from RANDOM. */
+    private static Machine[] machines(Machine config, int n, Random random) {
+        Machine[] result = new Machine[n];
+        for (int i = 0; i < n; i += 1) {
+            List<String> moving = new ArrayList<>();
+            for (String[] rotor : MOVING) {
+                moving.add(rotor[0]);
+            }
+            Collections.shuffle(moving, random);
+            Machine mach = config.fork();
+            mach.insertRotors(new String[] {
+                random.nextBoolean() ? "B" : "C",
+                random.nextBoolean() ? "Beta" : "Gamma",
+                moving.get(0), moving.get(1), moving.get(2)
+            });
+            StringBuilder setting = new StringBuilder();
+            for (int k = 0; k < 4; k += 1) {
+                setting.append(UPPER_STRING.charAt(random.nextInt(26)));
+            }
+            mach.setRotors(setting.toString());
+            List<Character> letters = new ArrayList<>();
+            for (char c : UPPER_STRING.toCharArray()) {
+                letters.add(c);
+            }
+            Collections.shuffle(letters, random);
+            StringBuilder cycles = new StringBuilder();
+            for (int k = random.nextInt(11) * 2; k > 0; k -= 2) {
+                cycles.append('(').append(letters.get(k - 1))
+                    .append(letters.get(k - 2)).append(')');
+            }
+            mach.setPlugboard(new Permutation(cycles.toString(), UPPER));
+            result[i] = mach;
+        }
+        return result;
+    }
+
+    /** Check that CONVERTER agrees with Machine.convert on a batch of N
+     *  messages of at most MAXLEN letters drawn from RANDOM. */
+    private static void checkBatch(BatchConverter converter, int n,
+                                   int maxLen, Random random) {
+        checkBatch(converter, machine(), n, maxLen, random);
+    }
+
+    /** Check that CONVERTER agrees with Machine.convert on a batch of N
+     *  machines forked from CONFIG and messages of at most MAXLEN letters
+     *  drawn from RANDOM. */
+    private static void checkBatch(BatchConverter converter, Machine config,
+                                   int n, int maxLen, Random random) {
+        Machine[] machines = machines(config, n, random);
+        Machine[] expected = new Machine[n];
+        String[] messages = new String[n];
+        for (int i = 0; i < n; i += 1) {
+            expected[i] = machines[i].fork();
+            char[] msg = new char[random.nextInt(maxLen + 1)];
+            for (int k = 0; k < msg.length; k += 1) {
+                msg[k] = UPPER_STRING.charAt(random.nextInt(26));
+            }
+            messages[i] = new String(msg);
+        }
+        String[] result = converter.convert(machines, messages);
+        assertEquals(n, result.length);
+        for (int i = 0; i < n; i += 1) {
+            assertEquals(msg("batch", "message %d", i),
+                         expected[i].convert(messages[i]), result[i]);
+            assertArrayEquals(msg("batch", "settings %d", i),
+                              expected[i].positions(),
+                              machines[i].positions());
+        }
+    }
+
+    @Test
+    public void testScalar() {
+        checkBatch(new BatchConverter(), 50, 100, new Random(1));
+    }
+
+    @Test
+    public void testBatches() {
+        BatchConverter converter = BatchConverter.newConverter();
+        Random random = new Random(2);
+        checkBatch(converter, 0, 10, random);
+        checkBatch(converter, 1, 10, random);
+        checkBatch(converter, converter.lanes() + 3, 700, random);
+        checkBatch(converter, 500, 40, random);
+    }
+
+    @Test
+    public void testSharedTables() {
+        BatchConverter converter = BatchConverter.newConverter();
+        Random random = new Random(5);
+        Machine config = machine();
+        for (int k = 0; k < 3; k += 1) {
+            checkBatch(converter, config, 40, 60, random);
+        }
+        checkBatch(converter, machine(), 40, 60, random);
+        checkBatch(converter, config, 3, 60, random);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMismatch() {
+        BatchConverter.newConverter().convert(machines(machine(), 2,
+                                                       new Random(3)),
+                                              new String[] { "ABC" });
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadMessage() {
+        BatchConverter.newConverter().convert(machines(machine(), 2,
+                                                       new Random(4)),
+                                              new String[] { "ABC", "a" });
+    }
+}
@@ -0,0 +1,383 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static enigma.EnigmaException.*;
+
+/** A crib attack in the manner of the Turing-Welchman bombe.  Given a
+ *  stretch of known plaintext (the crib) and the ciphertext it produced,
+ *  a Bombe finds every rotor order and starting position at which some
+ *  plugboard is consistent with the pair, and reports each as a settings
+ *  line.
+ *
+ *  The crib and ciphertext define a menu: a graph on the alphabet with an
+ *  edge between the crib and cipher letters at each crib position k.
+ *  Since the plugboard S is its own inverse, each edge says that
+ *  S(cipher) = E_k(S(crib)), where E_k is the plugboard-free scrambler at
+ *  that position.  For each starting position, one letter of each
+ *  connected part of the menu is hypothesized to be plugged to each
+ *  letter in turn, and the consequences are propagated along the edges
+ *  until every letter of that part has a partner or some letter is found
+ *  to need two.  Contradicted hypotheses are dropped, which rules out
+ *  almost every position after a few lookups.
+ *
+ *  Each worker evaluates E_k with a Scrambler, at three lookups each.
+ *  The search over rotor orders and positions is divided recursively
+ *  among the workers of a fork-join pool, which balance the load by work
+ *  stealing.
+ *  @author Rayan Taghizadeh
+ */
+class Bombe {
+
+    /** Starting positions searched by one task without splitting. */
+    static final int MIN_TASK = 1 << 12;
+
+    /** A bombe for the machines configurable from the available rotors
+     *  of CONFIG, searching for the settings at which the CRIB enciphers
+     *  to the characters of CIPHER starting at OFFSET. */
+    Bombe(Machine config, String crib, String cipher, int offset) {
+        _config = config;
+        _alphabet = config.alphabet();
+        _size = _alphabet.size();
+        _slots = config.numRotors();
+        if (offset < 0 || crib.isEmpty()
+            || offset > cipher.length() - crib.length()) {
+            throw error("crib does not fit within the ciphertext");
+        }
+        double positions = Math.pow(_size, _slots - 1);
+        if (positions >= Long.MAX_VALUE) {
+            throw error("too many rotor positions to search");
+        }
+        _positions = (long) positions;
+        _offset = offset;
+        _crib = KeySpace.indices(_alphabet, crib);
+        _cipher = KeySpace.indices(_alphabet, cipher.substring(
+            offset, offset + crib.length()));
+        for (int k = 0; k < crib.length(); k += 1) {
+            if (_crib[k] == _cipher[k]) {
+                throw error("crib letter %c cannot encipher to itself at %d",
+                            crib.charAt(k), offset + k);
+            }
+        }
+        buildMenu();
+        _orders = KeySpace.rotorOrders(config);
+    }
+
+    /** Search all rotor orders and positions in POOL and return the
+     *  settings lines of all the candidates found, in order of rotor
+     *  order and starting position. */
+    List<String> run(ForkJoinPool pool) {
+        ConcurrentLinkedQueue<Candidate> found = new ConcurrentLinkedQueue<>();
+        ArrayList<Search> tasks = new ArrayList<>();
+        for (int r = 0; r < _orders.size(); r += 1) {
+            tasks.add(new Search(r, 0, _positions, found));
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        ArrayList<Candidate> sorted = new ArrayList<>(found);
+        Collections.sort(sorted);
+        ArrayList<String> result = new ArrayList<>();
+        for (Candidate c : sorted) {
+            result.add(c.toString());
+        }
+        return result;
+    }
+
+    /** Return the number of rotor orders I search. */
+    int numOrders() {
+        return _orders.size();
+    }
+
+    /** Fill in the menu from _crib and _cipher: the edges at each letter,
+     *  and the connected parts of the menu, largest first. */
+    private void buildMenu() {
+        int[] degree = new int[_size];
+        for (int k = 0; k < _crib.length; k += 1) {
+            degree[_crib[k]] += 1;
+            degree[_cipher[k]] += 1;
+        }
+        _links = new int[_size][];
+        _steps = new int[_size][];
+        for (int a = 0; a < _size; a += 1) {
+            _links[a] = new int[degree[a]];
+            _steps[a] = new int[degree[a]];
+            degree[a] = 0;
+        }
+        for (int k = 0; k < _crib.length; k += 1) {
+            int a = _crib[k], b = _cipher[k];
+            _links[a][degree[a]] = b;
+            _steps[a][degree[a]++] = k;
+            _links[b][degree[b]] = a;
+            _steps[b][degree[b]++] = k;
+        }
+        int[] part = new int[_size];
+        Arrays.fill(part, -1);
+        ArrayList<int[]> parts = new ArrayList<>();
+        for (int a = 0; a < _size; a += 1) {
+            if (part[a] >= 0 || _links[a].length == 0) {
+                continue;
+            }
+            int[] members = new int[_size];
+            int n = 0, best = a;
+            members[n++] = a;
+            part[a] = parts.size();
+            for (int i = 0; i < n; i += 1) {
+                int b = members[i];
+                if (_links[b].length > _links[best].length) {
+                    best = b;
+                }
+                for (int c : _links[b]) {
+                    if (part[c] < 0) {
+                        part[c] = parts.size();
+                        members[n++] = c;
+                    }
+                }
+            }
+            parts.add(new int[] { best, n });
+        }
+        parts.sort((x, y) -> y[1] - x[1]);
+        _tests = new int[parts.size()];
+        for (int i = 0; i < _tests.length; i += 1) {
+            _tests[i] = parts.get(i)[0];
+        }
+    }
+
+    /** A rotor order, starting position and plugboard consistent with
+     *  the crib. */
+    private class Candidate implements Comparable<Candidate> {
+
+        /** The candidate with rotor order #ORDER, starting position
+         *  number POSITION, whose settings are SETTINGS, and plugboard
+         *  PARTNER, in which -1 marks an unknown partner. */
+        Candidate(int order, long position, int[] settings, int[] partner) {
+            _order = order;
+            _position = position;
+            _settings = settings.clone();
+            _partner = partner.clone();
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (_order != other._order) {
+                return Integer.compare(_order, other._order);
+            }
+            if (_position != other._position) {
+                return Long.compare(_position, other._position);
+            }
+            return Arrays.compare(_partner, other._partner);
+        }
+
+        /** Return my settings line, with plugboard pairs for the letters
+         *  whose partners are known and differ from them. */
+        @Override
+        public String toString() {
+            return KeySpace.settingsLine(_alphabet, _orders.get(_order),
+                                         _settings, _partner);
+        }
+
+        /** Index of my rotor order. */
+        private final int _order;
+
+        /** Number of my starting position. */
+        private final long _position;
+
+        /** Rotor settings, indexed by slot. */
+        private final int[] _settings;
+
+        /** Plugboard partners. */
+        private final int[] _partner;
+    }
+
+    /** The task of searching starting positions LO .. HI-1 of one rotor
+     *  order. */
+    private class Search extends RecursiveAction {
+
+        /** A task searching positions LO .. HI-1 of rotor order #ORDER,
+         *  adding candidates to FOUND. */
+        Search(int order, long lo, long hi,
+               ConcurrentLinkedQueue<Candidate> found) {
+            _order = order;
+            _lo = lo;
+            _hi = hi;
+            _found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > MIN_TASK) {
+                long mid = (_lo + _hi) >>> 1;
+                invokeAll(new Search(_order, _lo, mid, _found),
+                          new Search(_order, mid, _hi, _found));
+                return;
+            }
+            Machine machine = _config.fork();
+            machine.insertRotors(_orders.get(_order));
+            _scrambler = new Scrambler(machine);
+            Stepper stepper = _scrambler.stepper();
+            _saved = new int[_tests.length][];
+            _fast = new int[_crib.length];
+            _upper = new int[_crib.length][];
+            _partner = new int[_size];
+            _queue = new int[_size + 2];
+            int[] start = KeySpace.startSettings(_slots, _size, _lo);
+            int[] state = new int[_slots];
+            for (long pos = _lo; pos < _hi; pos += 1) {
+                System.arraycopy(start, 0, state, 0, _slots);
+                stepper.jump(state, _offset);
+                for (int k = 0; k < _crib.length; k += 1) {
+                    stepper.step(state);
+                    _fast[k] = state[_slots - 1];
+                    _upper[k] = _scrambler.upper(state, pos);
+                }
+                Arrays.fill(_partner, -1);
+                search(0, pos, start);
+                KeySpace.nextStart(start, _size);
+            }
+        }
+
+        /** Try every hypothesis for the test letter of menu part #PART,
+         *  given the partners already found for earlier parts, and record
+         *  the candidates at position number POS, with settings START,
+         *  for which every part has a consistent hypothesis.  Only the
+         *  first part's hypotheses give separate candidates; for the
+         *  others, the first consistent one is used.  Returns true iff
+         *  some candidate was recorded. */
+        private boolean search(int part, long pos, int[] start) {
+            if (part == _tests.length) {
+                _found.add(new Candidate(_order, pos, start, _partner));
+                return true;
+            }
+            int test = _tests[part];
+            if (_saved[part] == null) {
+                _saved[part] = new int[_size];
+            }
+            int[] saved = _saved[part];
+            System.arraycopy(_partner, 0, saved, 0, _size);
+            boolean any = false;
+            for (int h = 0; h < _size; h += 1) {
+                if (assume(test, h) && search(part + 1, pos, start)) {
+                    any = true;
+                    if (part > 0) {
+                        break;
+                    }
+                }
+                System.arraycopy(saved, 0, _partner, 0, _size);
+            }
+            return any;
+        }
+
+        /** Assume that A is plugged to B and propagate the consequences
+         *  through the menu into _partner.  Return false if they
+         *  contradict each other or what is already in _partner. */
+        private boolean assume(int a, int b) {
+            int n = 0;
+            if (!plug(a, b)) {
+                return false;
+            }
+            _queue[n++] = a;
+            if (b != a) {
+                _queue[n++] = b;
+            }
+            for (int i = 0; i < n; i += 1) {
+                int x = _queue[i];
+                int px = _partner[x];
+                int[] links = _links[x];
+                for (int j = 0; j < links.length; j += 1) {
+                    int y = links[j];
+                    int k = _steps[x][j];
+                    int py = _scrambler.convert(px, _fast[k], _upper[k]);
+                    if (_partner[y] == py) {
+                        continue;
+                    }
+                    if (!plug(y, py)) {
+                        return false;
+                    }
+                    _queue[n++] = y;
+                    if (py != y) {
+                        _queue[n++] = py;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Record that A and B are plugged together, returning false if
+         *  either already has a different partner. */
+        private boolean plug(int a, int b) {
+            if (_partner[a] == b) {
+                return true;
+            }
+            if (_partner[a] >= 0 || _partner[b] >= 0) {
+                return false;
+            }
+            _partner[a] = b;
+            _partner[b] = a;
+            return true;
+        }
+
+        /** Index of the rotor order searched. */
+        private final int _order;
+
+        /** Range of starting positions searched. */
+        private final long _lo, _hi;
+
+        /** Where candidates are reported. */
+        private final ConcurrentLinkedQueue<Candidate> _found;
+
+        /** Scramblers of the rotor order searched. */
+        private Scrambler _scrambler;
+
+        /** Copies of _partner saved while searching each menu part. */
+        private int[][] _saved;
+
+        /** Setting of the fast rotor at each crib position. */
+        private int[] _fast;
+
+        /** Permutation of the other rotors at each crib position. */
+        private int[][] _upper;
+
+        /** Plugboard partner of each letter, or -1 if not yet known. */
+        private int[] _partner;
+
+        /** Letters whose partners are to be propagated. */
+        private int[] _queue;
+    }
+
+    /** Machine whose available rotors are searched. */
+    private final Machine _config;
+
+    /** Alphabet of the machines. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet and number of rotor slots. */
+    private final int _size, _slots;
+
+    /** Number of starting positions of each rotor order. */
+    private final long _positions;
+
+    /** Position of the crib in the ciphertext. */
+    private final int _offset;
+
+    /** Crib and corresponding ciphertext, as indices. */
+    private final int[] _crib, _cipher;
+
+    /** _links[a] are the letters joined to A in the menu, and _steps[a]
+     *  the corresponding crib positions. */
+    private int[][] _links, _steps;
+
+    /** Letter whose partner is hypothesized in each part of the menu. */
+    private int[] _tests;
+
+    /** Rotor orders searched. */
+    private final ArrayList<String[]> _orders;
+}
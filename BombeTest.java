@@ -0,0 +1,88 @@
+package enigma;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author Rayan Taghizadeh
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Settings used to encipher the test message. */
+    private static final String SETTINGS =
+        "* B Beta III I QEZ (AB) (CD) (MN) (XY)";
+
+    /** Test plaintext. */
+    private static final String PLAIN =
+        "WETTERVORHERSAGEBISKAYAHEUTEREGENUNDWINDAUSWESTEN";
+
+    /** Return a machine with four slots, two pawls and a few of the
+     *  naval rotors. */
+    private static Machine machine() {
+        return navalMachine(4, 2, "I", "II", "III", "Beta", "B");
+    }
+
+    /** Return MSG converted by a machine set up with SETTINGS. */
+    private static String convert(String settings, String msg) {
+        Machine mach = machine();
+        Main.setUp(mach, settings);
+        return mach.convert(msg);
+    }
+
+    /** Return the candidates for CRIB at OFFSET in the enciphered test
+     *  message. */
+    private static List<String> run(String crib, int offset) {
+        String cipher = convert(SETTINGS, PLAIN);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            return new Bombe(machine(), crib, cipher, offset).run(pool);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFindsSettings() {
+        List<String> found = run(PLAIN.substring(0, 23), 0);
+        assertEquals(List.of(SETTINGS), found);
+    }
+
+    @Test
+    public void testCandidatesFitCrib() {
+        String cipher = convert(SETTINGS, PLAIN);
+        String crib = PLAIN.substring(36, 49);
+        List<String> found = run(crib, 36);
+        assertTrue(found.contains("* B Beta III I QEZ (AF) (BG) (CD) (JN) "
+                                  + "(KX)"));
+        for (String line : found) {
+            assertEquals(line, crib,
+                         convert(line, cipher).substring(36, 49));
+        }
+    }
+
+    @Test
+    public void testNumOrders() {
+        assertEquals(6, new Bombe(machine(), "A", "B", 0).numOrders());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testCribEnciphersToItself() {
+        new Bombe(machine(), "ABC", "XBZ", 0);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testCribTooLong() {
+        new Bombe(machine(), "ABC", "XYZW", 2);
+    }
+}
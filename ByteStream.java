@@ -0,0 +1,203 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static enigma.EnigmaException.*;
+
+/** Converts raw binary data on a machine whose alphabet has 256 symbols,
+ *  byte B standing for the symbol of index B.  There are no lines,
+ *  settings lines, groups or blanks: every byte of input is a message
+ *  character, and bytes go from input to output without being decoded
+ *  into characters or encoded again.
+ *
+ *  A configuration for binary data names its alphabet NAME, the bytes
+ *  00 to FF in order, and writes each symbol elsewhere as two hex
+ *  digits: in rotor cycles, as in "(00A3FF) (1742)"; in notches, as in
+ *  "M0A1B"; and in the initial positions and plugboard cycles of
+ *  settings lines, as in "* B III II I 0A1BFF (41 61)".
+ *  @author Rayan Taghizadeh
+ */
+class ByteStream {
+
+    /** Name of the byte alphabet in configuration files.  It repeats
+     *  characters, so it is never the name of an ordinary alphabet. */
+    static final String NAME = "00-FF";
+
+    /** Number of symbols in the byte alphabet. */
+    static final int SIZE = 256;
+
+    /** The byte alphabet: the characters with codes 0 to 255, in
+     *  order. */
+    static final Alphabet ALPHABET = byteAlphabet();
+
+    /** A ByteStream converting on MACHINE, in whatever settings it has
+     *  when conversion starts, recording its work in METRICS. */
+    ByteStream(Machine machine, Metrics metrics) {
+        if (machine.alphabet().size() != SIZE) {
+            throw error("binary data needs an alphabet of %d symbols",
+                        SIZE);
+        }
+        _machine = machine;
+        _metrics = metrics;
+        _buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    }
+
+    /** Convert all of IN, writing the result to OUT. */
+    void convert(ReadableByteChannel in, WritableByteChannel out)
+        throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        while (in.read(chunk) >= 0) {
+            chunk.flip();
+            convert(chunk, out);
+            chunk.clear();
+        }
+    }
+
+    /** Convert all of the file IN, mapping it into memory in windows
+     *  rather than reading it, and write the result to OUT. */
+    void convert(FileChannel in, WritableByteChannel out)
+        throws IOException {
+        long size = in.size();
+        for (long pos = 0; pos < size; pos += MAP_WINDOW) {
+            MappedByteBuffer window =
+                in.map(FileChannel.MapMode.READ_ONLY, pos,
+                       Math.min(MAP_WINDOW, size - pos));
+            while (window.hasRemaining()) {
+                int end = window.position()
+                    + Math.min(window.remaining(), CHUNK_SIZE);
+                convert(window.limit(end), out);
+                window.limit(window.capacity());
+            }
+        }
+    }
+
+    /** Convert the bytes remaining in BYTES, writing the result to
+     *  OUT. */
+    private void convert(ByteBuffer bytes, WritableByteChannel out)
+        throws IOException {
+        long start = _metrics.start();
+        _metrics.countChars(bytes.remaining());
+        _machine.convert(bytes, _buffer);
+        _buffer.flip();
+        start = _metrics.lap(Metrics.Stage.CONVERT, start);
+        while (_buffer.hasRemaining()) {
+            out.write(_buffer);
+        }
+        _buffer.clear();
+        _metrics.stop(Metrics.Stage.OUTPUT, start);
+    }
+
+    /** Return true iff ALPHA is the byte alphabet. */
+    static boolean isBytes(Alphabet alpha) {
+        if (alpha.size() != SIZE) {
+            return false;
+        }
+        for (int i = 0; i < SIZE; i += 1) {
+            if (alpha.toChar(i) != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the symbols of the byte alphabet written in HEX, two hex
+     *  digits each, as characters. */
+    static String decode(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw error("odd number of hex digits in %s", hex);
+        }
+        char[] symbols = new char[hex.length() / 2];
+        for (int i = 0; i < symbols.length; i += 1) {
+            symbols[i] = (char) (digit(hex, 2 * i) << 4
+                                 | digit(hex, 2 * i + 1));
+        }
+        return new String(symbols);
+    }
+
+    /** Return the permutation of the byte alphabet written as CYCLES, in
+     *  the form "(hhhh) (hh) ...", where each hh is a symbol written as
+     *  two hex digits.  Whitespace between symbols is ignored. */
+    static Permutation permutation(String cycles) {
+        int[] forward = new int[SIZE];
+        for (int i = 0; i < SIZE; i += 1) {
+            forward[i] = i;
+        }
+        boolean[] seen = new boolean[SIZE];
+        int first = -1, last = -1;
+        for (int i = 0; i < cycles.length(); i += 1) {
+            char c = cycles.charAt(i);
+            if (c == '(' && first < 0) {
+                first = SIZE;
+            } else if (c == ')' && first >= 0) {
+                if (first < SIZE) {
+                    forward[last] = first;
+                }
+                first = -1;
+            } else if (first >= 0 && digit(c) >= 0
+                       && i + 1 < cycles.length()) {
+                int symbol = digit(cycles, i) << 4 | digit(cycles, i + 1);
+                if (seen[symbol]) {
+                    throw error("byte %02X repeated in %s", symbol, cycles);
+                }
+                seen[symbol] = true;
+                if (first == SIZE) {
+                    first = symbol;
+                } else {
+                    forward[last] = symbol;
+                }
+                last = symbol;
+                i += 1;
+            } else if (!Character.isWhitespace(c)) {
+                throw error("bad byte cycles: %s", cycles);
+            }
+        }
+        if (first >= 0) {
+            throw error("bad byte cycles: %s", cycles);
+        }
+        return new Permutation(forward, ALPHABET);
+    }
+
+    /** Return the value of the hex digit at K in HEX. */
+    private static int digit(String hex, int k) {
+        int value = digit(hex.charAt(k));
+        if (value < 0) {
+            throw error("bad hex digit '%c' in %s", hex.charAt(k), hex);
+        }
+        return value;
+    }
+
+    /** Return the value of the hex digit C, or -1 if it is not one. */
+    private static int digit(char c) {
+        return Character.digit(c, 16);
+    }
+
+    /** Return the byte alphabet. */
+    private static Alphabet byteAlphabet() {
+        char[] chars = new char[SIZE];
+        for (int i = 0; i < SIZE; i += 1) {
+            chars[i] = (char) i;
+        }
+        return new Alphabet(new String(chars));
+    }
+
+    /** Size in bytes of the pieces converted at a time. */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /** Size of the windows in which an input file is mapped. */
+    private static final long MAP_WINDOW = 1 << 28;
+
+    /** Machine doing the conversion. */
+    private final Machine _machine;
+
+    /** Where the work done is recorded. */
+    private final Metrics _metrics;
+
+    /** Converted bytes not yet written. */
+    private final ByteBuffer _buffer;
+}
@@ -0,0 +1,163 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ByteStream class.
+ *  @author Rayan Taghizadeh
+ */
+public class ByteStreamTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Settings used by the tests. */
+    private static final String SETTINGS = "* R F II I 00FE7F (4161) (0D0A)";
+
+    /** Return a random permutation of the byte alphabet drawn with
+     *  RANDOM. */
+    private static Permutation randomPermutation(Random random) {
+        int[] forward = new int[ByteStream.SIZE];
+        for (int i = 0; i < forward.length; i += 1) {
+            int j = random.nextInt(i + 1);
+            forward[i] = forward[j];
+            forward[j] = i;
+        }
+        return new Permutation(forward, ByteStream.ALPHABET);
+    }
+
+    /** Return a random reflection of the byte alphabet, with no fixed
+     *  points, drawn with RANDOM. */
+    private static Permutation randomReflection(Random random) {
+        Permutation order = randomPermutation(random);
+        int[] forward = new int[ByteStream.SIZE];
+        for (int i = 0; i < forward.length; i += 2) {
+            int a = order.permute(i), b = order.permute(i + 1);
+            forward[a] = b;
+            forward[b] = a;
+        }
+        return new Permutation(forward, ByteStream.ALPHABET);
+    }
+
+    /** Return a machine over the byte alphabet with random rotors drawn
+     *  from a generator seeded with 20, set up with SETTINGS. */
+    private static Machine machine() {
+        Random random = new Random(20);
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new MovingRotor("I", randomPermutation(random),
+                                   ByteStream.decode("00")));
+        rotors.add(new MovingRotor("II", randomPermutation(random),
+                                   ByteStream.decode("0080")));
+        rotors.add(new FixedRotor("F", randomPermutation(random)));
+        rotors.add(new Reflector("R", randomReflection(random)));
+        Machine mach = new Machine(ByteStream.ALPHABET, 4, 2, rotors);
+        Main.setUp(mach, SETTINGS);
+        return mach;
+    }
+
+    /** Return the conversion of DATA by a fresh machine() through the
+     *  streaming path. */
+    private static byte[] stream(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ByteStream(machine(), Metrics.NONE)
+            .convert(Channels.newChannel(new ByteArrayInputStream(data)),
+                     Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    /** Return LEN random bytes. */
+    private static byte[] randomBytes(int len) {
+        byte[] data = new byte[len];
+        new Random(len).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void testHex() {
+        assertTrue(ByteStream.isBytes(ByteStream.ALPHABET));
+        assertFalse(ByteStream.isBytes(TestUtils.UPPER));
+        assertEquals("\n\u00ab\u00ff\u0000",
+                     ByteStream.decode("0AabFF00"));
+        Permutation perm = ByteStream.permutation("(00A3FF) (17 42)(80)");
+        assertEquals(0xA3, perm.permute(0x00));
+        assertEquals(0xFF, perm.permute(0xA3));
+        assertEquals(0x00, perm.permute(0xFF));
+        assertEquals(0x42, perm.permute(0x17));
+        assertEquals(0x17, perm.permute(0x42));
+        assertEquals(0x80, perm.permute(0x80));
+        assertEquals(0x41, perm.permute(0x41));
+    }
+
+    @Test
+    public void testBadHex() {
+        for (String cycles : new String[] {
+                "(0A1)", "(0A", "0A1B", "(0A0A)", "(0G)", "((0A))" }) {
+            try {
+                ByteStream.permutation(cycles);
+                fail("no error for " + cycles);
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+        try {
+            ByteStream.decode("ABC");
+            fail("no error for odd length");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testConvert() throws IOException {
+        byte[] data = randomBytes(300000);
+        byte[] result = stream(data);
+        Machine mach = machine();
+        assertEquals(data.length, result.length);
+        for (int i = 0; i < data.length; i += 1) {
+            int expected = mach.convert(data[i] & 0xFF);
+            assertEquals(TestUtils.msg("convert", "byte %d", i),
+                         expected, result[i] & 0xFF);
+            assertTrue(data[i] != result[i]);
+        }
+        assertArrayEquals(data, stream(result));
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        byte[] data = randomBytes(200003);
+        Path input = Files.createTempFile("enigma", ".bin");
+        try {
+            Files.write(input, data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (FileChannel in = FileChannel.open(input)) {
+                new ByteStream(machine(), Metrics.NONE)
+                    .convert(in, Channels.newChannel(out));
+            }
+            assertArrayEquals(stream(data), out.toByteArray());
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testWrongAlphabet() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation("(AB)",
+                                                      TestUtils.UPPER)));
+        new ByteStream(new Machine(TestUtils.UPPER, 1, 0, rotors),
+                       Metrics.NONE);
+    }
+}
@@ -0,0 +1,193 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+import static enigma.EnigmaException.*;
+
+/** Machine configurations compiled into a binary file that loads without
+ *  parsing.  The file holds the alphabet, the numbers of slots and pawls,
+ *  and for each available rotor its kind, name, notches and complete
+ *  permutation table.  All of it is read through one mapping of the file.
+ *
+ *  The header gives a format version and a CRC-32 of everything after it.
+ *  It also records the path, size and modification time of the text
+ *  configuration the file was compiled from.  A file that fails its check
+ *  is rejected as corrupt.  A file whose source still exists but has
+ *  since changed is rejected as stale.
+ *  @author Rayan Taghizadeh
+ */
+class CompiledConfig {
+
+    /** First word of a compiled configuration ("ECFG"). */
+    static final int MAGIC = 0x45434647;
+
+    /** Current format version. */
+    static final int VERSION = 1;
+
+    /** Bytes before the checked part of the file: magic, version, CRC
+     *  and length. */
+    private static final int HEADER = 16;
+
+    /** Write the configuration of MACHINE, which was read from the text
+     *  file SOURCE, to the file OUT. */
+    static void write(Machine machine, Path source, Path out) {
+        Alphabet alpha = machine.alphabet();
+        Collection<Rotor> rotors = machine.availableRotors();
+        String path = source.toAbsolutePath().toString();
+        int size = HEADER + 8 + 8 + 4 + 2 * path.length()
+            + 4 + 2 * alpha.size() + 4 * 3;
+        for (Rotor rotor : rotors) {
+            size += 2 + 4 + 2 * rotor.name().length()
+                + 4 + 2 * rotor.notches().length() + 4 * alpha.size();
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(size - HEADER);
+        try {
+            buf.putLong(Files.size(source));
+            buf.putLong(Files.getLastModifiedTime(source).toMillis());
+        } catch (IOException excp) {
+            throw error("could not read %s", source);
+        }
+        putString(buf, path);
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0; i < alpha.size(); i += 1) {
+            chars.append(alpha.toChar(i));
+        }
+        putString(buf, chars.toString());
+        buf.putInt(machine.numRotors()).putInt(machine.numPawls());
+        buf.putInt(rotors.size());
+        for (Rotor rotor : rotors) {
+            buf.putChar(rotor.reflecting() ? 'R'
+                        : rotor.rotates() ? 'M' : 'N');
+            putString(buf, rotor.name());
+            putString(buf, rotor.notches());
+            for (int i = 0; i < alpha.size(); i += 1) {
+                buf.putInt(rotor.permutation().permute(i));
+            }
+        }
+        buf.putInt(8, checksum(buf, size));
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(out,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", out);
+        }
+    }
+
+    /** Return a machine configured from the compiled configuration in
+     *  FILE, or null if FILE is not a compiled configuration. */
+    static Machine load(Path file) {
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException excp) {
+            throw error("could not open %s", file);
+        }
+        if (buf.limit() < HEADER || buf.getInt(0) != MAGIC) {
+            return null;
+        }
+        if (buf.getInt(4) != VERSION) {
+            throw error("%s: unsupported compiled configuration version %d",
+                        file, buf.getInt(4));
+        }
+        if (buf.getInt(12) != buf.limit() - HEADER
+            || buf.getInt(8) != checksum(buf, buf.limit())) {
+            throw error("%s: corrupt compiled configuration", file);
+        }
+        try {
+            buf.position(HEADER);
+            long size = buf.getLong();
+            long modified = buf.getLong();
+            checkSource(file, getString(buf), size, modified);
+            Alphabet alpha = new Alphabet(getString(buf));
+            int numRotors = buf.getInt();
+            int pawls = buf.getInt();
+            int count = buf.getInt();
+            ArrayList<Rotor> rotors = new ArrayList<>();
+            for (int r = 0; r < count; r += 1) {
+                char kind = buf.getChar();
+                String name = getString(buf);
+                String notches = getString(buf);
+                int[] table = new int[alpha.size()];
+                buf.asIntBuffer().get(table);
+                buf.position(buf.position() + 4 * table.length);
+                Permutation perm = new Permutation(table, alpha);
+                if (kind == 'M') {
+                    rotors.add(new MovingRotor(name, perm, notches));
+                } else if (kind == 'N') {
+                    rotors.add(new FixedRotor(name, perm));
+                } else if (kind == 'R') {
+                    rotors.add(new Reflector(name, perm));
+                } else {
+                    throw error("%s: corrupt compiled configuration", file);
+                }
+            }
+            return new Machine(alpha, numRotors, pawls, rotors);
+        } catch (BufferUnderflowException | NegativeArraySizeException
+                 | IllegalArgumentException excp) {
+            throw error("%s: corrupt compiled configuration", file);
+        }
+    }
+
+    /** Check that the text configuration at PATH, from which FILE was
+     *  compiled when it had SIZE bytes and modification time MODIFIED,
+     *  has not changed since, unless it no longer exists. */
+    private static void checkSource(Path file, String path, long size,
+                                    long modified) {
+        Path source = Paths.get(path);
+        try {
+            if (Files.size(source) != size
+                || Files.getLastModifiedTime(source).toMillis() != modified) {
+                throw error("%s is out of date; recompile it from %s",
+                            file, path);
+            }
+        } catch (NoSuchFileException excp) {
+            return;
+        } catch (IOException excp) {
+            throw error("could not check %s", path);
+        }
+    }
+
+    /** Return the CRC-32 of bytes HEADER .. END-1 of BUF. */
+    private static int checksum(ByteBuffer buf, int end) {
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buf.duplicate();
+        body.limit(end).position(HEADER);
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    /** Append S to BUF, preceded by its length. */
+    private static void putString(ByteBuffer buf, String s) {
+        buf.putInt(s.length());
+        for (int i = 0; i < s.length(); i += 1) {
+            buf.putChar(s.charAt(i));
+        }
+    }
+
+    /** Return the string written by putString at the position of BUF. */
+    private static String getString(ByteBuffer buf) {
+        char[] chars = new char[buf.getInt()];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = buf.getChar();
+        }
+        return new String(chars);
+    }
+}
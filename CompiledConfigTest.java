@@ -0,0 +1,108 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the CompiledConfig class.
+ *  @author Rayan Taghizadeh
+ */
+public class CompiledConfigTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Text standing in for the source of a compiled configuration. */
+    private static final String CONFIG = "ABCDEFGH\n 4 2\n";
+
+    /** Alphabet of the test machines. */
+    private static final Alphabet ALPHA = new Alphabet("ABCDEFGH");
+
+    /** Return a new machine with four slots and two pawls. */
+    private static Machine machine() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new MovingRotor("I",
+                       new Permutation("(ABCDEFGH)", ALPHA), "A"));
+        rotors.add(new MovingRotor("II",
+                       new Permutation("(AHBG) (CD)", ALPHA), "CE"));
+        rotors.add(new FixedRotor("BETA",
+                       new Permutation("(AEC) (BF)", ALPHA)));
+        rotors.add(new Reflector("B",
+                       new Permutation("(AE) (BF) (CG) (DH)", ALPHA)));
+        return new Machine(ALPHA, 4, 2, rotors);
+    }
+
+    /** Return a temporary file with a name ending in SUFFIX. */
+    private static Path temp(String suffix) throws IOException {
+        Path file = Files.createTempFile("enigma", suffix);
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    /** Return the output of converting MSG on MACH, set up with the
+     *  rotors B BETA II I at AHC. */
+    private static String run(Machine mach, String msg) {
+        mach.insertRotors(new String[] { "B", "BETA", "II", "I" });
+        mach.setRotors("AHC");
+        return mach.convert(msg);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path source = temp(".conf");
+        Files.write(source, CONFIG.getBytes());
+        Machine text = machine();
+        Path out = temp(".ecfg");
+        CompiledConfig.write(text, source, out);
+        Machine loaded = CompiledConfig.load(out);
+        assertNotNull(loaded);
+        assertEquals(text.numRotors(), loaded.numRotors());
+        assertEquals(text.numPawls(), loaded.numPawls());
+        String msg = "ABCDEFGHHGFEDCBAACEGBDFHHHHH";
+        assertEquals(run(text, msg), run(loaded, msg));
+        assertNull(CompiledConfig.load(source));
+    }
+
+    @Test
+    public void testCorrupt() throws IOException {
+        Path source = temp(".conf");
+        Files.write(source, CONFIG.getBytes());
+        Path out = temp(".ecfg");
+        CompiledConfig.write(machine(), source, out);
+        try (RandomAccessFile f = new RandomAccessFile(out.toFile(), "rw")) {
+            f.seek(f.length() - 3);
+            int b = f.read();
+            f.seek(f.length() - 3);
+            f.write(b ^ 1);
+        }
+        try {
+            CompiledConfig.load(out);
+            fail("corruption not detected");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().contains("corrupt"));
+        }
+    }
+
+    @Test
+    public void testStale() throws IOException {
+        Path source = temp(".conf");
+        Files.write(source, CONFIG.getBytes());
+        Path out = temp(".ecfg");
+        CompiledConfig.write(machine(), source, out);
+        Files.write(source, (CONFIG + "\n").getBytes());
+        try {
+            CompiledConfig.load(out);
+            fail("stale configuration not detected");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().contains("out of date"));
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static enigma.EnigmaException.*;
+
+/** A server that converts messages for clients connected to a Unix
+ *  domain socket or to a TCP port on the loopback interface, so that
+ *  configuration files are read, and the code warmed up, only once.
+ *
+ *  Each request is a frame: a four-byte big-endian length followed by
+ *  that many bytes of UTF-8 text holding the name of a configuration,
+ *  a newline, a settings line, a newline and a message.  An empty name
+ *  denotes the first configuration.  Each connection has its own
+ *  machine for each configuration, so an empty settings line continues
+ *  from where the connection's previous message under that
+ *  configuration left off, just as message lines after a settings line
+ *  do in an input file.  Blanks and line terminators in the message
+ *  are ignored.  Each response is a status byte, OK or FAILED, followed
+ *  by a length and UTF-8 text as for requests: the converted message,
+ *  or an error message.
+ *
+ *  Each connection is served by a thread of its own: a virtual thread
+ *  when the JVM provides them, and otherwise a platform thread.
+ *  @author Rayan Taghizadeh
+ */
+class Daemon {
+
+    /** Response status of a converted message. */
+    static final int OK = 0;
+
+    /** Response status of a request that could not be carried out. */
+    static final int FAILED = 1;
+
+    /** Largest frame accepted, in bytes. */
+    static final int MAX_FRAME = 1 << 24;
+
+    /** A daemon serving the machines in CONFIGS, indexed by name, on
+     *  ADDRESS, which is either a port number, for a TCP port on the
+     *  loopback interface (0 for any free port), or the name of a Unix
+     *  domain socket.  A stale socket left by an earlier daemon is
+     *  replaced. */
+    Daemon(Map<String, Machine> configs, String address) {
+        if (configs.isEmpty()) {
+            throw error("no configurations to serve");
+        }
+        _configs = configs;
+        _default = configs.keySet().iterator().next();
+        _socketPath = address.matches("\\d+") ? null : path(address);
+        try {
+            if (_socketPath == null) {
+                _server = ServerSocketChannel.open();
+                _server.bind(new InetSocketAddress(
+                    InetAddress.getLoopbackAddress(),
+                    Integer.parseInt(address)));
+            } else {
+                removeStaleSocket(_socketPath);
+                _server =
+                    ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+                _server.bind(UnixDomainSocketAddress.of(_socketPath));
+            }
+        } catch (IOException | NumberFormatException excp) {
+            throw error("could not listen on %s", address);
+        }
+    }
+
+    /** Return the address on which I listen. */
+    SocketAddress address() {
+        try {
+            return _server.getLocalAddress();
+        } catch (IOException excp) {
+            throw error("daemon is closed");
+        }
+    }
+
+    /** Accept and serve connections until close() is called, and then
+     *  return once the connections already accepted have closed. */
+    void serve() {
+        ExecutorService threads = newExecutor();
+        try {
+            while (true) {
+                SocketChannel client = _server.accept();
+                threads.execute(() -> serve(client));
+            }
+        } catch (ClosedChannelException excp) {
+            /* close() was called. */
+        } catch (IOException excp) {
+            throw error("could not accept connection: %s",
+                        excp.getMessage());
+        } finally {
+            threads.shutdown();
+            try {
+                while (!threads.awaitTermination(1, TimeUnit.MINUTES)) {
+                    continue;
+                }
+            } catch (InterruptedException excp) {
+                threads.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Stop accepting connections, and remove my socket, if any.
+     *  Connections already accepted are served until they close. */
+    void close() {
+        try {
+            _server.close();
+            if (_socketPath != null) {
+                Files.deleteIfExists(_socketPath);
+            }
+        } catch (IOException excp) {
+            /* Nothing more can be done about it. */
+        }
+    }
+
+    /** Return the conversion of MSG by the configuration named CONFIG,
+     *  or by the first configuration if CONFIG is empty, using the
+     *  connection's machines in MACHINES.  SETTINGS is a settings line,
+     *  or empty to continue with the machine's current settings. */
+    String convert(Map<String, Machine> machines, String config,
+                   String settings, String msg) {
+        String name = config.isEmpty() ? _default : config;
+        Machine machine = machines.get(name);
+        if (settings.isEmpty()) {
+            if (machine == null) {
+                throw error("no settings line for configuration %s", name);
+            }
+        } else {
+            if (!_configs.containsKey(name)) {
+                throw error("unknown configuration %s", name);
+            }
+            machines.remove(name);
+            machine = _configs.get(name).fork();
+            try {
+                Main.setUp(machine, settings);
+            } catch (NoSuchElementException excp) {
+                throw error("settings line truncated");
+            }
+            machines.put(name, machine);
+        }
+        StringBuilder chars = new StringBuilder(msg.length());
+        for (int i = 0; i < msg.length(); i += 1) {
+            char c = msg.charAt(i);
+            if (!Transcriber.isBlank(c) && !Transcriber.isTerminator(c)) {
+                chars.append(c);
+            }
+        }
+        return machine.convert(chars.toString());
+    }
+
+    /** Serve the requests of CLIENT until it closes its connection. */
+    private void serve(SocketChannel client) {
+        HashMap<String, Machine> machines = new HashMap<>();
+        try (client) {
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(client)));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(client)));
+            while (true) {
+                String request;
+                try {
+                    request = readFrame(in);
+                } catch (EOFException excp) {
+                    return;
+                }
+                int end1 = request.indexOf('\n');
+                int end2 = end1 < 0 ? -1 : request.indexOf('\n', end1 + 1);
+                try {
+                    if (end2 < 0) {
+                        throw error("malformed request");
+                    }
+                    String result =
+                        convert(machines, request.substring(0, end1),
+                                request.substring(end1 + 1, end2).trim(),
+                                request.substring(end2 + 1));
+                    out.writeByte(OK);
+                    writeFrame(out, result);
+                } catch (EnigmaException excp) {
+                    out.writeByte(FAILED);
+                    writeFrame(out, excp.getMessage());
+                }
+                out.flush();
+            }
+        } catch (IOException | EnigmaException excp) {
+            /* The connection is broken or out of step; drop it. */
+        }
+    }
+
+    /** Return the text of the next frame from IN. */
+    static String readFrame(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0 || len > MAX_FRAME) {
+            throw error("bad frame length: %d", len);
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Write TEXT to OUT as a frame. */
+    static void writeFrame(DataOutputStream out, String text)
+        throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Return the path named NAME. */
+    private static Path path(String name) {
+        try {
+            return Paths.get(name);
+        } catch (InvalidPathException excp) {
+            throw error("bad file name: %s", name);
+        }
+    }
+
+    /** Remove the Unix domain socket at PATH left by an earlier daemon,
+     *  if there is one.  Anything else at PATH is left alone. */
+    private static void removeStaleSocket(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        BasicFileAttributes attrs =
+            Files.readAttributes(path, BasicFileAttributes.class,
+                                 LinkOption.NOFOLLOW_LINKS);
+        if (!attrs.isOther()) {
+            throw error("%s exists and is not a socket", path);
+        }
+        try (SocketChannel probe =
+             SocketChannel.open(UnixDomainSocketAddress.of(path))) {
+            throw error("another daemon is listening on %s", path);
+        } catch (IOException excp) {
+            Files.delete(path);
+        }
+    }
+
+    /** Return an executor that runs each task in a new virtual thread if
+     *  the JVM has them (Java 21 and later), and otherwise in a pooled
+     *  daemon thread. */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "enigma-client");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** Machines as configured by each configuration file, indexed by
+     *  name, before any settings. */
+    private final Map<String, Machine> _configs;
+
+    /** Name of the first configuration. */
+    private final String _default;
+
+    /** Listening socket. */
+    private final ServerSocketChannel _server;
+
+    /** File of my Unix domain socket, or null for TCP. */
+    private final Path _socketPath;
+}
@@ -0,0 +1,241 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Daemon class.
+ *  @author Rayan Taghizadeh
+ */
+public class DaemonTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Settings used by the tests. */
+    private static final String SETTINGS = "* B Beta III I AXL (YF) (ZH)";
+
+    /** Return a machine with four slots, two pawls and a few of the
+     *  naval rotors. */
+    private static Machine machine() {
+        return navalMachine(4, 2, "I", "III", "Beta", "B");
+    }
+
+    /** A connection to a daemon. */
+    private static class Client implements AutoCloseable {
+
+        /** A connection to the daemon at ADDRESS, in the form given to
+         *  the Daemon constructor. */
+        Client(String address) throws IOException {
+            SocketAddress server = address.matches("\\d+")
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                        Integer.parseInt(address))
+                : UnixDomainSocketAddress.of(address);
+            _channel = SocketChannel.open(server);
+            _in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(_channel)));
+            _out = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(_channel)));
+        }
+
+        /** Send a request for the conversion of MSG by the configuration
+         *  named CONFIG, after SETTINGS, and return the converted
+         *  message.  A FAILED response is thrown as an EnigmaException
+         *  carrying its message. */
+        String request(String config, String settings, String msg)
+            throws IOException {
+            Daemon.writeFrame(_out, config + "\n" + settings + "\n" + msg);
+            _out.flush();
+            int status = _in.readUnsignedByte();
+            String response = Daemon.readFrame(_in);
+            if (status != Daemon.OK) {
+                throw new EnigmaException(response);
+            }
+            return response;
+        }
+
+        @Override
+        public void close() throws IOException {
+            _channel.close();
+        }
+
+        /** My connection. */
+        private final SocketChannel _channel;
+
+        /** Buffered stream of responses read from _channel. */
+        private final DataInputStream _in;
+
+        /** Buffered stream of requests written to _channel. */
+        private final DataOutputStream _out;
+    }
+
+    /** Return the conversion of MSG at SETTINGS by a fresh machine. */
+    private static String expected(String settings, String msg) {
+        Machine mach = machine();
+        Main.setUp(mach, settings);
+        return mach.convert(msg);
+    }
+
+    /** Start a daemon for the configuration "naval" on a socket in a
+     *  temporary directory. */
+    @Before
+    public void start() throws IOException {
+        _dir = Files.createTempDirectory("enigma");
+        _socket = _dir.resolve("daemon.sock").toString();
+        LinkedHashMap<String, Machine> configs = new LinkedHashMap<>();
+        configs.put("naval", machine());
+        _daemon = new Daemon(configs, _socket);
+        _server = new Thread(_daemon::serve);
+        _server.start();
+    }
+
+    /** Stop the daemon. */
+    @After
+    public void stop() throws Exception {
+        _daemon.close();
+        _server.join();
+        assertFalse(Files.exists(_dir.resolve("daemon.sock")));
+        Files.delete(_dir);
+    }
+
+    @Test
+    public void testConvert() throws IOException {
+        try (Client client = new Client(_socket)) {
+            assertEquals(expected(SETTINGS, "HELLOWORLD"),
+                         client.request("naval", SETTINGS, "HELLO WORLD"));
+            assertEquals(expected(SETTINGS, "HELLOWORLDAGAIN")
+                         .substring(10),
+                         client.request("", "", "AGAIN"));
+            assertEquals(expected(SETTINGS, "X"),
+                         client.request("", SETTINGS, "X\n"));
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        try (Client client = new Client(_socket)) {
+            for (String[] request : new String[][] {
+                    { "", "", "ABC" },
+                    { "other", SETTINGS, "ABC" },
+                    { "", "* B Beta III", "ABC" },
+                    { "", SETTINGS, "abc" } }) {
+                try {
+                    client.request(request[0], request[1], request[2]);
+                    fail("no error for " + String.join("/", request));
+                } catch (EnigmaException excp) {
+                    /* Expected; the connection remains usable. */
+                }
+            }
+            assertEquals(expected(SETTINGS, "ABC"),
+                         client.request("", SETTINGS, "ABC"));
+        }
+    }
+
+    @Test
+    public void testConcurrentClients() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> clients = new ArrayList<>();
+            for (int k = 0; k < 64; k += 1) {
+                String settings = "* B Beta III I "
+                    + UPPER_STRING.substring(k % 24, k % 24 + 3);
+                clients.add(pool.submit(() -> {
+                    try (Client client = new Client(_socket)) {
+                        StringBuilder msg = new StringBuilder();
+                        StringBuilder result = new StringBuilder();
+                        for (int i = 0; i < 20; i += 1) {
+                            String part = UPPER_STRING.substring(i, i + 5);
+                            msg.append(part);
+                            result.append(client.request(
+                                "naval", i == 0 ? settings : "", part));
+                        }
+                        assertEquals(expected(settings, msg.toString()),
+                                     result.toString());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> client : clients) {
+                client.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testServesAcceptedAfterClose() throws Exception {
+        try (Client client = new Client(_socket)) {
+            assertEquals(expected(SETTINGS, "BEFORE"),
+                         client.request("", SETTINGS, "BEFORE"));
+            _daemon.close();
+            assertEquals(expected(SETTINGS, "AFTER"),
+                         client.request("", SETTINGS, "AFTER"));
+            assertTrue(_server.isAlive());
+        }
+        _server.join();
+    }
+
+    @Test
+    public void testTcp() throws IOException {
+        LinkedHashMap<String, Machine> configs = new LinkedHashMap<>();
+        configs.put("naval", machine());
+        Daemon daemon = new Daemon(configs, "0");
+        Thread server = new Thread(daemon::serve);
+        server.start();
+        try {
+            int port = ((InetSocketAddress) daemon.address()).getPort();
+            try (Client client = new Client(Integer.toString(port))) {
+                assertEquals(expected(SETTINGS, "TCP"),
+                             client.request("", SETTINGS, "TCP"));
+            }
+        } finally {
+            daemon.close();
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testSocketInUse() {
+        LinkedHashMap<String, Machine> configs = new LinkedHashMap<>();
+        configs.put("naval", machine());
+        new Daemon(configs, _socket);
+    }
+
+    /** Temporary directory holding the socket. */
+    private Path _dir;
+
+    /** Name of the daemon's socket. */
+    private String _socket;
+
+    /** Daemon under test. */
+    private Daemon _daemon;
+
+    /** Thread running the daemon. */
+    private Thread _server;
+}
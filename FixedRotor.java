@@ -14,7 +14,7 @@ class FixedRotor extends Rotor {
     }
 
     @Override
-    boolean atNotch() {
+    boolean atNotch(int setting) {
         return false;
     }
 }
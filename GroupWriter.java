@@ -0,0 +1,211 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static enigma.EnigmaException.*;
+
+/** Writes converted message lines in groups of five characters separated
+ *  by blanks (the last group of a line may be shorter).  Characters may
+ *  arrive in pieces of any size; only a fixed buffer is held.
+ *
+ *  A GroupWriter writes either characters to a Writer, or bytes to an
+ *  OutputStream.  In the second case it encodes US-ASCII, ISO-8859-1 or
+ *  UTF-8 itself, straight into a reusable byte buffer, producing exactly
+ *  the bytes that an OutputStreamWriter would.
+ *  @author Rayan Taghizadeh
+ */
+class GroupWriter {
+
+    /** Number of characters per group. */
+    static final int GROUP = 5;
+
+    /** A GroupWriter sending its output to OUT. */
+    GroupWriter(Writer out) {
+        _out = out;
+        _stream = null;
+        _chars = new char[BUFFER_SIZE];
+        _bytes = null;
+        _limit = 0;
+        _utf8 = false;
+    }
+
+    /** A GroupWriter sending its output to OUT, encoded with CHARSET,
+     *  which must be US-ASCII, ISO-8859-1 or UTF-8. */
+    private GroupWriter(OutputStream out, Charset charset) {
+        _out = null;
+        _stream = out;
+        _chars = null;
+        _bytes = new byte[BUFFER_SIZE];
+        _utf8 = charset.equals(StandardCharsets.UTF_8);
+        _limit = charset.equals(StandardCharsets.ISO_8859_1) ? 0x100 : 0x80;
+    }
+
+    /** Return a GroupWriter sending its output to OUT, encoded with
+     *  CHARSET.  It encodes the output itself if it can, and otherwise
+     *  uses an OutputStreamWriter. */
+    static GroupWriter forStream(OutputStream out, Charset charset) {
+        if (charset.equals(StandardCharsets.US_ASCII)
+            || charset.equals(StandardCharsets.ISO_8859_1)
+            || charset.equals(StandardCharsets.UTF_8)) {
+            return new GroupWriter(out, charset);
+        }
+        return new GroupWriter(new OutputStreamWriter(out, charset));
+    }
+
+    /** Append the LEN characters of CHARS starting at OFF to the current
+     *  line. */
+    void write(char[] chars, int off, int len) {
+        int end = off + len;
+        while (off < end) {
+            int room = GROUP - _count % GROUP;
+            if (room == GROUP && _count > 0) {
+                put(' ');
+            }
+            int n = Math.min(room, end - off);
+            if (_bytes != null) {
+                encode(chars, off, n);
+            } else {
+                for (int i = off; i < off + n; i += 1) {
+                    put(chars[i]);
+                }
+            }
+            _count += n;
+            off += n;
+        }
+    }
+
+    /** End the current line. */
+    void endLine() {
+        for (int i = 0; i < LINE_SEPARATOR.length(); i += 1) {
+            put(LINE_SEPARATOR.charAt(i));
+        }
+        _count = 0;
+    }
+
+    /** Write out everything buffered so far. */
+    void flush() {
+        try {
+            if (_bytes != null) {
+                _stream.write(_bytes, 0, _len);
+                _stream.flush();
+            } else {
+                _out.write(_chars, 0, _len);
+                _out.flush();
+            }
+            _len = 0;
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+    }
+
+    /** Buffer C for output. */
+    private void put(char c) {
+        if (_bytes != null) {
+            encode(c);
+        } else {
+            if (_len == _chars.length) {
+                flush();
+            }
+            _chars[_len++] = c;
+        }
+    }
+
+    /** Encode the N <= GROUP characters of CHARS starting at OFF into
+     *  _bytes. */
+    private void encode(char[] chars, int off, int n) {
+        if (_len + GROUP * MAX_BYTES > _bytes.length) {
+            flush();
+        }
+        for (int i = off; i < off + n; i += 1) {
+            char c = chars[i];
+            if (c < 0x80 && _highSurrogate == 0) {
+                _bytes[_len++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    /** Encode C into _bytes as an OutputStreamWriter would.  A high
+     *  surrogate is held until the next character shows whether it
+     *  starts a pair. */
+    private void encode(char c) {
+        if (_len + MAX_BYTES > _bytes.length) {
+            flush();
+        }
+        char high = _highSurrogate;
+        _highSurrogate = 0;
+        if (high != 0) {
+            if (Character.isLowSurrogate(c)) {
+                int code = Character.toCodePoint(high, c);
+                if (_utf8) {
+                    _bytes[_len++] = (byte) (0xF0 | code >> 18);
+                    _bytes[_len++] = (byte) (0x80 | code >> 12 & 0x3F);
+                    _bytes[_len++] = (byte) (0x80 | code >> 6 & 0x3F);
+                    _bytes[_len++] = (byte) (0x80 | code & 0x3F);
+                } else {
+                    _bytes[_len++] = '?';
+                }
+                return;
+            }
+            _bytes[_len++] = '?';
+        }
+        if (Character.isHighSurrogate(c)) {
+            _highSurrogate = c;
+        } else if (c < _limit) {
+            _bytes[_len++] = (byte) c;
+        } else if (!_utf8 || Character.isLowSurrogate(c)) {
+            _bytes[_len++] = '?';
+        } else if (c < 0x800) {
+            _bytes[_len++] = (byte) (0xC0 | c >> 6);
+            _bytes[_len++] = (byte) (0x80 | c & 0x3F);
+        } else {
+            _bytes[_len++] = (byte) (0xE0 | c >> 12);
+            _bytes[_len++] = (byte) (0x80 | c >> 6 & 0x3F);
+            _bytes[_len++] = (byte) (0x80 | c & 0x3F);
+        }
+    }
+
+    /** Line terminator, as used by PrintStream.println. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** Size of the output buffer. */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /** Most bytes that encode(char) adds. */
+    private static final int MAX_BYTES = 4;
+
+    /** Destination of output in character mode, or null. */
+    private final Writer _out;
+
+    /** Destination of output in byte mode, or null. */
+    private final OutputStream _stream;
+
+    /** Characters not yet written to _out, or null. */
+    private final char[] _chars;
+
+    /** Bytes not yet written to _stream, or null. */
+    private final byte[] _bytes;
+
+    /** In byte mode, characters below _limit are encoded as a byte of
+     *  the same value; others are replaced by '?', unless _utf8. */
+    private final int _limit;
+
+    /** True iff encoding UTF-8. */
+    private final boolean _utf8;
+
+    /** Number of characters or bytes buffered. */
+    private int _len;
+
+    /** High surrogate held by encode, or 0. */
+    private char _highSurrogate;
+
+    /** Number of message characters written on the current line. */
+    private int _count;
+}
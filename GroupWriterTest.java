@@ -0,0 +1,80 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the GroupWriter class.
+ *  @author Rayan Taghizadeh
+ */
+public class GroupWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Characters from which test lines are drawn: ASCII, Latin-1, other
+     *  BMP characters, and both halves of a surrogate pair. */
+    private static final String CHARS =
+        "ABCxyz019\u00e4\u00d6\u00ff\u0100\u0416\u20ac\uffe1"
+        + "\ud83d\ude00";
+
+    /** Return the output of writing LINES, each in pieces of at most
+     *  PIECE characters, through a GroupWriter encoding with CHARSET into
+     *  bytes if BYTES, and otherwise through an OutputStreamWriter. */
+    private static byte[] write(char[][] lines, int piece, Charset charset,
+                                boolean bytes) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        GroupWriter out = bytes ? GroupWriter.forStream(result, charset)
+            : new GroupWriter(new OutputStreamWriter(result, charset));
+        for (char[] line : lines) {
+            for (int i = 0; i < line.length; i += piece) {
+                out.write(line, i, Math.min(piece, line.length - i));
+            }
+            out.endLine();
+        }
+        out.flush();
+        return result.toByteArray();
+    }
+
+    @Test
+    public void testGroups() {
+        char[][] lines = { "ABCDEFGHIJK".toCharArray(), {},
+                           "ABCDE".toCharArray() };
+        String nl = System.lineSeparator();
+        for (int piece = 1; piece < 7; piece += 1) {
+            assertEquals("ABCDE FGHIJ K" + nl + nl + "ABCDE" + nl,
+                         new String(write(lines, piece,
+                                          StandardCharsets.US_ASCII, true),
+                                    StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testEncodings() {
+        Random random = new Random(7);
+        char[][] lines = new char[300][];
+        for (int k = 0; k < lines.length; k += 1) {
+            lines[k] = new char[random.nextInt(100)];
+            for (int i = 0; i < lines[k].length; i += 1) {
+                lines[k][i] = CHARS.charAt(random.nextInt(CHARS.length()));
+            }
+        }
+        for (Charset charset : new Charset[] {
+                StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1,
+                StandardCharsets.UTF_8, StandardCharsets.UTF_16LE }) {
+            for (int piece : new int[] { 1, 3, 1000 }) {
+                assertArrayEquals(charset + " " + piece,
+                                  write(lines, piece, charset, false),
+                                  write(lines, piece, charset, true));
+            }
+        }
+    }
+}
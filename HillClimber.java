@@ -0,0 +1,647 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only attack.  Every rotor order and starting position is
+ *  first scored by the index of coincidence of its decrypt with an empty
+ *  plugboard, and the TOP best are kept.  From each of those, several
+ *  independent hill climbs then build up a plugboard one pair at a time,
+ *  keeping each change that raises the score: first the index of
+ *  coincidence, then, if n-gram statistics are given, the n-gram
+ *  log-likelihood of the decrypt.
+ *
+ *  A climb tries hundreds of plugboard changes for every one it keeps, so
+ *  a change is scored without decrypting the whole message again.  The
+ *  scrambler at every message position is tabulated once per climb, and
+ *  the climb keeps, for each letter, the positions at which it enters or
+ *  leaves the scrambler.  A change to the partners of a few letters then
+ *  touches only the positions listed under those letters, and each such
+ *  position updates the letter counts and the few n-grams covering it.
+ *
+ *  Both the search and the climbs run as independent tasks in a fork-join
+ *  pool.
+ *  @author Rayan Taghizadeh
+ */
+class HillClimber {
+
+    /** Number of starting positions kept for climbing. */
+    static final int TOP = 64;
+
+    /** Number of climbs from each position kept. */
+    static final int RESTARTS = 4;
+
+    /** Starting positions scored by one task without splitting. */
+    static final int MIN_TASK = 1 << 10;
+
+    /** A solver for the machines configurable from the available rotors
+     *  of CONFIG, decrypting the message CIPHER and scoring with NGRAMS,
+     *  or with the index of coincidence alone if NGRAMS is null. */
+    HillClimber(Machine config, String cipher, NGrams ngrams) {
+        _config = config;
+        _alphabet = config.alphabet();
+        _size = _alphabet.size();
+        _slots = config.numRotors();
+        _ngrams = ngrams;
+        if (ngrams != null && ngrams.alphabet().size() != _size) {
+            throw error("n-grams do not match alphabet");
+        }
+        if (cipher.isEmpty()) {
+            throw error("no ciphertext");
+        }
+        double positions = Math.pow(_size, _slots - 1);
+        if (positions >= Long.MAX_VALUE) {
+            throw error("too many rotor positions to search");
+        }
+        _positions = (long) positions;
+        _cipher = KeySpace.indices(_alphabet, cipher);
+        int[] count = new int[_size];
+        for (int c : _cipher) {
+            count[c] += 1;
+        }
+        _byCipher = new int[_size][];
+        for (int a = 0; a < _size; a += 1) {
+            _byCipher[a] = new int[count[a]];
+            count[a] = 0;
+        }
+        for (int i = 0; i < _cipher.length; i += 1) {
+            _byCipher[_cipher[i]][count[_cipher[i]]++] = i;
+        }
+        _maxPairs = Math.min(_size / 2, MAX_PAIRS);
+        _orders = KeySpace.rotorOrders(config);
+    }
+
+    /** Search in POOL, and return the settings lines of the best RESULTS
+     *  distinct solutions found, best first. */
+    List<String> solve(ForkJoinPool pool, int results) {
+        Ranking top = new Ranking(TOP);
+        for (int r = 0; r < _orders.size(); r += 1) {
+            top.addAll(pool.invoke(new Search(r, 0, _positions)));
+        }
+        ArrayList<Callable<Solution>> climbs = new ArrayList<>();
+        for (Solution start : top.sorted()) {
+            for (int k = 0; k < RESTARTS; k += 1) {
+                long seed = start._position * RESTARTS + k;
+                climbs.add(() -> climb(start, seed));
+            }
+        }
+        Ranking best = new Ranking(Integer.MAX_VALUE);
+        try {
+            for (Future<Solution> climb : pool.invokeAll(climbs)) {
+                best.add(climb.get());
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("search interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw error("search failed: %s", excp.getCause());
+        }
+        ArrayList<String> lines = new ArrayList<>();
+        HashSet<String> seen = new HashSet<>();
+        for (Solution s : best.sorted()) {
+            String line = s.toString();
+            if (lines.size() < results && seen.add(line)) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /** Return the result of hill-climbing from the rotor order and
+     *  starting position of START, beginning with an empty plugboard
+     *  if SEED is a multiple of RESTARTS, and otherwise with random
+     *  pairs chosen using SEED. */
+    Solution climb(Solution start, long seed) {
+        Decryption d = new Decryption(start._order, start._settings);
+        Random random = new Random(seed);
+        if (seed % RESTARTS != 0) {
+            int[] plug = d.plugboard();
+            for (int n = random.nextInt(_maxPairs + 1); n > 0; n -= 1) {
+                int a = random.nextInt(_size), b = random.nextInt(_size);
+                if (plug[a] == a && plug[b] == b && a != b) {
+                    plug[a] = b;
+                    plug[b] = a;
+                }
+            }
+            d.setPlugboard(plug);
+        }
+        d.climb(false);
+        if (_ngrams != null) {
+            d.climb(true);
+        }
+        return new Solution(start._order, start._position, start._settings,
+                            d.plugboard(), d.score(_ngrams != null));
+    }
+
+    /** Return a new decryption of the message with rotor order #ORDER at
+     *  starting SETTINGS and an empty plugboard. */
+    Decryption decryption(int order, int[] settings) {
+        return new Decryption(order, settings);
+    }
+
+    /** Return the number of rotor orders I search. */
+    int numOrders() {
+        return _orders.size();
+    }
+
+    /** A rotor order, starting position and plugboard, and their
+     *  score. */
+    class Solution implements Comparable<Solution> {
+
+        /** The solution with rotor order #ORDER, starting position number
+         *  POSITION, whose settings are SETTINGS, plugboard PLUG and
+         *  score SCORE. */
+        Solution(int order, long position, int[] settings, int[] plug,
+                 double score) {
+            _order = order;
+            _position = position;
+            _settings = settings.clone();
+            _plug = plug == null ? null : plug.clone();
+            _score = score;
+        }
+
+        /** Return my score. */
+        double score() {
+            return _score;
+        }
+
+        /** Order solutions by descending score, then by rotor order and
+         *  position. */
+        @Override
+        public int compareTo(Solution other) {
+            return compareTo(other._order, other._position, other._score);
+        }
+
+        /** Compare me, as compareTo does, with a solution with rotor order
+         *  #ORDER, starting position number POSITION and score SCORE. */
+        int compareTo(int order, long position, double score) {
+            if (_score != score) {
+                return Double.compare(score, _score);
+            }
+            if (_order != order) {
+                return Integer.compare(_order, order);
+            }
+            return Long.compare(_position, position);
+        }
+
+        /** Return my settings line. */
+        @Override
+        public String toString() {
+            int[] plug = _plug;
+            if (plug == null) {
+                plug = new int[_size];
+                Arrays.fill(plug, -1);
+            }
+            return KeySpace.settingsLine(_alphabet, _orders.get(_order),
+                                         _settings, plug);
+        }
+
+        /** Index of my rotor order. */
+        private final int _order;
+
+        /** Number of my starting position. */
+        private final long _position;
+
+        /** Rotor settings, indexed by slot. */
+        private final int[] _settings;
+
+        /** Plugboard partners, or null for none. */
+        private final int[] _plug;
+
+        /** My score. */
+        private final double _score;
+    }
+
+    /** The best solutions added to me, up to a fixed number. */
+    private static class Ranking {
+
+        /** A ranking keeping the best LIMIT solutions. */
+        Ranking(int limit) {
+            _limit = limit;
+        }
+
+        /** Add S, dropping the worst solution if I am full. */
+        void add(Solution s) {
+            _queue.add(s);
+            if (_queue.size() > _limit) {
+                _queue.poll();
+            }
+        }
+
+        /** Return true iff add would keep a solution with rotor order
+         *  #ORDER, starting position number POSITION and score SCORE. */
+        boolean keeps(int order, long position, double score) {
+            return _queue.size() < _limit
+                || _queue.peek().compareTo(order, position, score) > 0;
+        }
+
+        /** Add all the solutions in OTHER. */
+        void addAll(Ranking other) {
+            for (Solution s : other._queue) {
+                add(s);
+            }
+        }
+
+        /** Return my solutions, best first. */
+        List<Solution> sorted() {
+            ArrayList<Solution> result = new ArrayList<>(_queue);
+            result.sort(null);
+            return result;
+        }
+
+        /** Largest number of solutions kept. */
+        private final int _limit;
+
+        /** Solutions kept, worst first. */
+        private final PriorityQueue<Solution> _queue =
+            new PriorityQueue<>((x, y) -> y.compareTo(x));
+    }
+
+    /** The task of scoring starting positions LO .. HI-1 of one rotor
+     *  order with an empty plugboard. */
+    private class Search extends RecursiveTask<Ranking> {
+
+        /** A task scoring positions LO .. HI-1 of rotor order #ORDER. */
+        Search(int order, long lo, long hi) {
+            _order = order;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected Ranking compute() {
+            if (_hi - _lo > MIN_TASK) {
+                long mid = (_lo + _hi) >>> 1;
+                Search left = new Search(_order, _lo, mid);
+                left.fork();
+                Ranking result = new Search(_order, mid, _hi).compute();
+                result.addAll(left.join());
+                return result;
+            }
+            Ranking result = new Ranking(TOP);
+            Scrambler scrambler = scrambler(_order);
+            Stepper stepper = scrambler.stepper();
+            int[] start = KeySpace.startSettings(_slots, _size, _lo);
+            int[] state = new int[_slots];
+            int[] count = new int[_size];
+            for (long pos = _lo; pos < _hi; pos += 1) {
+                System.arraycopy(start, 0, state, 0, _slots);
+                Arrays.fill(count, 0);
+                long sum = 0;
+                for (int c : _cipher) {
+                    stepper.step(state);
+                    int p = scrambler.convert(c, state);
+                    sum += count[p];
+                    count[p] += 1;
+                }
+                if (result.keeps(_order, pos, sum)) {
+                    result.add(new Solution(_order, pos, start, null, sum));
+                }
+                KeySpace.nextStart(start, _size);
+            }
+            return result;
+        }
+
+        /** Index of the rotor order searched. */
+        private final int _order;
+
+        /** Range of starting positions searched. */
+        private final long _lo, _hi;
+    }
+
+    /** Return a new Scrambler for rotor order #ORDER. */
+    private Scrambler scrambler(int order) {
+        Machine machine = _config.fork();
+        machine.insertRotors(_orders.get(order));
+        return new Scrambler(machine);
+    }
+
+    /** The decryption of the message with one rotor order and starting
+     *  position, under a plugboard that may be changed cheaply.  Message
+     *  position i decrypts to S(E_i(S(c_i))), where c_i is the cipher
+     *  letter, S the plugboard and E_i the scrambler there. */
+    class Decryption {
+
+        /** The decryption with rotor order #ORDER at SETTINGS and an empty
+         *  plugboard. */
+        Decryption(int order, int[] settings) {
+            int len = _cipher.length;
+            Scrambler scrambler = scrambler(order);
+            _scrambler = new int[len * _size];
+            int[] state = settings.clone();
+            for (int i = 0; i < len; i += 1) {
+                scrambler.stepper().step(state);
+                int[] upper = scrambler.upper(state, -1);
+                for (int c = 0; c < _size; c += 1) {
+                    _scrambler[i * _size + c] =
+                        scrambler.convert(c, state[_slots - 1], upper);
+                }
+            }
+            _plug = new int[_size];
+            _middle = new int[len];
+            _plain = new int[len];
+            _bucket = new int[_size][len];
+            _bucketSize = new int[_size];
+            _slot = new int[len];
+            _counts = new int[_size];
+            _stamp = new int[len];
+            _affected = new int[len];
+            _n = _ngrams == null ? 0 : _ngrams.length();
+            _grams = new double[Math.max(0, len - _n + 1)];
+            _gramStamp = new int[_grams.length];
+            _changed = new int[len];
+            for (int a = 0; a < _size; a += 1) {
+                _plug[a] = a;
+            }
+            for (int i = 0; i < len; i += 1) {
+                int m = _scrambler[i * _size + _cipher[i]];
+                _middle[i] = m;
+                _slot[i] = _bucketSize[m];
+                _bucket[m][_bucketSize[m]++] = i;
+                _plain[i] = m;
+                _coincidences += _counts[m];
+                _counts[m] += 1;
+            }
+            if (_ngrams != null) {
+                for (int j = 0; j < _grams.length; j += 1) {
+                    _grams[j] = _ngrams.score(_plain, j);
+                    _likelihood += _grams[j];
+                }
+            }
+        }
+
+        /** Return a copy of my plugboard, as the partner of each
+         *  letter. */
+        int[] plugboard() {
+            return _plug.clone();
+        }
+
+        /** Return my decrypt, as alphabet indices. */
+        int[] plain() {
+            return _plain.clone();
+        }
+
+        /** Return my n-gram log-likelihood if NGRAM, and otherwise the
+         *  number of pairs of positions in my decrypt holding the same
+         *  letter, which is proportional to its index of
+         *  coincidence. */
+        double score(boolean ngram) {
+            return ngram ? _likelihood : _coincidences;
+        }
+
+        /** Change my plugboard to PLUG, which gives the partner of each
+         *  letter, updating the decrypt and scores incrementally. */
+        void setPlugboard(int[] plug) {
+            int[] letters = new int[_size];
+            int n = 0;
+            for (int a = 0; a < _size; a += 1) {
+                if (plug[a] != _plug[a]) {
+                    letters[n++] = a;
+                }
+            }
+            System.arraycopy(plug, 0, _plug, 0, _size);
+            update(letters, n);
+        }
+
+        /** Hill-climb my plugboard until no single change improves my
+         *  score, scoring by n-grams if NGRAM and otherwise by the index
+         *  of coincidence.  Each change either unplugs a pair, or plugs
+         *  together two letters, first unplugging them. */
+        void climb(boolean ngram) {
+            int[] letters = new int[4];
+            int[] saved = new int[4];
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int a = 0; a < _size; a += 1) {
+                    for (int b = a + 1; b < _size; b += 1) {
+                        double before = score(ngram);
+                        int n = 0;
+                        letters[n++] = a;
+                        letters[n++] = b;
+                        if (_plug[a] != a && _plug[a] != b) {
+                            letters[n++] = _plug[a];
+                        }
+                        if (_plug[b] != b && _plug[b] != a) {
+                            letters[n++] = _plug[b];
+                        }
+                        for (int i = 0; i < n; i += 1) {
+                            saved[i] = _plug[letters[i]];
+                        }
+                        if (_plug[a] == b) {
+                            _plug[a] = a;
+                            _plug[b] = b;
+                        } else {
+                            if (_plug[a] == a && _plug[b] == b
+                                && pairs() == _maxPairs) {
+                                continue;
+                            }
+                            for (int i = 0; i < n; i += 1) {
+                                _plug[letters[i]] = letters[i];
+                            }
+                            _plug[a] = b;
+                            _plug[b] = a;
+                        }
+                        update(letters, n);
+                        if (score(ngram) > before) {
+                            improved = true;
+                        } else {
+                            for (int i = 0; i < n; i += 1) {
+                                _plug[letters[i]] = saved[i];
+                            }
+                            update(letters, n);
+                        }
+                    }
+                }
+            }
+        }
+
+        /** Return the number of pairs on my plugboard. */
+        private int pairs() {
+            int n = 0;
+            for (int a = 0; a < _size; a += 1) {
+                if (_plug[a] > a) {
+                    n += 1;
+                }
+            }
+            return n;
+        }
+
+        /** Bring the decrypt and scores up to date after the partners of
+         *  the first N of LETTERS have changed. */
+        private void update(int[] letters, int n) {
+            _epoch += 1;
+            int count = 0;
+            for (int k = 0; k < n; k += 1) {
+                int x = letters[k];
+                for (int i : _byCipher[x]) {
+                    if (_stamp[i] != _epoch) {
+                        _stamp[i] = _epoch;
+                        _affected[count++] = i;
+                    }
+                }
+                int[] bucket = _bucket[x];
+                for (int j = 0; j < _bucketSize[x]; j += 1) {
+                    int i = bucket[j];
+                    if (_stamp[i] != _epoch) {
+                        _stamp[i] = _epoch;
+                        _affected[count++] = i;
+                    }
+                }
+            }
+            int changed = 0;
+            for (int k = 0; k < count; k += 1) {
+                int i = _affected[k];
+                int m = _scrambler[i * _size + _plug[_cipher[i]]];
+                if (m != _middle[i]) {
+                    move(i, m);
+                }
+                int p = _plug[m];
+                int old = _plain[i];
+                if (p != old) {
+                    _counts[old] -= 1;
+                    _coincidences -= _counts[old];
+                    _coincidences += _counts[p];
+                    _counts[p] += 1;
+                    _plain[i] = p;
+                    _changed[changed++] = i;
+                }
+            }
+            if (_ngrams != null && changed > 0) {
+                rescoreGrams(changed);
+            }
+        }
+
+        /** Rescore the n-grams covering the first CHANGED positions in
+         *  _changed. */
+        private void rescoreGrams(int changed) {
+            _gramEpoch += 1;
+            for (int k = 0; k < changed; k += 1) {
+                int i = _changed[k];
+                int lo = Math.max(0, i - _n + 1);
+                int hi = Math.min(i, _grams.length - 1);
+                for (int j = lo; j <= hi; j += 1) {
+                    if (_gramStamp[j] != _gramEpoch) {
+                        _gramStamp[j] = _gramEpoch;
+                        double score = _ngrams.score(_plain, j);
+                        _likelihood += score - _grams[j];
+                        _grams[j] = score;
+                    }
+                }
+            }
+        }
+
+        /** Move position I from the bucket of its old middle letter to
+         *  that of M. */
+        private void move(int i, int m) {
+            int old = _middle[i];
+            int last = _bucket[old][--_bucketSize[old]];
+            _bucket[old][_slot[i]] = last;
+            _slot[last] = _slot[i];
+            _slot[i] = _bucketSize[m];
+            _bucket[m][_bucketSize[m]++] = i;
+            _middle[i] = m;
+        }
+
+        /** _scrambler[i * size + c] is E_i(c). */
+        private final int[] _scrambler;
+
+        /** Plugboard partner of each letter. */
+        private final int[] _plug;
+
+        /** _middle[i] is E_i(S(c_i)). */
+        private final int[] _middle;
+
+        /** Decrypted message. */
+        private final int[] _plain;
+
+        /** _bucket[m][0 .. _bucketSize[m]-1] are the positions whose
+         *  middle letter is M, in no particular order. */
+        private final int[][] _bucket;
+
+        /** Number of positions in each bucket. */
+        private final int[] _bucketSize;
+
+        /** _slot[i] is the index of position I in its bucket. */
+        private final int[] _slot;
+
+        /** Number of times each letter occurs in the decrypt. */
+        private final int[] _counts;
+
+        /** Number of pairs of positions in the decrypt holding the same
+         *  letter. */
+        private long _coincidences;
+
+        /** Length of n-grams, or 0 if there are none. */
+        private final int _n;
+
+        /** Log-likelihood of the n-gram at each position. */
+        private final double[] _grams;
+
+        /** Sum of _grams. */
+        private double _likelihood;
+
+        /** _stamp[i] == _epoch iff position I is in _affected. */
+        private final int[] _stamp;
+
+        /** Current update, for _stamp. */
+        private int _epoch;
+
+        /** Positions that may change in the current update. */
+        private final int[] _affected;
+
+        /** Positions whose decrypt changed in the current update. */
+        private final int[] _changed;
+
+        /** _gramStamp[j] == _gramEpoch iff n-gram J has been rescored in
+         *  the current update. */
+        private final int[] _gramStamp;
+
+        /** Current update, for _gramStamp. */
+        private int _gramEpoch;
+    }
+
+    /** Largest number of plugboard pairs tried on the usual alphabet. */
+    private static final int MAX_PAIRS = 10;
+
+    /** Machine whose available rotors are searched. */
+    private final Machine _config;
+
+    /** Alphabet of the machines. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet and number of rotor slots. */
+    private final int _size, _slots;
+
+    /** Number of starting positions of each rotor order. */
+    private final long _positions;
+
+    /** N-gram statistics, or null. */
+    private final NGrams _ngrams;
+
+    /** Message, as indices. */
+    private final int[] _cipher;
+
+    /** _byCipher[a] are the positions at which the message has A. */
+    private final int[][] _byCipher;
+
+    /** Largest number of plugboard pairs tried. */
+    private final int _maxPairs;
+
+    /** Rotor orders searched. */
+    private final ArrayList<String[]> _orders;
+}
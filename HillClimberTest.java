@@ -0,0 +1,124 @@
+package enigma;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the HillClimber class.
+ *  @author Rayan Taghizadeh
+ */
+public class HillClimberTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /** Settings used to encipher the test message. */
+    private static final String SETTINGS =
+        "* B Beta II III KCX (AQ) (GM) (TZ)";
+
+    /** Test plaintext. */
+    private static final String PLAIN =
+        "ITWASTHEBESTOFTIMESITWASTHEWORSTOFTIMESITWASTHEAGEOFWISDOMIT"
+        + "WASTHEAGEOFFOOLISHNESSITWASTHEEPOCHOFBELIEFITWASTHEEPOCHOF"
+        + "INCREDULITYITWASTHESEASONOFLIGHTITWASTHESEASONOFDARKNESSIT"
+        + "WASTHESPRINGOFHOPEITWASTHEWINTEROFDESPAIRWEHADEVERYTHING"
+        + "BEFOREUSWEHADNOTHINGBEFOREUSWEWEREALLGOINGDIRECTTOHEAVEN"
+        + "WEWEREALLGOINGDIRECTTHEOTHERWAYINSHORTTHEPERIODWASSOFAR"
+        + "LIKETHEPRESENTPERIODTHATSOMEOFITSNOISIESTAUTHORITIES";
+
+    /** Return a machine with four slots, two pawls and a few of the
+     *  naval rotors. */
+    private static Machine machine() {
+        return navalMachine(4, 2, "I", "II", "III", "Beta", "B");
+    }
+
+    /** Return the enciphered test message. */
+    private static String cipher() {
+        Machine mach = machine();
+        Main.setUp(mach, SETTINGS);
+        return mach.convert(PLAIN);
+    }
+
+    /** Return 3-gram statistics gathered from the test plaintext. */
+    private static NGrams ngrams() {
+        HashMap<String, Long> counts = new HashMap<>();
+        for (int i = 0; i + 3 <= PLAIN.length(); i += 1) {
+            counts.merge(PLAIN.substring(i, i + 3), 1L, Long::sum);
+        }
+        return new NGrams(UPPER, counts);
+    }
+
+    /** Return the alphabet indices of TEXT. */
+    private static int[] indices(String text) {
+        int[] result = new int[text.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = UPPER.toInt(text.charAt(i));
+        }
+        return result;
+    }
+
+    @Test
+    public void testIncrementalScores() {
+        String cipher = cipher();
+        NGrams ngrams = ngrams();
+        HillClimber solver = new HillClimber(machine(), cipher, ngrams);
+        int[] settings = { 0, 3, 17, 9 };
+        HillClimber.Decryption d = solver.decryption(0, settings);
+        Random random = new Random(5);
+        for (int trial = 0; trial < 200; trial += 1) {
+            int[] plug = d.plugboard();
+            int a = random.nextInt(26), b = random.nextInt(26);
+            if (plug[a] == b) {
+                plug[a] = a;
+                plug[b] = b;
+            } else {
+                plug[plug[a]] = plug[a];
+                plug[plug[b]] = plug[b];
+                plug[a] = b;
+                plug[b] = a;
+            }
+            d.setPlugboard(plug);
+
+            Machine mach = machine();
+            mach.insertRotors(KeySpace.rotorOrders(mach).get(0));
+            mach.setPositions(settings);
+            mach.setPlugboard(new Permutation(plug, UPPER));
+            int[] plain = indices(mach.convert(cipher));
+            assertArrayEquals(plain, d.plain());
+            long pairs = 0;
+            int[] count = new int[26];
+            for (int p : plain) {
+                pairs += count[p];
+                count[p] += 1;
+            }
+            assertEquals(pairs, d.score(false), 0);
+            assertEquals(ngrams.score(plain), d.score(true), 1e-6);
+        }
+    }
+
+    @Test
+    public void testSolve() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            List<String> found =
+                new HillClimber(machine(), cipher(), ngrams()).solve(pool, 3);
+            assertEquals(SETTINGS, found.get(0));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadCipher() {
+        new HillClimber(machine(), "ABC1", null);
+    }
+}
@@ -0,0 +1,136 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The key space searched by the attacks on a machine configuration:
+ *  its rotor orders, the starting positions of each order, numbered as
+ *  in an odometer, and the settings lines that name a key.
+ *  @author Rayan Taghizadeh
+ */
+class KeySpace {
+
+    /** Not instantiable. */
+    private KeySpace() {
+    }
+
+    /** Return all the rotor orders of machines configured like CONFIG:
+     *  a reflector, then fixed rotors, then moving rotors in the slots
+     *  with pawls, each rotor used at most once, chosen from the
+     *  available rotors of CONFIG.  Rotors of each kind are taken in
+     *  order of name. */
+    static ArrayList<String[]> rotorOrders(Machine config) {
+        ArrayList<String> reflectors = new ArrayList<>();
+        ArrayList<String> fixed = new ArrayList<>();
+        ArrayList<String> moving = new ArrayList<>();
+        for (Rotor rotor : config.availableRotors()) {
+            if (rotor.reflecting()) {
+                reflectors.add(rotor.name());
+            } else if (rotor.rotates()) {
+                moving.add(rotor.name());
+            } else {
+                fixed.add(rotor.name());
+            }
+        }
+        Collections.sort(reflectors);
+        Collections.sort(fixed);
+        Collections.sort(moving);
+        ArrayList<String[]> orders = new ArrayList<>();
+        int slots = config.numRotors();
+        int pawls = config.numPawls();
+        for (String reflector : reflectors) {
+            String[] order = new String[slots];
+            order[0] = reflector;
+            arrange(order, 1, fixed, slots - pawls, moving, orders);
+        }
+        return orders;
+    }
+
+    /** Return the settings line over ALPHABET for the rotors named ORDER
+     *  at the settings SETTINGS, indexed by slot, with a plugboard pair
+     *  for each letter whose partner in PARTNER differs from it.  A
+     *  partner of -1 is unknown, and gives no pair. */
+    static String settingsLine(Alphabet alphabet, String[] order,
+                               int[] settings, int[] partner) {
+        StringBuilder line = new StringBuilder("*");
+        for (String name : order) {
+            line.append(' ').append(name);
+        }
+        line.append(' ');
+        for (int i = 1; i < order.length; i += 1) {
+            line.append(alphabet.toChar(settings[i]));
+        }
+        for (int a = 0; a < partner.length; a += 1) {
+            if (partner[a] > a) {
+                line.append(" (").append(alphabet.toChar(a))
+                    .append(alphabet.toChar(partner[a])).append(')');
+            }
+        }
+        return line.toString();
+    }
+
+    /** Return the indices in ALPHABET of the characters of TEXT. */
+    static int[] indices(Alphabet alphabet, String text) {
+        int[] result = new int[text.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            char c = text.charAt(i);
+            if (!alphabet.contains(c)) {
+                throw error("character %c not in alphabet", c);
+            }
+            result[i] = alphabet.toInt(c);
+        }
+        return result;
+    }
+
+    /** Return the rotor settings, indexed by slot, of starting position
+     *  number POS of a machine with SLOTS slots over an alphabet of SIZE
+     *  symbols.  Positions number the settings of slots 1 on as the
+     *  digits of a base-SIZE number, slot 1 the most significant; the
+     *  reflector in slot 0 does not move. */
+    static int[] startSettings(int slots, int size, long pos) {
+        int[] settings = new int[slots];
+        for (int i = slots - 1; i > 0; i -= 1) {
+            settings[i] = (int) (pos % size);
+            pos /= size;
+        }
+        return settings;
+    }
+
+    /** Advance SETTINGS, as returned by startSettings for an alphabet of
+     *  SIZE symbols, to those of the next starting position, wrapping
+     *  around after the last. */
+    static void nextStart(int[] settings, int size) {
+        for (int i = settings.length - 1; i > 0; i -= 1) {
+            settings[i] = settings[i] + 1 == size ? 0 : settings[i] + 1;
+            if (settings[i] != 0) {
+                break;
+            }
+        }
+    }
+
+    /** Add to ORDERS every completion of ORDER from slot I on, using
+     *  distinct rotors from FIXED for the slots before PAWLSTART and from
+     *  MOVING for the rest. */
+    private static void arrange(String[] order, int i, List<String> fixed,
+                                int pawlStart, List<String> moving,
+                                List<String[]> orders) {
+        if (i == order.length) {
+            orders.add(order.clone());
+            return;
+        }
+        List<String> choices = i < pawlStart ? fixed : moving;
+        for (String name : choices) {
+            boolean used = false;
+            for (int j = 1; j < i; j += 1) {
+                used |= order[j].equals(name);
+            }
+            if (!used) {
+                order[i] = name;
+                arrange(order, i + 1, fixed, pawlStart, moving, orders);
+            }
+        }
+    }
+}
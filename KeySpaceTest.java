@@ -0,0 +1,70 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeySpace class.
+ *  @author Rayan Taghizadeh
+ */
+public class KeySpaceTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void testRotorOrders() {
+        ArrayList<String[]> orders = KeySpace.rotorOrders(
+            navalMachine(4, 2, "I", "II", "III", "Beta", "Gamma", "B"));
+        assertEquals(2 * 3 * 2, orders.size());
+        HashSet<String> distinct = new HashSet<>();
+        for (String[] order : orders) {
+            assertEquals("B", order[0]);
+            assertTrue(order[1].equals("Beta") || order[1].equals("Gamma"));
+            assertFalse(order[2].equals(order[3]));
+            distinct.add(String.join(" ", order));
+        }
+        assertEquals(orders.size(), distinct.size());
+        assertEquals("B Beta I II", String.join(" ", orders.get(0)));
+    }
+
+    @Test
+    public void testSettingsLine() {
+        int[] partner = { 1, 0, -1, 2, 4 };
+        assertEquals("* B Beta III I AXL (AB)",
+                     KeySpace.settingsLine(UPPER, new String[] {
+                             "B", "Beta", "III", "I" },
+                         new int[] { 0, 0, 23, 11 }, partner));
+    }
+
+    @Test
+    public void testStartSettings() {
+        int[] settings = KeySpace.startSettings(4, 26, 0);
+        for (long pos = 0; pos < 26 * 26 * 26; pos += 1) {
+            assertArrayEquals(KeySpace.startSettings(4, 26, pos), settings);
+            KeySpace.nextStart(settings, 26);
+        }
+        assertArrayEquals(new int[4], settings);
+        assertArrayEquals(new int[] { 0, 1, 2, 3 },
+                          KeySpace.startSettings(4, 26, 26 * 26 + 2 * 26 + 3));
+    }
+
+    @Test
+    public void testIndices() {
+        assertArrayEquals(new int[] { 0, 25, 1 },
+                          KeySpace.indices(UPPER, "AZB"));
+        try {
+            KeySpace.indices(UPPER, "AzB");
+            fail("no error for a character not in the alphabet");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+}
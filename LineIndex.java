@@ -0,0 +1,244 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** An index of the lines of a file of converted message text, as written
+ *  by Main: each line holds groups of five message characters separated
+ *  by single blanks.  Entries pair the byte offset of a line start with
+ *  the number of message characters before it.  One is taken for the
+ *  first line start at least INTERVAL bytes past the previous entry, so
+ *  the index stays small and the byte holding any message character is
+ *  found by reading at most about INTERVAL bytes.
+ *
+ *  An index may be kept in a sidecar file next to the file it describes.
+ *  The sidecar records that file's size and modification time, and is
+ *  ignored once either changes.
+ *  @author Rayan Taghizadeh
+ */
+class LineIndex {
+
+    /** Least distance in bytes between consecutive entries. */
+    static final int INTERVAL = 1 << 16;
+
+    /** Suffix appended to a file's name to name its sidecar index. */
+    static final String SUFFIX = ".idx";
+
+    /** First word of a sidecar file ("EIDX"). */
+    private static final int MAGIC = 0x45494458;
+
+    /** Sidecar format version. */
+    private static final int VERSION = 1;
+
+    /** An index with COUNT entries at byte offsets BYTES holding the
+     *  message character counts CHARS, describing a file of SIZE bytes
+     *  last modified at MODIFIED and holding TOTAL characters of WIDTH
+     *  bytes each. */
+    private LineIndex(long[] bytes, long[] chars, int count, long size,
+                      long modified, long total, int width) {
+        _bytes = bytes;
+        _chars = chars;
+        _count = count;
+        _size = size;
+        _modified = modified;
+        _total = total;
+        _width = width;
+    }
+
+    /** Return an index of FILE, open on CHANNEL, whose message characters
+     *  each occupy WIDTH bytes.  A current sidecar index is used if there
+     *  is one; otherwise FILE is scanned, and if SAVE the result is
+     *  written to the sidecar. */
+    static LineIndex open(Path file, FileChannel channel, int width,
+                          boolean save) throws IOException {
+        Path sidecar = sidecar(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        LineIndex index = load(sidecar, channel.size(), modified, width);
+        if (index == null) {
+            index = build(channel, modified, width);
+            if (save) {
+                index.save(sidecar);
+            }
+        }
+        return index;
+    }
+
+    /** Return the sidecar index file for FILE. */
+    static Path sidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + SUFFIX);
+    }
+
+    /** Return the number of message characters in the file. */
+    long chars() {
+        return _total;
+    }
+
+    /** Return the number of entries. */
+    int size() {
+        return _count;
+    }
+
+    /** Return the byte offset in FILE, the file I describe, of message
+     *  character K (numbering from 0). */
+    long locate(FileChannel file, long k) throws IOException {
+        if (k < 0 || k >= _total) {
+            throw error("offset %d is outside a message of %d characters",
+                        k, _total);
+        }
+        int lo = 0, hi = _count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (_chars[mid] <= k) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        long start = _bytes[lo];
+        long before = _chars[lo];
+        ByteBuffer window = ByteBuffer.allocate(
+            (int) Math.min(INTERVAL + 2, _size - start));
+        while (window.hasRemaining()
+               && file.read(window, start + window.position()) >= 0) {
+            continue;
+        }
+        int line = 0;
+        for (int i = 0; i < window.position(); i += 1) {
+            if (window.get(i) == '\n') {
+                int len = i - line;
+                if (len > 0 && window.get(i - 1) == '\r') {
+                    len -= 1;
+                }
+                long n = lineChars(len, _width);
+                if (k < before + n) {
+                    break;
+                }
+                before += n;
+                line = i + 1;
+            }
+        }
+        long m = k - before;
+        return start + line + m * _width + m / GroupWriter.GROUP;
+    }
+
+    /** Return the number of message characters of WIDTH bytes on a line
+     *  of LEN bytes, not counting its terminator. */
+    private static long lineChars(long len, int width) {
+        long group = (long) GroupWriter.GROUP * width + 1;
+        long rest = (len + 1) % group;
+        return (len + 1) / group * GroupWriter.GROUP
+            + (rest > 0 ? (rest - 1) / width : 0);
+    }
+
+    /** Return an index of the file open on FILE, last modified at
+     *  MODIFIED, with message characters of WIDTH bytes. */
+    private static LineIndex build(FileChannel file, long modified,
+                                   int width) throws IOException {
+        long[] bytes = new long[16];
+        long[] chars = new long[16];
+        int count = 1;
+        ByteBuffer buf = ByteBuffer.allocate(INTERVAL);
+        long pos = 0, line = 0, before = 0;
+        boolean cr = false;
+        for (int n; (n = file.read(buf, pos)) >= 0; buf.clear()) {
+            for (int i = 0; i < n; i += 1, pos += 1) {
+                byte b = buf.get(i);
+                if (b == '\n') {
+                    before += lineChars(pos - line - (cr ? 1 : 0), width);
+                    line = pos + 1;
+                    if (line - bytes[count - 1] >= INTERVAL) {
+                        if (count == bytes.length) {
+                            bytes = Arrays.copyOf(bytes, 2 * count);
+                            chars = Arrays.copyOf(chars, 2 * count);
+                        }
+                        bytes[count] = line;
+                        chars[count] = before;
+                        count += 1;
+                    }
+                }
+                cr = b == '\r';
+            }
+        }
+        before += lineChars(pos - line, width);
+        return new LineIndex(bytes, chars, count, pos, modified, before,
+                             width);
+    }
+
+    /** Return the index saved in SIDECAR, or null if there is none, it is
+     *  truncated, or it does not describe a file of SIZE bytes last
+     *  modified at MODIFIED with characters of WIDTH bytes. */
+    private static LineIndex load(Path sidecar, long size, long modified,
+                                  int width) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                || in.readInt() != width || in.readInt() != INTERVAL
+                || in.readLong() != size || in.readLong() != modified) {
+                return null;
+            }
+            long total = in.readLong();
+            int count = in.readInt();
+            long[] bytes = new long[count];
+            long[] chars = new long[count];
+            for (int i = 0; i < count; i += 1) {
+                bytes[i] = in.readLong();
+                chars[i] = in.readLong();
+            }
+            return new LineIndex(bytes, chars, count, size, modified,
+                                 total, width);
+        } catch (NoSuchFileException | EOFException excp) {
+            return null;
+        }
+    }
+
+    /** Write me to the file SIDECAR. */
+    private void save(Path sidecar) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(sidecar)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(_width);
+            out.writeInt(INTERVAL);
+            out.writeLong(_size);
+            out.writeLong(_modified);
+            out.writeLong(_total);
+            out.writeInt(_count);
+            for (int i = 0; i < _count; i += 1) {
+                out.writeLong(_bytes[i]);
+                out.writeLong(_chars[i]);
+            }
+        }
+    }
+
+    /** Byte offsets of the indexed line starts. */
+    private final long[] _bytes;
+
+    /** Numbers of message characters before the indexed line starts. */
+    private final long[] _chars;
+
+    /** Number of entries. */
+    private final int _count;
+
+    /** Size in bytes and modification time of the indexed file. */
+    private final long _size, _modified;
+
+    /** Total number of message characters. */
+    private final long _total;
+
+    /** Bytes per message character. */
+    private final int _width;
+}
@@ -1,12 +1,20 @@
 package enigma;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Collection;
+import java.util.Collections;
 
 import static enigma.EnigmaException.*;
 
-/** Class that represents a complete enigma machine.
+/** Class that represents a complete enigma machine.  The rotors in its
+ *  slots are shared, unchanging definitions; the machine keeps their
+ *  settings itself.  Any number of machines, in any threads, may thus be
+ *  built over the same rotors, and fork() makes an independent copy of a
+ *  machine at the cost of copying its settings.
  *  @author Rayan Taghizadeh
  */
 class Machine {
@@ -39,6 +47,34 @@ class Machine {
             _allRotors1.add(r);
         }
         _plugboard = new Permutation("", _alphabet);
+        _positions = new int[_allRotors1.size()];
+    }
+
+    /** A copy of MACHINE in its current state, sharing its rotors,
+     *  plugboard and stepping rules, but without cache or tracer. */
+    private Machine(Machine machine) {
+        _alphabet = machine._alphabet;
+        _allRotors = machine._allRotors;
+        _allRotors1 = new ArrayList<>(machine._allRotors1);
+        _pawls = machine._pawls;
+        _numberRotors = machine._numberRotors;
+        _plugboard = machine._plugboard;
+        _positions = machine._positions.clone();
+        _stepper = machine._stepper;
+    }
+
+    /** Return a new machine in the same state as I am, which may then be
+     *  used independently of me (for instance, in another thread).  Only
+     *  my rotor settings and slot assignments are copied; rotors,
+     *  plugboard and stepping rules are shared.  The copy has no
+     *  substitution cache and no tracer. */
+    Machine fork() {
+        return new Machine(this);
+    }
+
+    /** Return all the rotors available to me, in no particular order. */
+    Collection<Rotor> availableRotors() {
+        return Collections.unmodifiableCollection(_allRotors.values());
     }
 
     /** Return the number of rotor slots I have. */
@@ -59,6 +95,11 @@ class Machine {
         return _allRotors1.get(k);
     }
 
+    /** Return the setting of Rotor #K. */
+    int setting(int k) {
+        return _positions[k];
+    }
+
     Alphabet alphabet() {
         return _alphabet;
     }
@@ -67,10 +108,43 @@ class Machine {
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
+        invalidateCache();
         _allRotors1.clear();
         for (String s : rotors) {
-            _allRotors1.add(_allRotors.get(s));
+            Rotor rotor = _allRotors.get(s);
+            if (rotor == null) {
+                throw error("unknown rotor %s", s);
+            }
+            _allRotors1.add(rotor);
+        }
+        _positions = new int[rotors.length];
+        _stepper = new Stepper(_allRotors1, _alphabet.size());
+    }
+
+    /** Return the settings of my rotors, indexed by slot. */
+    int[] positions() {
+        return _positions.clone();
+    }
+
+    /** Set my rotors to the settings in POSITIONS, as returned by
+     *  positions(). */
+    void setPositions(int[] positions) {
+        if (positions.length != _positions.length) {
+            throw error("wrong number of rotor settings");
         }
+        System.arraycopy(positions, 1, _positions, 1, positions.length - 1);
+    }
+
+    /** Advance my rotors as STEPS conversions would. */
+    void jump(long steps) {
+        jump(_positions, steps);
+    }
+
+    /** Advance the rotor settings in STATE, indexed by slot, as STEPS
+     *  conversions would.  For ordinary rotor arrangements this takes
+     *  time independent of STEPS. */
+    void jump(int[] state, long steps) {
+        stepper().jump(state, steps);
     }
 
     /** Set my rotors according to SETTING, which must be a string of
@@ -81,7 +155,11 @@ class Machine {
             throw error("invalid setting size");
         }
         for (int i = 0; i < setting.length(); i++) {
-            _allRotors1.get(i + 1).set(setting.charAt(i));
+            int posn = _alphabet.toInt(setting.charAt(i));
+            if (posn != 0 && _allRotors1.get(i + 1).reflecting()) {
+                throw error("reflector has only one position");
+            }
+            _positions[i + 1] = posn;
         }
     }
 
@@ -93,57 +171,120 @@ class Machine {
 
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
+        invalidateCache();
         _plugboard = plugboard;
     }
 
+    /** Compile whole-machine substitutions into CACHE, or stop caching if
+     *  CACHE is null.  Each distinct tuple of rotor positions is then
+     *  computed once and later conversions in the same position are a
+     *  single table lookup.  Any entries already in CACHE are dropped. */
+    void setCache(SubstitutionCache cache) {
+        if (cache != null) {
+            if (cache.width() != _alphabet.size()) {
+                throw error("cache does not match alphabet size");
+            }
+            double states = Math.pow(_alphabet.size(), numRotors() - 1);
+            if (states >= Long.MAX_VALUE) {
+                throw error("too many rotor positions to cache");
+            }
+            cache.clear();
+        }
+        _cache = cache;
+    }
+
+    /** Return my substitution cache, or null if I have none. */
+    SubstitutionCache cache() {
+        return _cache;
+    }
+
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
-        advanceRotors();
-        if (Main.verbose()) {
-            System.err.printf("[");
-            for (int r = 1; r < numRotors(); r += 1) {
-                System.err.printf("%c",
-                        alphabet().toChar(getRotor(r).setting()));
-            }
-            System.err.printf("] %c -> ", alphabet().toChar(c));
+        stepper().step(_positions);
+        if (_cache != null && _tracer == Tracer.NONE) {
+            return compiled()[c];
         }
+        _tracer.start(this, c);
         c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(c));
-        }
+        _tracer.step(c);
         c = applyRotors(c);
         c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c%n", alphabet().toChar(c));
-        }
+        _tracer.finish(c);
         return c;
     }
 
-    /** Advance all rotors to their next position. */
-    private void advanceRotors() {
-        int size1 = _allRotors1.size();
-        for (int i = 1; i < size1 - 1; i++) {
-            if (_allRotors1.get(i).rotates()
-                    && _allRotors1.get(i + 1).atNotch()) {
-                _allRotors1.get(i).advance();
-            } else if (_allRotors1.get(i - 1).rotates()
-                    && _allRotors1.get(i).atNotch()) {
-                _allRotors1.get(i).advance();
+    /** Advance the rotor settings in STATE, indexed by slot, and return
+     *  the conversion of C in the new settings.  My own settings are not
+     *  used or changed, so any number of threads may convert through me
+     *  at once, each with its own STATE. */
+    int convert(int c, int[] state) {
+        stepper().step(state);
+        c = _plugboard.permute(c);
+        for (int i = state.length - 1; i >= 0; i -= 1) {
+            c = _allRotors1.get(i).convertForward(c, state[i]);
+        }
+        for (int i = 1; i < state.length; i += 1) {
+            c = _allRotors1.get(i).convertBackward(c, state[i]);
+        }
+        return _plugboard.permute(c);
+    }
+
+    /** Return the Stepper for my current rotors.  Once rotors have been
+     *  inserted it already exists, so threads sharing me (see
+     *  ParallelConverter) never race to build it. */
+    private Stepper stepper() {
+        if (_stepper == null) {
+            _stepper = new Stepper(_allRotors1, _alphabet.size());
+        }
+        return _stepper;
+    }
+
+    /** Report each subsequent conversion to TRACER, or to nobody if
+     *  TRACER is null.  While tracing, conversions bypass any substitution
+     *  cache so that every stage is visible. */
+    void setTracer(Tracer tracer) {
+        _tracer = tracer == null ? Tracer.NONE : tracer;
+    }
+
+    /** Return the substitution performed in the current rotor positions,
+     *  plugboard included, compiling it into _cache if necessary. */
+    private int[] compiled() {
+        long key = 0;
+        for (int i = 1; i < _allRotors1.size(); i += 1) {
+            key = key * _alphabet.size() + _positions[i];
+        }
+        int[] table = _cache.get(key);
+        if (table == null) {
+            table = _cache.allocate();
+            for (int c = 0; c < table.length; c += 1) {
+                table[c] = plugboard().permute(
+                        applyRotors(plugboard().permute(c)));
             }
+            _cache.put(key, table);
+        }
+        return table;
+    }
+
+    /** Drop compiled substitutions, which depend on the rotors and
+     *  plugboard. */
+    private void invalidateCache() {
+        if (_cache != null) {
+            _cache.clear();
         }
-        _allRotors1.get(size1 - 1).advance();
     }
 
     /** Return the result of applying the rotors to the character C (as an
      *  index in the range 0..alphabet size - 1). */
     private int applyRotors(int c) {
         for (int i = _allRotors1.size() - 1; i >= 0; i--) {
-            c = _allRotors1.get(i).convertForward(c);
+            c = _allRotors1.get(i).convertForward(c, _positions[i]);
+            _tracer.step(c);
         }
         for (int i = 1; i < _allRotors1.size(); i++) {
-            c = _allRotors1.get(i).convertBackward(c);
+            c = _allRotors1.get(i).convertBackward(c, _positions[i]);
+            _tracer.step(c);
         }
         return c;
     }
@@ -151,16 +292,107 @@ class Machine {
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String s = "";
-        for (int i = 0; i < msg.length(); i++) {
-            s += (_alphabet.toChar(convert(_alphabet.toInt(msg.charAt(i)))));
+        char[] buf = msg.toCharArray();
+        convert(buf, 0, buf, 0, buf.length);
+        return new String(buf);
+    }
+
+    /** Convert the LEN characters of IN starting at INOFF, storing the
+     *  results in OUT starting at OUTOFF and updating the state of the
+     *  rotors accordingly.  IN and OUT may be the same array. */
+    void convert(char[] in, int inOff, char[] out, int outOff, int len) {
+        checkRange(in.length, inOff, len);
+        checkRange(out.length, outOff, len);
+        for (int i = 0; i < len; i += 1) {
+            int c = _alphabet.toInt(in[inOff + i]);
+            out[outOff + i] = _alphabet.toChar(convert(c));
+        }
+    }
+
+    /** Convert the characters remaining in IN, storing the results in OUT.
+     *  The positions of both buffers advance past the characters read and
+     *  written.  OUT must have at least IN.remaining() characters free. */
+    void convert(CharBuffer in, CharBuffer out) {
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw error("output buffer too small");
+        }
+        if (in.hasArray() && out.hasArray() && !out.isReadOnly()) {
+            convert(in.array(), in.arrayOffset() + in.position(),
+                    out.array(), out.arrayOffset() + out.position(), len);
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+        } else {
+            while (in.hasRemaining()) {
+                int c = _alphabet.toInt(in.get());
+                out.put(_alphabet.toChar(convert(c)));
+            }
         }
-        return s;
     }
 
+    /** Convert the bytes remaining in IN, each the index of a symbol of
+     *  my alphabet, which must have 256 symbols, storing the resulting
+     *  indices as bytes in OUT.  The positions of both buffers advance
+     *  past the bytes read and written.  OUT must have at least
+     *  IN.remaining() bytes free. */
+    void convert(ByteBuffer in, ByteBuffer out) {
+        if (_alphabet.size() != BYTE_SYMBOLS) {
+            throw error("byte conversion needs an alphabet of %d symbols",
+                        BYTE_SYMBOLS);
+        }
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw error("output buffer too small");
+        }
+        int inPos = in.position(), outPos = out.position();
+        for (int i = 0; i < len; i += 1) {
+            out.put(outPos + i, (byte) convert(in.get(inPos + i) & 0xFF));
+        }
+        in.position(inPos + len);
+        out.position(outPos + len);
+    }
+
+    /** Convert the LEN alphabet indices of IN starting at INOFF, storing
+     *  the resulting indices in OUT starting at OUTOFF and updating the
+     *  state of the rotors accordingly.  IN and OUT may be the same
+     *  array. */
+    void convert(int[] in, int inOff, int[] out, int outOff, int len) {
+        checkRange(in.length, inOff, len);
+        checkRange(out.length, outOff, len);
+        for (int i = 0; i < len; i += 1) {
+            out[outOff + i] = convert(in[inOff + i]);
+        }
+    }
+
+    /** Check that OFF and LEN describe a range within an array of
+     *  length SIZE. */
+    private static void checkRange(int size, int off, int len) {
+        if (off < 0 || len < 0 || off > size - len) {
+            throw new IndexOutOfBoundsException(
+                String.format("range [%d, %d) out of bounds for length %d",
+                              off, off + len, size));
+        }
+    }
+
+    /** Number of distinct byte values. */
+    private static final int BYTE_SYMBOLS = 256;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
     /** number of rotors. */
     private int _numberRotors;
+
+    /** Compiled substitutions, or null if caching is off. */
+    private SubstitutionCache _cache;
+
+    /** Settings of the rotors in my slots, indexed by slot. */
+    private int[] _positions;
+
+    /** Stepping rules for my current rotors, built by insertRotors, or
+     *  null if none have been inserted and none are yet needed. */
+    private Stepper _stepper;
+
+    /** Receiver of per-character trace records. */
+    private Tracer _tracer = Tracer.NONE;
 }
@@ -1,6 +1,9 @@
 package enigma;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.CharBuffer;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
@@ -76,4 +79,147 @@ public class MachineTest {
         assertEquals("QVPQSOKOILPUBKJZPISFXDW",
                 mach.convert("FROMHISSHOULDERHIAWATHA"));
     }
+
+    @Test
+    public void testConvertBulk() {
+        String plain = "FROMHISSHOULDERHIAWATHA";
+        String cipher = "QVPQSOKOILPUBKJZPISFXDW";
+        Permutation plugs = new Permutation("(HQ)(EX)(IP)(TR)(BY)", AZ);
+
+        Machine mach = mach1();
+        mach.setPlugboard(plugs);
+        char[] out = new char[plain.length() + 2];
+        mach.convert(plain.toCharArray(), 0, out, 1, plain.length());
+        assertEquals(cipher, new String(out, 1, plain.length()));
+
+        mach = mach1();
+        mach.setPlugboard(plugs);
+        CharBuffer outBuf = CharBuffer.allocate(plain.length());
+        mach.convert(CharBuffer.wrap(plain), outBuf);
+        outBuf.flip();
+        assertEquals(cipher, outBuf.toString());
+
+        mach = mach1();
+        mach.setPlugboard(plugs);
+        int[] indices = new int[plain.length()];
+        for (int i = 0; i < indices.length; i += 1) {
+            indices[i] = AZ.toInt(plain.charAt(i));
+        }
+        mach.convert(indices, 0, indices, 0, indices.length);
+        for (int i = 0; i < indices.length; i += 1) {
+            assertEquals(cipher.charAt(i), AZ.toChar(indices[i]));
+        }
+    }
+
+    @Test
+    public void testConvertCached() {
+        Permutation plugs = new Permutation("(HQ)(EX)(IP)(TR)(BY)", AZ);
+        Machine mach = mach1();
+        mach.setPlugboard(plugs);
+        SubstitutionCache cache = new SubstitutionCache(26, 1024);
+        mach.setCache(cache);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                mach.convert("FROMHISSHOULDERHIAWATHA"));
+        assertTrue(cache.evictions() > 0);
+        assertTrue(cache.size() <= cache.capacity());
+
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 2000; i += 1) {
+            msg.append((char) ('A' + (i * 7) % 26));
+        }
+        mach = mach1();
+        mach.setPlugboard(plugs);
+        String expected = mach.convert(msg.toString());
+        mach = mach1();
+        mach.setPlugboard(plugs);
+        mach.setCache(new SubstitutionCache(26, 1 << 20));
+        assertEquals(expected, mach.convert(msg.toString()));
+    }
+
+    @Test
+    public void testTracer() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(YF) (HZ)", AZ));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RingTracer tracer = new RingTracer(AZ, 5, out, false, 2);
+        mach.setTracer(tracer);
+        mach.convert("YYY");
+        tracer.close();
+        String[] lines = out.toString().split(System.lineSeparator());
+        assertEquals(3, lines.length);
+        assertEquals("[AXLF] Y -> F -> I -> V -> J -> W -> H -> X -> Z -> "
+                     + "J -> H -> Z", lines[0]);
+    }
+
+    @Test
+    public void testParallelConvert() {
+        Permutation plugs = new Permutation("(HQ)(EX)(IP)(TR)(BY)", AZ);
+        char[] msg = new char[200000];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (char) ('A' + (i * 7 + i / 3) % 26);
+        }
+        Machine mach = mach1();
+        mach.setPlugboard(plugs);
+        char[] expected = new char[msg.length];
+        mach.convert(msg, 0, expected, 0, msg.length);
+        int[] end = mach.positions();
+
+        mach = mach1();
+        mach.setPlugboard(plugs);
+        char[] result = new char[msg.length];
+        new ParallelConverter(new ForkJoinPool(4), 1000)
+            .convert(mach, msg, 0, result, 0, msg.length);
+        assertArrayEquals(expected, result);
+        assertArrayEquals(end, mach.positions());
+    }
+
+    @Test
+    public void testSharedRotors() {
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        String expected = mach1().convert(msg);
+        Machine m1 = mach1();
+        Machine m2 = mach1();
+        m2.setRotors("BCDE");
+        StringBuilder r1 = new StringBuilder();
+        for (int i = 0; i < msg.length(); i += 1) {
+            r1.append(m1.convert(msg.substring(i, i + 1)));
+            m2.convert(msg.substring(i, i + 1));
+        }
+        assertEquals(expected, r1.toString());
+    }
+
+    @Test
+    public void testFork() throws InterruptedException {
+        char[] msg = new char[50000];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (char) ('A' + i * 11 % 26);
+        }
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX)", AZ));
+        mach.convert("ABCDEFG");
+        Machine fork = mach.fork();
+        assertArrayEquals(mach.positions(), fork.positions());
+        char[] expected = msg.clone();
+        mach.convert(expected, 0, expected, 0, msg.length);
+
+        Machine[] forks = new Machine[4];
+        char[][] results = new char[forks.length][];
+        Thread[] threads = new Thread[forks.length];
+        for (int k = 0; k < forks.length; k += 1) {
+            forks[k] = fork.fork();
+            results[k] = msg.clone();
+            Machine f = forks[k];
+            char[] r = results[k];
+            threads[k] = new Thread(() -> f.convert(r, 0, r, 0, r.length));
+            threads[k].start();
+        }
+        for (int k = 0; k < forks.length; k += 1) {
+            threads[k].join();
+            assertArrayEquals(expected, results[k]);
+            assertArrayEquals(mach.positions(), forks[k].positions());
+        }
+        assertEquals("AXLL", "" + AZ.toChar(fork.setting(1))
+                     + AZ.toChar(fork.setting(2)) + AZ.toChar(fork.setting(3))
+                     + AZ.toChar(fork.setting(4)));
+    }
 }
@@ -1,15 +1,39 @@
 package enigma;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Writer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import ucb.util.CommandArgs;
 
@@ -32,44 +56,300 @@ public final class Main {
     public static void main(String... args) {
         try {
             CommandArgs options =
-                new CommandArgs("--verbose --=(.*){1,3}", args);
-            if (!options.ok()) {
+                new CommandArgs("--verbose --trace=(.+) --mmap "
+                                + "--cache=(\\d+[KMG]?) "
+                                + "--range=(\\d+,\\d+) --settings=(.+) "
+                                + "--index --jobs=(\\d+) --compile "
+                                + "--bombe=(.+) --offset=(\\d+) "
+                                + "--solve --ngrams=(.+) --serve=(.+) "
+                                + "--stats --stats-file=(.+) --bytes "
+                                + "--sweep=(.+) --checkpoint=(.+) "
+                                + "--worker=(\\d+/\\d+) "
+                                + "--=(.*){1,3}", args);
+            if (!options.ok()
+                || (options.contains("--range")
+                    || options.contains("--bytes"))
+                   != options.contains("--settings")
+                || options.contains("--range")
+                   && options.contains("--bytes")
+                || options.contains("--offset")
+                   && !options.contains("--bombe")
+                || options.contains("--ngrams")
+                   && !options.contains("--solve")
+                || options.contains("--sweep")
+                   != options.contains("--checkpoint")
+                || options.contains("--worker")
+                   && !options.contains("--sweep")) {
                 throw error("Usage: java enigma.Main [--verbose] "
-                            + "[INPUT [OUTPUT]]");
+                            + "[--trace=FILE] [--cache=BYTES] [--mmap] "
+                            + "[--jobs=N] [--stats] [--stats-file=FILE] "
+                            + "[INPUT [OUTPUT]]%n"
+                            + "       java enigma.Main --range=OFFSET,LENGTH "
+                            + "--settings=LINE [--index] CONFIG INPUT "
+                            + "[OUTPUT]%n"
+                            + "       java enigma.Main --bytes "
+                            + "--settings=LINE [--stats] CONFIG "
+                            + "[INPUT [OUTPUT]]%n"
+                            + "       java enigma.Main --compile CONFIG "
+                            + "OUTPUT%n"
+                            + "       java enigma.Main --bombe=CRIB "
+                            + "[--offset=N] [--jobs=N] CONFIG INPUT "
+                            + "[OUTPUT]%n"
+                            + "       java enigma.Main --solve "
+                            + "[--ngrams=FILE] [--jobs=N] CONFIG INPUT "
+                            + "[OUTPUT]%n"
+                            + "       java enigma.Main --sweep=TEST "
+                            + "--checkpoint=DIR [--jobs=N] CONFIG INPUT "
+                            + "[OUTPUT]%n"
+                            + "       java enigma.Main --serve=SOCKET|PORT "
+                            + "CONFIG...");
             }
 
             _verbose = options.contains("--verbose");
-            new Main(options.get("--")).process();
+            _traceFile = options.getFirst("--trace");
+            _mmap = options.contains("--mmap");
+            if (options.contains("--jobs")) {
+                try {
+                    _jobs = Integer.parseInt(options.getFirst("--jobs"));
+                } catch (NumberFormatException excp) {
+                    throw error("bad number of jobs");
+                }
+                if (_jobs < 1 || _verbose || _traceFile != null) {
+                    throw error("--jobs requires a positive number of "
+                                + "workers and no tracing");
+                }
+            }
+            if (options.contains("--cache")) {
+                _cacheBytes = parseSize(options.getFirst("--cache"));
+            }
+            if (options.contains("--stats")
+                || options.contains("--stats-file")) {
+                _metrics = new Metrics();
+                if (options.contains("--stats-file")) {
+                    try {
+                        _metrics.snapshots(
+                            Paths.get(options.getFirst("--stats-file")),
+                            STATS_PERIOD);
+                    } catch (InvalidPathException excp) {
+                        throw error("bad file name: %s", excp.getInput());
+                    }
+                }
+            }
+            if (options.contains("--compile")) {
+                compile(options.get("--"));
+            } else if (options.contains("--serve")) {
+                serve(options.getFirst("--serve"), options.get("--"));
+            } else if (options.contains("--bombe")) {
+                int offset = 0;
+                if (options.contains("--offset")) {
+                    try {
+                        offset = Integer.parseInt(
+                            options.getFirst("--offset"));
+                    } catch (NumberFormatException excp) {
+                        throw error("bad offset");
+                    }
+                }
+                if (options.get("--").size() < 2) {
+                    throw error("--bombe requires an INPUT file");
+                }
+                new Main(options.get("--"))
+                    .processBombe(options.getFirst("--bombe"), offset);
+            } else if (options.contains("--solve")) {
+                if (options.get("--").size() < 2) {
+                    throw error("--solve requires an INPUT file");
+                }
+                new Main(options.get("--"))
+                    .processSolve(options.getFirst("--ngrams"));
+            } else if (options.contains("--sweep")) {
+                if (options.get("--").size() < 2) {
+                    throw error("--sweep requires an INPUT file");
+                }
+                new Main(options.get("--"))
+                    .processSweep(options.getFirst("--sweep"),
+                                  options.getFirst("--checkpoint"),
+                                  options.getFirst("--worker"),
+                                  options.get("--"));
+            } else if (options.contains("--bytes")) {
+                convertBytes(options.getFirst("--settings"),
+                             options.get("--"));
+            } else if (options.contains("--range")) {
+                String range = options.getFirst("--range");
+                try {
+                    int comma = range.indexOf(',');
+                    _rangeStart = Long.parseLong(range.substring(0, comma));
+                    _rangeLength = Long.parseLong(range.substring(comma + 1));
+                } catch (NumberFormatException excp) {
+                    throw error("bad range: %s", range);
+                }
+                _settings = options.getFirst("--settings");
+                _saveIndex = options.contains("--index");
+                new Main(options.get("--")).processRange();
+            } else {
+                new Main(options.get("--")).process();
+            }
+            closeMetrics();
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
         }
+        try {
+            closeMetrics();
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
         System.exit(1);
     }
 
+    /** Write the last snapshot of the statistics requested by --stats or
+     *  --stats-file and print their summary on the standard error. */
+    private static void closeMetrics() {
+        if (_metrics.enabled()) {
+            Metrics metrics = _metrics;
+            _metrics = Metrics.NONE;
+            metrics.close(System.err);
+        }
+    }
+
+    /** Return the number of bytes denoted by SIZE, a decimal number
+     *  optionally followed by K, M or G. */
+    static long parseSize(String size) {
+        char unit = size.charAt(size.length() - 1);
+        int shift = unit == 'K' ? 10 : unit == 'M' ? 20 : unit == 'G' ? 30 : 0;
+        String digits = shift == 0 ? size
+            : size.substring(0, size.length() - 1);
+        try {
+            return Long.parseLong(digits) << shift;
+        } catch (NumberFormatException excp) {
+            throw error("bad size: %s", size);
+        }
+    }
+
+    /** Compile the text configuration file named FILES[0] into the binary
+     *  file named FILES[1], which may be given to Main in its place. */
+    private static void compile(List<String> files) {
+        if (files.size() != 2) {
+            throw error("--compile requires CONFIG and OUTPUT files");
+        }
+        Machine config = readConfig(new Scanner(readText(files.get(0))));
+        try {
+            CompiledConfig.write(config, Paths.get(files.get(0)),
+                                 Paths.get(files.get(1)));
+        } catch (InvalidPathException excp) {
+            throw error("bad file name: %s", excp.getInput());
+        }
+    }
+
+    /** Serve the configurations in the files named CONFIGS, under those
+     *  names, to clients connecting to ADDRESS, until killed.  See
+     *  Daemon for the protocol. */
+    private static void serve(String address, List<String> configs) {
+        LinkedHashMap<String, Machine> machines = new LinkedHashMap<>();
+        for (String name : configs) {
+            machines.put(name, loadConfig(name));
+        }
+        Daemon daemon = new Daemon(machines, address);
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+        daemon.serve();
+    }
+
+    /** Convert the binary data in the file named FILES[1], or on the
+     *  standard input, writing the result to the file named FILES[2], or
+     *  to the standard output, using the configuration in the file named
+     *  FILES[0] set up by SETTINGS.  See ByteStream. */
+    private static void convertBytes(String settings, List<String> files) {
+        long start = _metrics.start();
+        Machine enigma = loadConfig(files.get(0));
+        start = _metrics.lap(Metrics.Stage.CONFIG, start);
+        ByteStream stream = new ByteStream(enigma, _metrics);
+        setUp(enigma, settings);
+        _metrics.stop(Metrics.Stage.SETUP, start);
+        _metrics.countSettings();
+        try (FileChannel out = files.size() > 2
+                 ? FileChannel.open(Paths.get(files.get(2)),
+                                    StandardOpenOption.CREATE,
+                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                    StandardOpenOption.WRITE)
+                 : new FileOutputStream(FileDescriptor.out).getChannel()) {
+            if (files.size() > 1) {
+                try (FileChannel in = FileChannel.open(
+                         Paths.get(files.get(1)))) {
+                    stream.convert(in, out);
+                }
+            } else {
+                stream.convert(Channels.newChannel(System.in), out);
+            }
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not convert binary data: %s",
+                        excp.getMessage());
+        }
+    }
+
     /** Open the necessary files for non-option arguments ARGS (see comment
       *  on main). */
     Main(List<String> args) {
-        _config = getInput(args.get(0));
+        long start = _metrics.start();
+        _config = loadConfig(args.get(0));
+        _metrics.stop(Metrics.Stage.CONFIG, start);
 
-        if (args.size() > 1) {
-            _input = getInput(args.get(1));
+        if (_mmap || _settings != null) {
+            if (_mmap && args.size() != 3) {
+                throw error("--mmap requires INPUT and OUTPUT files");
+            } else if (args.size() < 2) {
+                throw error("--range requires an INPUT file");
+            }
+            try {
+                _inputPath = Paths.get(args.get(1));
+                if (_mmap) {
+                    _outputPath = Paths.get(args.get(2));
+                }
+            } catch (InvalidPathException excp) {
+                throw error("bad file name: %s", excp.getInput());
+            }
+        } else if (args.size() > 1) {
+            _input = getChannel(args.get(1));
         } else {
-            _input = new Scanner(System.in);
+            _input = Channels.newChannel(System.in);
         }
 
-        if (args.size() > 2) {
+        if (_mmap) {
+            _output = null;
+        } else if (args.size() > 2) {
             _output = getOutput(args.get(2));
         } else {
             _output = System.out;
         }
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** Return a machine configured from the file named NAME, which holds
+     *  either a text configuration or one compiled with --compile. */
+    static Machine loadConfig(String name) {
+        Machine config;
         try {
-            return new Scanner(new File(name));
-        } catch (IOException excp) {
+            config = CompiledConfig.load(Paths.get(name));
+        } catch (InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+        if (config == null) {
+            config = readConfig(new Scanner(readText(name)));
+        }
+        return config;
+    }
+
+    /** Return the contents of the file named NAME. */
+    private static String readText(String name) {
+        try {
+            return new String(Files.readAllBytes(Paths.get(name)),
+                              Charset.defaultCharset());
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a channel reading from the file named NAME. */
+    private ReadableByteChannel getChannel(String name) {
+        try {
+            return FileChannel.open(Paths.get(name));
+        } catch (IOException | InvalidPathException excp) {
             throw error("could not open %s", name);
         }
     }
@@ -83,67 +363,392 @@ public final class Main {
         }
     }
 
-    /** Configure an Enigma machine from the contents of configuration
-     *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
+    /** Configure an Enigma machine as _config and apply it to the messages
+     *  in _input, sending the results to _output.  With --jobs, the blocks
+     *  of input that start at settings lines are converted concurrently,
+     *  each on a machine of its own. */
     private void process() {
-        Machine enigma = readConfig();
-        String setting = _input.nextLine();
-        setUp(enigma, setting);
-        while (_input.hasNextLine()) {
-            String nextLine = _input.nextLine();
-            if (!nextLine.contains(String.valueOf('*'))) {
-                String nospace1 = nextLine.replaceAll("\\s", "");
-                String converted = enigma.convert(nospace1);
-                printMessageLine(converted);
+        Machine enigma = newMachine();
+        _alphabet = enigma.alphabet();
+        Tracer tracer = getTracer(enigma);
+        enigma.setTracer(tracer);
+        Writer sink = _mmap ? getMappedOutput()
+            : _jobs > 0 ? new OutputStreamWriter(_output) : null;
+        GroupWriter out = _mmap ? new GroupWriter(sink)
+            : GroupWriter.forStream(_output, Charset.defaultCharset());
+        ExecutorService pool = _jobs > 0 ? newPool() : null;
+        try {
+            if (pool != null) {
+                ParallelTranscriber transcriber =
+                    new ParallelTranscriber(this::newMachine, Main::setUp,
+                                            sink, pool,
+                                            _jobs * INFLIGHT_PER_JOB,
+                                            _metrics);
+                read(transcriber::feed);
+                transcriber.finish();
             } else {
-                setUp(enigma, nextLine);
+                Transcriber transcriber =
+                    new Transcriber(enigma, line -> setUp(enigma, line), out,
+                                    _metrics);
+                read(transcriber::feed);
+                transcriber.finish();
+            }
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        } finally {
+            out.flush();
+            try {
+                tracer.close();
+            } finally {
+                closeTrace();
+            }
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            if (_mmap) {
+                close(sink);
+            } else if (_output != System.out) {
+                _output.close();
+            }
+            if (_input instanceof FileChannel) {
+                try {
+                    _input.close();
+                } catch (IOException excp) {
+                    /* All of the input has been read; nothing is lost. */
+                }
+            }
+        }
+    }
+
+    /** Search for the settings at which CRIB enciphers to the message
+     *  characters in _input starting at OFFSET, writing a settings line
+     *  to _output for each candidate found.  The search uses _jobs
+     *  workers if --jobs was given, and otherwise every core. */
+    private void processBombe(String crib, int offset) {
+        Bombe bombe = new Bombe(_config, crib, readMessage(), offset);
+        ForkJoinPool pool = newForkJoinPool();
+        try {
+            for (String line : bombe.run(pool)) {
+                _output.println(line);
+            }
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdownNow();
+            }
+            _output.flush();
+        }
+    }
+
+    /** Search for the settings under which the message characters in
+     *  _input look most like plaintext, scored with the n-gram
+     *  statistics in the file named NGRAMS if it is not null, and write
+     *  the settings lines of the best few solutions found to _output,
+     *  best first.  The search uses _jobs workers if --jobs was given,
+     *  and otherwise every core. */
+    private void processSolve(String ngrams) {
+        NGrams stats = null;
+        if (ngrams != null) {
+            try {
+                stats = NGrams.read(_config.alphabet(), Paths.get(ngrams));
+            } catch (InvalidPathException excp) {
+                throw error("could not open %s", ngrams);
+            }
+        }
+        HillClimber solver = new HillClimber(_config, readMessage(), stats);
+        ForkJoinPool pool = newForkJoinPool();
+        try {
+            for (String line : solver.solve(pool, SOLUTIONS)) {
+                _output.println(line);
+            }
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdownNow();
+            }
+            _output.flush();
+        }
+    }
+
+    /** Search every rotor order and starting position, with an empty
+     *  plugboard, for those under which the message characters in _input
+     *  decrypt to text that passes the test described by TEST (see
+     *  Sweep.test), keeping checkpoints in the directory named
+     *  CHECKPOINT.  If WORKER is "W/N", search as worker W of N and write
+     *  nothing.  Otherwise, start a worker process for each of _jobs
+     *  workers if --jobs was given, and otherwise for each core, passing
+     *  on the CONFIG and INPUT files at the start of FILES, and when all
+     *  are done write the settings line of each key found to _output. */
+    private void processSweep(String test, String checkpoint, String worker,
+                              List<String> files) {
+        Sweep sweep = new Sweep(_config, readMessage(), test, Sweep.SHARD);
+        Path dir;
+        try {
+            dir = Paths.get(checkpoint);
+        } catch (InvalidPathException excp) {
+            throw error("bad file name: %s", excp.getInput());
+        }
+        sweep.prepare(dir);
+        if (worker != null) {
+            int slash = worker.indexOf('/');
+            try {
+                sweep.work(dir, Integer.parseInt(worker.substring(0, slash)),
+                           Integer.parseInt(worker.substring(slash + 1)));
+            } catch (NumberFormatException excp) {
+                throw error("bad worker: %s", worker);
             }
+            return;
         }
+        int workers = _jobs > 0 ? _jobs
+            : Runtime.getRuntime().availableProcessors();
+        Sweep.runWorkers(workers, w -> Sweep.javaCommand(Main.class, List.of(
+            "--sweep=" + test, "--checkpoint=" + checkpoint,
+            "--worker=" + w + "/" + workers, files.get(0), files.get(1))));
+        for (String line : sweep.merge(dir)) {
+            _output.println(line);
+        }
+        _output.flush();
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-    private Machine readConfig() {
+    /** Return the message characters of all of _input, that is, all its
+     *  characters but blanks and line terminators. */
+    private String readMessage() {
+        StringBuilder msg = new StringBuilder();
+        try {
+            read(chars -> {
+                while (chars.hasRemaining()) {
+                    char c = chars.get();
+                    if (!Transcriber.isBlank(c)
+                        && !Transcriber.isTerminator(c)) {
+                        msg.append(c);
+                    }
+                }
+            });
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+        return msg.toString();
+    }
+
+    /** Return a fork-join pool of _jobs workers, or the common pool if
+     *  --jobs was not given. */
+    private static ForkJoinPool newForkJoinPool() {
+        return _jobs > 0 ? new ForkJoinPool(_jobs) : ForkJoinPool.commonPool();
+    }
+
+    /** Return a pool of _jobs worker threads. */
+    private static ExecutorService newPool() {
+        return Executors.newFixedThreadPool(_jobs, task -> {
+            Thread worker = new Thread(task, "enigma-worker");
+            worker.setDaemon(true);
+            return worker;
+        });
+    }
+
+    /** Feed all of the input to INPUT in chunks. */
+    private void read(Consumer<CharBuffer> input) throws IOException {
+        if (_mmap) {
+            readMapped(input);
+        } else {
+            readStream(input);
+        }
+    }
+
+    /** Convert the message characters selected by --range from the file
+     *  _inputPath, which holds a single message converted with the
+     *  settings given by --settings, sending the result to _output as a
+     *  line.  The characters before the range are neither read nor
+     *  converted. */
+    private void processRange() {
+        Machine enigma = _config.fork();
+        setUp(enigma, _settings);
+        Charset charset = Charset.defaultCharset();
+        int width = RangeDecoder.width(enigma.alphabet(), charset);
+        try (FileChannel in = FileChannel.open(_inputPath)) {
+            LineIndex index = LineIndex.open(_inputPath, in, width,
+                                             _saveIndex);
+            Writer out = new OutputStreamWriter(_output, charset);
+            new RangeDecoder(enigma, in, index, charset)
+                .decode(_rangeStart, _rangeLength, out);
+            out.write(System.lineSeparator());
+            out.flush();
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+    }
+
+    /** Feed all of _input to INPUT, reading it in chunks. */
+    private void readStream(Consumer<CharBuffer> input) throws IOException {
+        CharsetDecoder decoder = newDecoder();
+        ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+        boolean eof = false;
+        while (!eof) {
+            eof = _input.read(bytes) < 0;
+            bytes.flip();
+            decode(input, decoder, bytes, chars, eof);
+            bytes.compact();
+        }
+    }
+
+    /** Feed the whole input file to INPUT, decoding it directly from
+     *  memory-mapped windows of the file. */
+    private void readMapped(Consumer<CharBuffer> input) throws IOException {
+        try (FileChannel in = FileChannel.open(_inputPath)) {
+            CharsetDecoder decoder = newDecoder();
+            CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+            long size = in.size();
+            long pos = 0;
+            boolean last;
+            do {
+                long len = Math.min(MAP_WINDOW, size - pos);
+                MappedByteBuffer window =
+                    in.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                last = pos + len == size;
+                decode(input, decoder, window, chars, last);
+                pos += window.position();
+            } while (!last);
+        }
+    }
+
+    /** Decode BYTES with DECODER, using CHARS as a buffer, and feed the
+     *  result to INPUT.  Bytes that end in the middle of a character are
+     *  left in BYTES unless LAST indicates the end of input. */
+    private void decode(Consumer<CharBuffer> input, CharsetDecoder decoder,
+                        ByteBuffer bytes, CharBuffer chars, boolean last) {
+        boolean more;
+        do {
+            more = decoder.decode(bytes, chars, last).isOverflow();
+            if (!more && last) {
+                more = decoder.flush(chars).isOverflow();
+            }
+            chars.flip();
+            input.accept(chars);
+            chars.clear();
+        } while (more);
+    }
+
+    /** Return a decoder for input text. */
+    private static CharsetDecoder newDecoder() {
+        return Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** Return a Writer into a memory-mapped output file for --mmap. */
+    private Writer getMappedOutput() {
+        try {
+            long size = Files.size(_inputPath);
+            return new MappedWriter(_outputPath, Charset.defaultCharset(),
+                                    size + size / GroupWriter.GROUP + 1);
+        } catch (IOException excp) {
+            throw error("could not open %s", _outputPath);
+        }
+    }
+
+    /** Close SINK, reporting any failure. */
+    private static void close(Writer sink) {
+        try {
+            sink.close();
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+    }
+
+    /** Close the file opened for --trace, if any, once its tracer has
+     *  been closed and has written everything. */
+    private void closeTrace() {
+        if (_traceOutput != null) {
+            try {
+                _traceOutput.close();
+            } catch (IOException excp) {
+                throw error("could not write trace: %s", excp.getMessage());
+            } finally {
+                _traceOutput = null;
+            }
+        }
+    }
+
+    /** Return the Tracer requested on the command line for ENIGMA: text
+     *  records on the standard error for --verbose, binary records in the
+     *  named file for --trace, or Tracer.NONE. */
+    private Tracer getTracer(Machine enigma) {
+        if (_traceFile != null) {
+            try {
+                _traceOutput = new FileOutputStream(_traceFile);
+                return new RingTracer(_alphabet, enigma.numRotors(),
+                                      _traceOutput, true,
+                                      RingTracer.DEFAULT_CAPACITY);
+            } catch (IOException excp) {
+                throw error("could not open %s", _traceFile);
+            }
+        } else if (_verbose) {
+            return new RingTracer(_alphabet, enigma.numRotors(),
+                                  System.err, false,
+                                  RingTracer.DEFAULT_CAPACITY);
+        }
+        return Tracer.NONE;
+    }
+
+    /** Return a new Enigma machine configured as _config, with a
+     *  substitution cache if one was requested.  May be called from any
+     *  thread. */
+    private Machine newMachine() {
+        Machine enigma = _config.fork();
+        if (_cacheBytes > 0) {
+            long budget = _cacheBytes / (_jobs * INFLIGHT_PER_JOB + 1);
+            enigma.setCache(new SubstitutionCache(enigma.alphabet().size(),
+                                                  budget));
+        }
+        return enigma;
+    }
+
+    /** Return an Enigma machine configured from the contents of CONFIG. */
+    private static Machine readConfig(Scanner config) {
         try {
             HashMap<String, Rotor> allRotors = new HashMap<>();
-            _allRotor = new ArrayList<>();
-            String alphaString = _config.next();
-            _alphabet = new Alphabet(alphaString);
-            int numRotors = _config.nextInt();
-            int pawls = _config.nextInt();
-            while (_config.hasNext()) {
-                Rotor rotor = readRotor();
+            Collection<Rotor> allRotor = new ArrayList<>();
+            String alphaString = config.next();
+            Alphabet alphabet = alphaString.equals(ByteStream.NAME)
+                ? ByteStream.ALPHABET : new Alphabet(alphaString);
+            int numRotors = config.nextInt();
+            int pawls = config.nextInt();
+            while (config.hasNext()) {
+                Rotor rotor = readRotor(config, alphabet);
                 allRotors.put(rotor.name(), rotor);
-                _allRotor.add(rotor);
+                allRotor.add(rotor);
             }
-            return new Machine(_alphabet, numRotors, pawls, _allRotor);
+            return new Machine(alphabet, numRotors, pawls, allRotor);
         } catch (NoSuchElementException excp) {
             throw error("configuration file truncated");
         }
     }
 
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
+    /** Return a rotor over ALPHABET, reading its description from
+     *  CONFIG. */
+    private static Rotor readRotor(Scanner config, Alphabet alphabet) {
         try {
             Rotor resultRotor;
-            String rotorName = _config.next();
-            String rotorTypenotch = _config.next();
+            String rotorName = config.next();
+            String rotorTypenotch = config.next();
             char rotorType = rotorTypenotch.charAt(0);
             String notches = rotorTypenotch.substring(1);
             String cycle = "";
-            while (_config.hasNext(".*[\\\\(|\\\\)]+.*")) {
-                cycle += _config.next();
+            while (config.hasNext(".*[\\\\(|\\\\)]+.*")) {
+                cycle += config.next();
+            }
+            Permutation perm;
+            if (alphabet == ByteStream.ALPHABET) {
+                notches = ByteStream.decode(notches);
+                perm = ByteStream.permutation(cycle);
+            } else {
+                perm = new Permutation(cycle, alphabet);
             }
             if (rotorType == 'M') {
                 resultRotor = new MovingRotor(rotorName,
-                        new Permutation(cycle, _alphabet), notches);
+                        perm, notches);
             } else if (rotorType == 'N') {
-                resultRotor = new FixedRotor(rotorName,
-                        new Permutation(cycle, _alphabet));
+                resultRotor = new FixedRotor(rotorName, perm);
             } else if (rotorType == 'R') {
-                resultRotor = new Reflector(rotorName,
-                        new Permutation(cycle, _alphabet));
+                resultRotor = new Reflector(rotorName, perm);
             } else {
                 throw error("1:48");
             }
@@ -155,7 +760,7 @@ public final class Main {
 
     /** Set M according to the specification given on SETTINGS,
      *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
+    static void setUp(Machine M, String settings) {
         Scanner s = new Scanner(settings);
         Scanner m = new Scanner(settings);
         if (!(s.next().charAt(0) == '*')) {
@@ -177,7 +782,8 @@ public final class Main {
                 }
             }
         }
-        String nextSettings = s.next();
+        boolean bytes = ByteStream.isBytes(M.alphabet());
+        String nextSettings = bytes ? ByteStream.decode(s.next()) : s.next();
         if (nextSettings.length() != M.numRotors() - 1) {
             throw error("not valid settings length");
         }
@@ -185,7 +791,8 @@ public final class Main {
         while (s.hasNext()) {
             plug += s.next() + "";
         }
-        Permutation pb = new Permutation(plug, _alphabet);
+        Permutation pb = bytes ? ByteStream.permutation(plug)
+            : new Permutation(plug, M.alphabet());
         M.setPlugboard(pb);
     }
 
@@ -194,36 +801,69 @@ public final class Main {
         return _verbose;
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        String nospace = msg.replaceAll("\\s", "");
-        if (nospace.length() == 0) {
-            _output.println();
-        } else {
-            while (nospace.length() > 5) {
-                _output.print(nospace.substring(0, 5) + " ");
-                nospace = nospace.substring(5);
-            }
-            _output.println(nospace);
-        }
-    }
-
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
     /** Source of input messages. */
-    private Scanner _input;
+    private ReadableByteChannel _input;
 
-    /** Source of machine configuration. */
-    private Scanner _config;
+    /** Machine as configured by the configuration file, before any
+     *  settings; the machines that do the work are forked from it. */
+    private Machine _config;
 
     /** File for encoded/decoded messages. */
     private PrintStream _output;
 
+    /** Size in bytes and characters of the chunks in which input is
+     *  read and decoded. */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /** Size of the windows in which --mmap maps its input. */
+    private static final long MAP_WINDOW = 1 << 28;
+
     /** True if --verbose specified. */
     private static boolean _verbose;
 
-    /** track of all rotors. */
-    private Collection<Rotor> _allRotor;
+    /** True if --mmap specified. */
+    private static boolean _mmap;
+
+    /** Input and output files for --mmap. */
+    private Path _inputPath, _outputPath;
+
+    /** Settings line given by --settings, or null. */
+    private static String _settings;
+
+    /** First message character and number of characters selected by
+     *  --range. */
+    private static long _rangeStart, _rangeLength;
+
+    /** True if --index specified. */
+    private static boolean _saveIndex;
+
+    /** File named by --trace, or null. */
+    private static String _traceFile;
+
+    /** Stream open on _traceFile, or null. */
+    private FileOutputStream _traceOutput;
+
+    /** Memory budget in bytes for compiled substitutions, or 0 to
+     *  convert without a cache. */
+    private static long _cacheBytes;
+
+    /** Number of worker threads for --jobs, or 0 to convert in the
+     *  calling thread. */
+    private static int _jobs;
+
+    /** Statistics requested by --stats or --stats-file, or
+     *  Metrics.NONE. */
+    private static Metrics _metrics = Metrics.NONE;
+
+    /** Milliseconds between the snapshots written by --stats-file. */
+    private static final long STATS_PERIOD = 1000;
+
+    /** Pieces of input in flight per worker for --jobs. */
+    private static final int INFLIGHT_PER_JOB = 4;
+
+    /** Number of settings lines written by --solve. */
+    private static final int SOLUTIONS = 5;
 }
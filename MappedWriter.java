@@ -0,0 +1,105 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** A Writer that encodes characters directly into a memory-mapped file.
+ *  The file is mapped one window at a time; when a window fills, the next
+ *  one is mapped just past it, so files larger than 2 GB are handled and
+ *  nothing is copied through the heap.  Closing the writer trims the file
+ *  to the bytes actually written.
+ *  @author Rayan Taghizadeh
+ */
+class MappedWriter extends Writer {
+
+    /** Largest window mapped at once. */
+    static final int MAX_WINDOW = 1 << 26;
+
+    /** Smallest window mapped at once. */
+    static final int MIN_WINDOW = 1 << 16;
+
+    /** A writer creating or replacing the file PATH, encoding with
+     *  CHARSET, whose first window is sized for about EXPECTED bytes. */
+    MappedWriter(Path path, Charset charset, long expected)
+        throws IOException {
+        _channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                    StandardOpenOption.READ,
+                                    StandardOpenOption.WRITE);
+        _encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _windowSize = (int) Math.max(MIN_WINDOW,
+                                     Math.min(MAX_WINDOW, expected));
+        _window = _channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                               _windowSize);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        encode(CharBuffer.wrap(cbuf, off, len), false);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_window == null) {
+            return;
+        }
+        encode(CharBuffer.allocate(0), true);
+        while (_encoder.flush(_window).isOverflow()) {
+            advance();
+        }
+        long size = _base + _window.position();
+        _window = null;
+        _channel.truncate(size);
+        _channel.close();
+    }
+
+    /** Encode the characters remaining in CHARS, which are the last to be
+     *  written iff LAST. */
+    private void encode(CharBuffer chars, boolean last) throws IOException {
+        while (true) {
+            CoderResult result = _encoder.encode(chars, _window, last);
+            if (!result.isOverflow()) {
+                break;
+            }
+            advance();
+        }
+    }
+
+    /** Map the window following the bytes written so far. */
+    private void advance() throws IOException {
+        _base += _window.position();
+        _window = _channel.map(FileChannel.MapMode.READ_WRITE, _base,
+                               _windowSize);
+    }
+
+    /** The output file. */
+    private final FileChannel _channel;
+
+    /** Encoder for the output charset. */
+    private final CharsetEncoder _encoder;
+
+    /** Size of each mapped window. */
+    private final int _windowSize;
+
+    /** File offset of the current window. */
+    private long _base;
+
+    /** The current window, or null once closed. */
+    private MappedByteBuffer _window;
+}
@@ -0,0 +1,366 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static enigma.EnigmaException.*;
+
+/** Counts of the work done by a run, and histograms of the time taken by
+ *  each stage of it.  All the counters are LongAdders, so threads
+ *  recording at once do not contend.  A disabled Metrics, such as NONE,
+ *  records nothing and does not even read the clock, so instrumented
+ *  code costs a predictable branch when statistics are not wanted.
+ *  @author Rayan Taghizadeh
+ */
+class Metrics {
+
+    /** The stages that are timed. */
+    enum Stage {
+        /** Reading the configuration file. */
+        CONFIG,
+        /** Setting a machine up from a settings line. */
+        SETUP,
+        /** Converting message characters. */
+        CONVERT,
+        /** Formatting and writing converted characters. */
+        OUTPUT;
+
+        /** Return my name as it appears in reports. */
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    /** Metrics that record nothing. */
+    static final Metrics NONE = new Metrics(false);
+
+    /** Metrics that record everything, starting their clock now. */
+    Metrics() {
+        this(true);
+    }
+
+    /** Metrics that record everything iff ENABLED. */
+    private Metrics(boolean enabled) {
+        _enabled = enabled;
+        _histograms = new Histogram[Stage.values().length];
+        for (int i = 0; i < _histograms.length; i += 1) {
+            _histograms[i] = new Histogram();
+        }
+        _started = System.nanoTime();
+    }
+
+    /** Return true iff I record anything. */
+    boolean enabled() {
+        return _enabled;
+    }
+
+    /** Return the time at which a timed stage starts, for stop or
+     *  lap. */
+    long start() {
+        return _enabled ? System.nanoTime() : 0;
+    }
+
+    /** Record the time taken by STAGE since START. */
+    void stop(Stage stage, long start) {
+        if (_enabled) {
+            _histograms[stage.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /** Record the time taken by STAGE since START, and return the time
+     *  at which the next stage starts. */
+    long lap(Stage stage, long start) {
+        if (!_enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        _histograms[stage.ordinal()].record(now - start);
+        return now;
+    }
+
+    /** Count N converted message characters. */
+    void countChars(long n) {
+        if (_enabled) {
+            _chars.add(n);
+        }
+    }
+
+    /** Count one message line. */
+    void countMessage() {
+        if (_enabled) {
+            _messages.increment();
+        }
+    }
+
+    /** Count one settings line. */
+    void countSettings() {
+        if (_enabled) {
+            _settings.increment();
+        }
+    }
+
+    /** Write a JSON snapshot of my state to FILE every PERIOD
+     *  milliseconds until close() is called.  Each snapshot replaces
+     *  the previous one whole.  A snapshot that fails does not stop
+     *  later ones; close() reports the first failure. */
+    void snapshots(Path file, long period) {
+        _snapshotFile = file;
+        _snapshotter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "enigma-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _snapshotter.scheduleAtFixedRate(this::periodicSnapshot, period,
+                                         period, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stop taking snapshots, write a last one, and print a summary on
+     *  OUT.  Then throw the first error met in writing a snapshot, if
+     *  any. */
+    void close(PrintStream out) {
+        if (_snapshotter != null) {
+            _snapshotter.shutdownNow();
+            try {
+                _snapshotter.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                snapshot();
+            } catch (EnigmaException excp) {
+                _snapshotError.compareAndSet(null, excp);
+            }
+        }
+        out.print(summary());
+        out.flush();
+        if (_snapshotError.get() != null) {
+            throw _snapshotError.get();
+        }
+    }
+
+    /** Return a human-readable summary of my state. */
+    String summary() {
+        double seconds = (System.nanoTime() - _started) * 1e-9;
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Statistics after %.3f s:%n", seconds));
+        text.append(String.format("  %,d characters (%,.0f/s), %,d message "
+                                  + "lines, %,d settings lines%n",
+                                  _chars.sum(), _chars.sum() / seconds,
+                                  _messages.sum(), _settings.sum()));
+        text.append(String.format("  %-8s %10s %12s %10s %10s %10s %10s%n",
+                                  "stage", "count", "total ms",
+                                  "mean us", "p50 us", "p99 us",
+                                  "max us"));
+        for (Stage stage : Stage.values()) {
+            Histogram hist = _histograms[stage.ordinal()];
+            long count = hist.count();
+            text.append(String.format("  %-8s %10d %12.3f %10.1f %10.1f "
+                                      + "%10.1f %10.1f%n",
+                                      stage.label(), count,
+                                      hist.total() * 1e-6,
+                                      count == 0 ? 0.0
+                                      : hist.total() * 1e-3 / count,
+                                      hist.percentile(0.5) * 1e-3,
+                                      hist.percentile(0.99) * 1e-3,
+                                      hist.max() * 1e-3));
+        }
+        return text.toString();
+    }
+
+    /** Return my state as a JSON object.  Times are in nanoseconds. */
+    String json() {
+        StringBuilder text = new StringBuilder("{");
+        text.append("\"elapsed_ns\":").append(System.nanoTime() - _started);
+        text.append(",\"chars\":").append(_chars.sum());
+        text.append(",\"messages\":").append(_messages.sum());
+        text.append(",\"settings\":").append(_settings.sum());
+        text.append(",\"stages\":{");
+        for (Stage stage : Stage.values()) {
+            Histogram hist = _histograms[stage.ordinal()];
+            if (stage.ordinal() > 0) {
+                text.append(',');
+            }
+            text.append('"').append(stage.label()).append("\":{")
+                .append("\"count\":").append(hist.count())
+                .append(",\"total_ns\":").append(hist.total())
+                .append(",\"p50_ns\":").append(hist.percentile(0.5))
+                .append(",\"p90_ns\":").append(hist.percentile(0.9))
+                .append(",\"p99_ns\":").append(hist.percentile(0.99))
+                .append(",\"p999_ns\":").append(hist.percentile(0.999))
+                .append(",\"max_ns\":").append(hist.max())
+                .append('}');
+        }
+        return text.append("}}").toString();
+    }
+
+    /** Return the histogram of STAGE. */
+    Histogram histogram(Stage stage) {
+        return _histograms[stage.ordinal()];
+    }
+
+    /** Take a snapshot for the periodic task, recording rather than
+     *  throwing any error, since an exception would cancel the later
+     *  runs. */
+    private void periodicSnapshot() {
+        try {
+            snapshot();
+        } catch (EnigmaException excp) {
+            _snapshotError.compareAndSet(null, excp);
+        }
+    }
+
+    /** Write json() to _snapshotFile, replacing it atomically. */
+    private void snapshot() {
+        Path temp = _snapshotFile.resolveSibling(_snapshotFile.getFileName()
+                                                 + ".tmp");
+        try {
+            Files.write(temp, (json() + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, _snapshotFile,
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw error("could not write %s", _snapshotFile);
+        }
+    }
+
+    /** A histogram of durations in nanoseconds, in the manner of
+     *  HdrHistogram: values are counted in buckets whose width is a
+     *  sixteenth of their power of two, so that every percentile is
+     *  reported to within about 6%, from a nanosecond up to hours. */
+    static class Histogram {
+
+        /** Number of bits of each value kept below its leading bit. */
+        private static final int SUB_BITS = 4;
+
+        /** Number of buckets per power of two. */
+        private static final int SUB = 1 << SUB_BITS;
+
+        /** Values are clamped to less than 2 ** MAX_BITS ns (about five
+         *  hours). */
+        private static final int MAX_BITS = 44;
+
+        /** Record a duration of VALUE nanoseconds. */
+        void record(long value) {
+            value = Math.max(0, Math.min(value, (1L << MAX_BITS) - 1));
+            _buckets[index(value)].increment();
+            _total.add(value);
+            _max.accumulate(value);
+        }
+
+        /** Return the number of durations recorded. */
+        long count() {
+            long count = 0;
+            for (LongAdder bucket : _buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        /** Return the sum of the durations recorded. */
+        long total() {
+            return _total.sum();
+        }
+
+        /** Return the longest duration recorded, or 0. */
+        long max() {
+            return _max.get();
+        }
+
+        /** Return the duration below or at which a fraction Q of those
+         *  recorded lie, to the precision of my buckets, or 0 if there
+         *  are none. */
+        long percentile(double q) {
+            long[] counts = new long[_buckets.length];
+            long count = 0;
+            for (int i = 0; i < counts.length; i += 1) {
+                counts[i] = _buckets[i].sum();
+                count += counts[i];
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            for (int i = 0; i < counts.length; i += 1) {
+                rank -= counts[i];
+                if (rank <= 0) {
+                    return Math.min(high(i), max());
+                }
+            }
+            return 0;
+        }
+
+        /** Return the index of the bucket of VALUE. */
+        static int index(long value) {
+            if (value < SUB) {
+                return (int) value;
+            }
+            int bit = 63 - Long.numberOfLeadingZeros(value);
+            return (bit - SUB_BITS + 1) * SUB
+                + (int) ((value >>> (bit - SUB_BITS)) & (SUB - 1));
+        }
+
+        /** Return the largest value in bucket I. */
+        static long high(int i) {
+            if (i < SUB) {
+                return i;
+            }
+            int bit = i / SUB + SUB_BITS - 1;
+            long low = (long) (SUB + i % SUB) << (bit - SUB_BITS);
+            return low + (1L << (bit - SUB_BITS)) - 1;
+        }
+
+        /** Number of durations in each bucket. */
+        private final LongAdder[] _buckets =
+            new LongAdder[(MAX_BITS - SUB_BITS + 1) * SUB];
+        {
+            for (int i = 0; i < _buckets.length; i += 1) {
+                _buckets[i] = new LongAdder();
+            }
+        }
+
+        /** Sum of the durations recorded. */
+        private final LongAdder _total = new LongAdder();
+
+        /** Longest duration recorded. */
+        private final LongAccumulator _max = new LongAccumulator(Math::max,
+                                                                 0);
+    }
+
+    /** True iff I record anything. */
+    private final boolean _enabled;
+
+    /** Histogram of each stage. */
+    private final Histogram[] _histograms;
+
+    /** Message characters converted. */
+    private final LongAdder _chars = new LongAdder();
+
+    /** Message lines converted. */
+    private final LongAdder _messages = new LongAdder();
+
+    /** Settings lines processed. */
+    private final LongAdder _settings = new LongAdder();
+
+    /** Time at which I was created. */
+    private final long _started;
+
+    /** File to which snapshots are written, or null. */
+    private Path _snapshotFile;
+
+    /** Thread writing snapshots, or null. */
+    private ScheduledExecutorService _snapshotter;
+
+    /** The first error met in writing a snapshot, or null. */
+    private final AtomicReference<EnigmaException> _snapshotError =
+        new AtomicReference<>();
+}
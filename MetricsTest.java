@@ -0,0 +1,132 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Metrics class.
+ *  @author Rayan Taghizadeh
+ */
+public class MetricsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void testBuckets() {
+        for (long v = 0; v < 1L << 20; v += 1 + v / 64) {
+            int i = Metrics.Histogram.index(v);
+            assertTrue(msg(v), Metrics.Histogram.high(i) >= v);
+            assertTrue(msg(v), i == 0
+                       || Metrics.Histogram.high(i - 1) < v);
+            assertTrue(msg(v), Metrics.Histogram.high(i) - v <= v / 16);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        Metrics.Histogram hist = new Metrics.Histogram();
+        assertEquals(0, hist.percentile(0.5));
+        for (long v = 1; v <= 1000; v += 1) {
+            hist.record(v * 1000);
+        }
+        assertEquals(1000, hist.count());
+        assertEquals(500500000, hist.total());
+        assertEquals(1000000, hist.max());
+        assertEquals(500000, hist.percentile(0.5), 500000 / 16);
+        assertEquals(990000, hist.percentile(0.99), 990000 / 16);
+        assertEquals(1000000, hist.percentile(1.0));
+    }
+
+    @Test
+    public void testConcurrentCounts() throws InterruptedException {
+        Metrics metrics = new Metrics();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int k = 0; k < 4; k += 1) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10000; i += 1) {
+                    metrics.countChars(3);
+                    metrics.stop(Metrics.Stage.CONVERT, metrics.start());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000,
+                     metrics.histogram(Metrics.Stage.CONVERT).count());
+        assertTrue(metrics.json().contains("\"chars\":120000,"));
+    }
+
+    @Test
+    public void testTranscriber() {
+        Alphabet alpha = new Alphabet("ABCD");
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation("(AB) (CD)", alpha)));
+        rotors.add(new FixedRotor("F", new Permutation("", alpha)));
+        Machine mach = new Machine(alpha, 2, 0, rotors);
+        mach.insertRotors(new String[] { "R", "F" });
+        Metrics metrics = new Metrics();
+        Transcriber t = new Transcriber(mach, line -> { }, new GroupWriter(
+            new StringWriter()), metrics);
+        char[] input = "* x\nAB CD\n\nABC\n* y\nD\n".toCharArray();
+        t.feed(input, 0, input.length);
+        t.finish();
+        assertTrue(metrics.json().startsWith("{\"elapsed_ns\":"));
+        assertTrue(metrics.json().contains(
+            ",\"chars\":8,\"messages\":4,\"settings\":2,"));
+        assertEquals(2, metrics.histogram(Metrics.Stage.SETUP).count());
+        assertEquals(4, metrics.histogram(Metrics.Stage.CONVERT).count());
+    }
+
+    @Test
+    public void testFailedSnapshot()
+        throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("enigma-stats");
+        Path sub = dir.resolve("later"), file = sub.resolve("stats.json");
+        Metrics metrics = new Metrics();
+        metrics.snapshots(file, 5);
+        Thread.sleep(50);
+        Files.createDirectory(sub);
+        while (!Files.exists(file)) {
+            Thread.sleep(5);
+        }
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        try {
+            metrics.close(new PrintStream(summary));
+            fail("first snapshot failure not reported");
+        } catch (EnigmaException excp) {
+            assertTrue(summary.toString().startsWith("Statistics"));
+        } finally {
+            Files.delete(file);
+            Files.delete(sub);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        Metrics.NONE.countChars(5);
+        Metrics.NONE.stop(Metrics.Stage.OUTPUT, Metrics.NONE.start());
+        assertFalse(Metrics.NONE.enabled());
+        assertEquals(0, Metrics.NONE.histogram(Metrics.Stage.OUTPUT)
+                     .count());
+    }
+
+    /** Return a message identifying the value V. */
+    private static String msg(long v) {
+        return TestUtils.msg("buckets", "value %d", v);
+    }
+}
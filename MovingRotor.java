@@ -15,12 +15,15 @@ class MovingRotor extends Rotor {
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         _notchess = notches;
+        _atNotch = new boolean[perm.size()];
+        for (int i = 0; i < notches.length(); i += 1) {
+            _atNotch[perm.alphabet().toInt(notches.charAt(i))] = true;
+        }
     }
 
     @Override
-    boolean atNotch() {
-        char car = permutation().alphabet().toChar(setting());
-        return _notchess.contains(String.valueOf(car));
+    boolean atNotch(int setting) {
+        return _atNotch[setting];
     }
 
     @Override
@@ -38,6 +41,9 @@ class MovingRotor extends Rotor {
         return true;
     }
 /** track of notches. */
-    private String _notchess;
+    private final String _notchess;
+
+    /** _atNotch[S] is true iff setting S is a notch. */
+    private final boolean[] _atNotch;
 
 }
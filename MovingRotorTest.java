@@ -6,6 +6,7 @@ import org.junit.rules.Timeout;
 import static org.junit.Assert.*;
 
 import java.util.HashMap;
+import java.util.Random;
 
 import static enigma.TestUtils.*;
 
@@ -95,4 +96,33 @@ public class MovingRotorTest {
                 rotor.convertBackward(alpha.indexOf('S')));
     }
 
+    @Test
+    public void checkConjugatedTables() {
+        Random random = new Random(22);
+        for (int size : new int[] { 1, 26, Rotor.MAX_TABLE_SIZE,
+                                    Rotor.MAX_TABLE_SIZE + 1, 1000 }) {
+            char[] chars = new char[size];
+            int[] forward = new int[size];
+            for (int i = 0; i < size; i += 1) {
+                chars[i] = (char) ('!' + i);
+                int j = random.nextInt(i + 1);
+                forward[i] = forward[j];
+                forward[j] = i;
+            }
+            Alphabet alpha = new Alphabet(new String(chars));
+            Permutation perm = new Permutation(forward, alpha);
+            Rotor r = new MovingRotor("R", perm, "");
+            for (int k = 0; k < 5000; k += 1) {
+                int p = random.nextInt(size), s = random.nextInt(size);
+                String msg = msg("size " + size, "%d at %d", p, s);
+                assertEquals(msg, Math.floorMod(
+                                 perm.permute((p + s) % size) - s, size),
+                             r.convertForward(p, s));
+                assertEquals(msg, Math.floorMod(
+                                 perm.invert((p + s) % size) - s, size),
+                             r.convertBackward(p, s));
+            }
+        }
+    }
+
 }
@@ -0,0 +1,125 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static enigma.EnigmaException.*;
+
+/** Log-likelihoods of the n-grams of some language over an alphabet, for
+ *  scoring candidate plaintexts.  N-grams never seen are given a small
+ *  floor probability.
+ *  @author Rayan Taghizadeh
+ */
+class NGrams {
+
+    /** Largest number of distinct n-grams I will tabulate. */
+    static final int MAX_TABLE = 1 << 26;
+
+    /** N-grams over ALPHABET, all of the same length, with the numbers of
+     *  times they were seen given by COUNTS, whose keys are the n-grams
+     *  as strings. */
+    NGrams(Alphabet alphabet, Map<String, Long> counts) {
+        if (counts.isEmpty()) {
+            throw error("no n-grams given");
+        }
+        _alphabet = alphabet;
+        _n = counts.keySet().iterator().next().length();
+        double entries = Math.pow(alphabet.size(), _n);
+        if (_n == 0 || entries > MAX_TABLE) {
+            throw error("n-grams of length %d are not supported", _n);
+        }
+        long total = 0;
+        for (long count : counts.values()) {
+            total += count;
+        }
+        _table = new float[(int) entries];
+        Arrays.fill(_table, (float) Math.log10(0.01 / total));
+        for (Map.Entry<String, Long> e : counts.entrySet()) {
+            String gram = e.getKey();
+            if (gram.length() != _n) {
+                throw error("n-grams of different lengths");
+            }
+            int index = 0;
+            for (int i = 0; i < _n; i += 1) {
+                char c = gram.charAt(i);
+                if (!alphabet.contains(c)) {
+                    throw error("character %c not in alphabet", c);
+                }
+                index = index * alphabet.size() + alphabet.toInt(c);
+            }
+            _table[index] = (float) Math.log10((double) e.getValue() / total);
+        }
+    }
+
+    /** Return the n-grams over ALPHABET listed in the file FILE, one per
+     *  line, each followed by the number of times it was seen. */
+    static NGrams read(Alphabet alphabet, Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, Charset.defaultCharset());
+        } catch (IOException excp) {
+            throw error("could not read %s", file);
+        }
+        HashMap<String, Long> counts = new HashMap<>();
+        for (String line : lines) {
+            String[] words = line.trim().split("\\s+");
+            if (words.length == 1 && words[0].isEmpty()) {
+                continue;
+            }
+            try {
+                if (words.length != 2) {
+                    throw new NumberFormatException();
+                }
+                counts.merge(words[0], Long.parseLong(words[1]), Long::sum);
+            } catch (NumberFormatException excp) {
+                throw error("%s: bad n-gram line: %s", file, line);
+            }
+        }
+        return new NGrams(alphabet, counts);
+    }
+
+    /** Return the length of my n-grams. */
+    int length() {
+        return _n;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the log-likelihood of the n-gram formed by the length()
+     *  alphabet indices of TEXT starting at START. */
+    double score(int[] text, int start) {
+        int index = 0;
+        for (int i = start; i < start + _n; i += 1) {
+            index = index * _alphabet.size() + text[i];
+        }
+        return _table[index];
+    }
+
+    /** Return the log-likelihood of all the n-grams of TEXT. */
+    double score(int[] text) {
+        double sum = 0;
+        for (int i = 0; i + _n <= text.length; i += 1) {
+            sum += score(text, i);
+        }
+        return sum;
+    }
+
+    /** Alphabet of my n-grams. */
+    private final Alphabet _alphabet;
+
+    /** Length of my n-grams. */
+    private final int _n;
+
+    /** Log-likelihood of each n-gram, indexed by its letters as a number
+     *  in base alphabet size. */
+    private final float[] _table;
+}
@@ -0,0 +1,113 @@
+package enigma;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Converts long messages on several cores.  A message is cut into chunks;
+ *  the worker for each chunk jumps a copy of the machine's rotor settings
+ *  straight to the chunk's offset and converts it independently, writing
+ *  into the shared output array.  Results are identical to converting the
+ *  message sequentially with the machine.
+ *  @author Rayan Taghizadeh
+ */
+class ParallelConverter {
+
+    /** Default smallest number of characters given to one worker. */
+    static final int MIN_CHUNK = 1 << 16;
+
+    /** A converter running its workers in POOL, giving each worker at
+     *  least MINCHUNK characters. */
+    ParallelConverter(ForkJoinPool pool, int minChunk) {
+        _pool = pool;
+        _minChunk = Math.max(1, minChunk);
+    }
+
+    /** A converter using the common fork-join pool. */
+    ParallelConverter() {
+        this(ForkJoinPool.commonPool(), MIN_CHUNK);
+    }
+
+    /** Convert the LEN characters of IN starting at INOFF with MACHINE,
+     *  storing the results in OUT starting at OUTOFF, exactly as
+     *  MACHINE.convert(IN, INOFF, OUT, OUTOFF, LEN) would, and leave
+     *  MACHINE's rotors in the corresponding final settings.  MACHINE's
+     *  cache and tracer are not used.  Its rotors must have been inserted,
+     *  which builds the stepping rules the workers share. */
+    void convert(Machine machine, char[] in, int inOff,
+                 char[] out, int outOff, int len) {
+        if (inOff < 0 || outOff < 0 || len < 0
+            || inOff > in.length - len || outOff > out.length - len) {
+            throw new IndexOutOfBoundsException();
+        }
+        int[] start = machine.positions();
+        int chunk = (int) Math.max(_minChunk,
+                                   len / (4L * _pool.getParallelism()));
+        _pool.invoke(new Chunk(machine, start, in, inOff, out, outOff,
+                               0, len, chunk));
+        machine.jump(len);
+    }
+
+    /** The task of converting characters LO .. HI-1 of a message. */
+    private static class Chunk extends RecursiveAction {
+
+        /** A task converting characters LO .. HI-1 of the message in IN
+         *  at INOFF into OUT at OUTOFF with MACHINE, whose settings at the
+         *  start of the message are START, splitting ranges longer than
+         *  CHUNK. */
+        Chunk(Machine machine, int[] start, char[] in, int inOff,
+              char[] out, int outOff, int lo, int hi, int chunk) {
+            _machine = machine;
+            _start = start;
+            _in = in;
+            _inOff = inOff;
+            _out = out;
+            _outOff = outOff;
+            _lo = lo;
+            _hi = hi;
+            _chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > _chunk) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Chunk(_machine, _start, _in, _inOff, _out,
+                                    _outOff, _lo, mid, _chunk),
+                          new Chunk(_machine, _start, _in, _inOff, _out,
+                                    _outOff, mid, _hi, _chunk));
+                return;
+            }
+            Alphabet alpha = _machine.alphabet();
+            int[] state = _start.clone();
+            _machine.jump(state, _lo);
+            for (int i = _lo; i < _hi; i += 1) {
+                int c = alpha.toInt(_in[_inOff + i]);
+                _out[_outOff + i] = alpha.toChar(_machine.convert(c, state));
+            }
+        }
+
+        /** Machine whose wiring is used. */
+        private final Machine _machine;
+
+        /** Rotor settings at the start of the message. */
+        private final int[] _start;
+
+        /** Input and output arrays. */
+        private final char[] _in, _out;
+
+        /** Offsets of the message in _in and _out. */
+        private final int _inOff, _outOff;
+
+        /** Range of message characters to convert. */
+        private final int _lo, _hi;
+
+        /** Longest range converted without splitting. */
+        private final int _chunk;
+    }
+
+    /** Pool running the workers. */
+    private final ForkJoinPool _pool;
+
+    /** Smallest number of characters per worker. */
+    private final int _minChunk;
+}
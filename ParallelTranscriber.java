@@ -0,0 +1,313 @@
+package enigma;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import java.nio.CharBuffer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import static enigma.EnigmaException.*;
+
+/** Converts input text exactly as a Transcriber would, but converts the
+ *  blocks that begin at settings lines concurrently.  Each block is
+ *  independent of the others, since its settings line resets the machine.
+ *  Blocks are handed to a pool of worker threads in pieces of at most
+ *  PIECE_SIZE characters, each block on a machine of its own, and their
+ *  output is written back in input order.  At most a fixed number of
+ *  pieces are in flight, so memory use depends neither on the length of
+ *  the input nor on that of its blocks.
+ *
+ *  If a block fails, the output is written up to the point at which a
+ *  Transcriber would have stopped, and the same error is reported.
+ *  @author Rayan Taghizadeh
+ */
+class ParallelTranscriber {
+
+    /** Largest number of characters handed to a worker at once. */
+    static final int PIECE_SIZE = 1 << 18;
+
+    /** A transcriber running in POOL, writing converted lines to OUT and
+     *  keeping at most INFLIGHT pieces queued or unwritten.  Blocks are
+     *  converted on machines obtained from MACHINES, which may be called
+     *  from any thread, and set up from their settings lines by SETUP.
+     *  Machines are reused for later blocks once their block is done. */
+    ParallelTranscriber(Supplier<Machine> machines,
+                        BiConsumer<Machine, String> setup, Writer out,
+                        ExecutorService pool, int inflight) {
+        this(machines, setup, out, pool, inflight, Metrics.NONE);
+    }
+
+    /** A transcriber as above, recording the work of all its threads in
+     *  METRICS. */
+    ParallelTranscriber(Supplier<Machine> machines,
+                        BiConsumer<Machine, String> setup, Writer out,
+                        ExecutorService pool, int inflight,
+                        Metrics metrics) {
+        _metrics = metrics;
+        _machines = machines;
+        _setup = setup;
+        _out = out;
+        _pool = pool;
+        _inflight = Math.max(1, inflight);
+        _session = new Session();
+    }
+
+    /** Process the characters remaining in CHUNK. */
+    void feed(CharBuffer chunk) {
+        while (chunk.hasRemaining()) {
+            accept(chunk.get());
+        }
+    }
+
+    /** Process the LEN characters of CHARS starting at OFF. */
+    void feed(char[] chars, int off, int len) {
+        for (int i = off; i < off + len; i += 1) {
+            accept(chars[i]);
+        }
+    }
+
+    /** Finish processing at the end of input, waiting until all output
+     *  has been written. */
+    void finish() {
+        submit(_len, true);
+        while (!_queue.isEmpty()) {
+            write();
+        }
+        flush();
+    }
+
+    /** Add C to the current piece, starting a new block first if C begins
+     *  a settings line. */
+    private void accept(char c) {
+        if (_afterCR) {
+            _afterCR = false;
+            if (c == '\n') {
+                append(c);
+                _lineStart = _len;
+                return;
+            }
+        }
+        if (Transcriber.isTerminator(c)) {
+            _afterCR = c == '\r';
+            _blankLine = true;
+            append(c);
+            _lineStart = _len;
+            return;
+        }
+        if (_blankLine) {
+            if (c == '*') {
+                if (_lineStart > 0 || _session._pieces > 0) {
+                    split();
+                }
+            } else if (!Transcriber.isBlank(c)) {
+                _blankLine = false;
+            }
+        }
+        if (_len >= PIECE_SIZE && (!_blankLine || _lineStart == _len)) {
+            submit(_len, false);
+        }
+        append(c);
+    }
+
+    /** End the current block at the start of the current line and begin
+     *  a new one there. */
+    private void split() {
+        char[] rest = Arrays.copyOfRange(_piece, _lineStart, _len);
+        submit(_lineStart, true);
+        _session = new Session();
+        System.arraycopy(rest, 0, _piece, 0, rest.length);
+        _len = rest.length;
+        _lineStart = 0;
+    }
+
+    /** Append C to the current piece. */
+    private void append(char c) {
+        if (_len == _piece.length) {
+            _piece = Arrays.copyOf(_piece, 2 * _len);
+        }
+        _piece[_len++] = c;
+    }
+
+    /** Hand the first LEN characters of the current piece to the current
+     *  session, ending its block if LAST, and start a new piece with any
+     *  characters that remain. */
+    private void submit(int len, boolean last) {
+        if (_queue.size() == _inflight) {
+            write();
+        }
+        Session session = _session;
+        char[] text = Arrays.copyOf(_piece, len);
+        session._pieces += 1;
+        session._done = session._done.thenApplyAsync(
+            x -> session.convert(text, last), _pool);
+        _queue.add(session._done);
+        _len = 0;
+        _lineStart = 0;
+    }
+
+    /** Write out the oldest piece, waiting for it if necessary, and
+     *  report its error if it failed. */
+    private void write() {
+        Piece piece;
+        try {
+            piece = _queue.remove().join();
+        } catch (CompletionException excp) {
+            flush();
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw excp;
+        }
+        try {
+            _out.write(piece._output);
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+        if (piece._failure != null) {
+            flush();
+            throw piece._failure;
+        }
+    }
+
+    /** Flush _out. */
+    private void flush() {
+        try {
+            _out.flush();
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+    }
+
+    /** The converted text of one piece of input. */
+    private static class Piece {
+
+        /** A piece whose conversion is OUTPUT, and which stopped with
+         *  FAILURE if that is not null. */
+        Piece(char[] output, EnigmaException failure) {
+            _output = output;
+            _failure = failure;
+        }
+
+        /** Converted text. */
+        private final char[] _output;
+
+        /** Error that ended the conversion, or null. */
+        private final EnigmaException _failure;
+    }
+
+    /** The conversion of one block.  Its pieces are converted one at a
+     *  time, in order, though not necessarily by the same thread. */
+    private class Session {
+
+        /** Convert TEXT, the next piece of my block, ending my block if
+         *  LAST, and return the result. */
+        Piece convert(char[] text, boolean last) {
+            if (_failed) {
+                return new Piece(new char[0], null);
+            }
+            if (_transcriber == null) {
+                _machine = _idle.poll();
+                if (_machine == null) {
+                    _machine = _machines.get();
+                }
+                Machine machine = _machine;
+                _transcriber = new Transcriber(
+                    machine, line -> _setup.accept(machine, line), _group,
+                    _metrics);
+            }
+            EnigmaException failure = null;
+            try {
+                _transcriber.feed(text, 0, text.length);
+                if (last) {
+                    _transcriber.finish();
+                }
+            } catch (EnigmaException excp) {
+                failure = excp;
+                _failed = true;
+            }
+            _group.flush();
+            if (last || _failed) {
+                _idle.add(_machine);
+                _machine = null;
+            }
+            char[] output = _buffer.toCharArray();
+            _buffer.reset();
+            return new Piece(output, failure);
+        }
+
+        /** Number of pieces submitted. */
+        private int _pieces;
+
+        /** Completes when the last piece submitted has been converted. */
+        private CompletableFuture<Piece> _done =
+            CompletableFuture.completedFuture(null);
+
+        /** Machine converting my block, or null. */
+        private Machine _machine;
+
+        /** Transcriber for my block, or null before the first piece. */
+        private Transcriber _transcriber;
+
+        /** Output of the current piece. */
+        private final CharArrayWriter _buffer = new CharArrayWriter();
+
+        /** Groups output into _buffer. */
+        private final GroupWriter _group = new GroupWriter(_buffer);
+
+        /** True once my block has failed. */
+        private boolean _failed;
+    }
+
+    /** Record of the work of all blocks. */
+    private final Metrics _metrics;
+
+    /** Source of new machines. */
+    private final Supplier<Machine> _machines;
+
+    /** Machines not in use by any block. */
+    private final ConcurrentLinkedQueue<Machine> _idle =
+        new ConcurrentLinkedQueue<>();
+
+    /** Sets up a machine from a settings line. */
+    private final BiConsumer<Machine, String> _setup;
+
+    /** Destination of output. */
+    private final Writer _out;
+
+    /** Threads converting pieces. */
+    private final ExecutorService _pool;
+
+    /** Largest number of pieces in _queue. */
+    private final int _inflight;
+
+    /** Pieces submitted but not yet written, in input order. */
+    private final ArrayDeque<CompletableFuture<Piece>> _queue =
+        new ArrayDeque<>();
+
+    /** Block to which the current piece belongs. */
+    private Session _session;
+
+    /** Current piece of input. */
+    private char[] _piece = new char[1 << 12];
+
+    /** Number of characters in _piece. */
+    private int _len;
+
+    /** Index in _piece of the start of the current line. */
+    private int _lineStart;
+
+    /** True iff the current line holds only blanks so far. */
+    private boolean _blankLine = true;
+
+    /** True iff the last character was a carriage return. */
+    private boolean _afterCR;
+}
@@ -0,0 +1,141 @@
+package enigma;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ParallelTranscriber class.
+ *  @author Rayan Taghizadeh
+ */
+public class ParallelTranscriberTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Alphabet of the test machines. */
+    private static final Alphabet ALPHA = new Alphabet("ABCD");
+
+    /** Return a new machine with a moving rotor, whose settings lines
+     *  have the form "* R M S" for a setting S. */
+    private Machine machine() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation("(AB) (CD)", ALPHA)));
+        rotors.add(new MovingRotor("M", new Permutation("(ACDB)", ALPHA),
+                                   "C"));
+        return new Machine(ALPHA, 2, 1, rotors);
+    }
+
+    /** Set up MACH from the settings line SETTINGS. */
+    private static void setUp(Machine mach, String settings) {
+        String[] words = settings.trim().split("\\s+");
+        if (words.length != 4) {
+            throw EnigmaException.error("bad settings");
+        }
+        mach.insertRotors(new String[] { words[1], words[2] });
+        mach.setRotors(words[3]);
+    }
+
+    /** Return the output of transcribing INPUT sequentially, followed by
+     *  the error reported, if any. */
+    private String sequential(String input) {
+        StringWriter result = new StringWriter();
+        GroupWriter out = new GroupWriter(result);
+        Machine mach = machine();
+        Transcriber t = new Transcriber(mach, s -> setUp(mach, s), out);
+        try {
+            t.feed(input.toCharArray(), 0, input.length());
+            t.finish();
+        } catch (EnigmaException excp) {
+            out.flush();
+            result.write("!" + excp.getMessage());
+        }
+        return result.toString();
+    }
+
+    /** Return the output of transcribing INPUT with JOBS workers, delivered
+     *  in chunks of CHUNK characters, followed by the error reported, if
+     *  any. */
+    private String parallel(String input, int jobs, int chunk) {
+        StringWriter result = new StringWriter();
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try {
+            ParallelTranscriber t =
+                new ParallelTranscriber(this::machine,
+                                        ParallelTranscriberTest::setUp,
+                                        result, pool, 2 * jobs);
+            char[] chars = input.toCharArray();
+            for (int i = 0; i < chars.length; i += chunk) {
+                t.feed(chars, i, Math.min(chunk, chars.length - i));
+            }
+            t.finish();
+        } catch (EnigmaException excp) {
+            result.write("!" + excp.getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+        return result.toString();
+    }
+
+    /** Return random input of BLOCKS blocks using RAND, with lines ended
+     *  by NL. */
+    private String randomInput(Random rand, int blocks, String nl) {
+        StringBuilder input = new StringBuilder();
+        for (int b = 0; b < blocks; b += 1) {
+            input.append(rand.nextBoolean() ? "" : " \t").append("* R M ")
+                .append(ALPHA.toChar(rand.nextInt(4))).append(nl);
+            for (int n = rand.nextInt(4); n > 0; n -= 1) {
+                for (int k = rand.nextInt(40); k > 0; k -= 1) {
+                    input.append(rand.nextInt(6) == 0 ? ' '
+                                 : ALPHA.toChar(rand.nextInt(4)));
+                }
+                input.append(nl);
+            }
+        }
+        return input.toString();
+    }
+
+    @Test
+    public void testOrder() {
+        Random rand = new Random(3);
+        for (String nl : new String[] { "\n", "\r\n", "\r" }) {
+            String input = randomInput(rand, 300, nl);
+            String expected = sequential(input);
+            for (int jobs = 1; jobs <= 4; jobs += 3) {
+                assertEquals(expected, parallel(input, jobs, 7));
+                assertEquals(expected, parallel(input, jobs, 1000));
+            }
+        }
+    }
+
+    @Test
+    public void testLongBlock() {
+        StringBuilder input = new StringBuilder("* R M A\n");
+        for (int i = 0; i < ParallelTranscriber.PIECE_SIZE * 2 + 17; i += 1) {
+            input.append(ALPHA.toChar(i * 7 % 11 % 4));
+        }
+        input.append("\n  * R M B\nABCD");
+        String text = input.toString();
+        assertEquals(sequential(text), parallel(text, 3, 4096));
+    }
+
+    @Test
+    public void testErrors() {
+        Random rand = new Random(4);
+        String good = randomInput(rand, 50, "\n");
+        for (String input : new String[] {
+                "", "\n* R M A\nAB\n", good + "* R M\nAB\n" + good,
+                good + "AB*CD\n" + good, good + "ABXD\n" + good }) {
+            String expected = sequential(input);
+            assertTrue(expected.contains("!"));
+            assertEquals(expected, parallel(input, 4, 100));
+        }
+    }
+}
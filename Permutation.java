@@ -1,7 +1,6 @@
 package enigma;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import static enigma.EnigmaException.*;
 
@@ -16,12 +15,11 @@ class Permutation {
     /** cycles cleaned up. */
     private String[] _cleanCycle;
 
-    /** cycle hashmap. */
-    private Map<Integer, Integer> _altCycle = new HashMap<Integer, Integer>();
+    /** Forward mapping: _forward[i] is the image of index i. */
+    private int[] _forward;
 
-    /** reverse cycle hashmap. */
-    private Map<Integer, Integer> _altCycleReverse
-            = new HashMap<Integer, Integer>();
+    /** Inverse mapping: _inverse[i] is the preimage of index i. */
+    private int[] _inverse;
 
     /** Set this Permutation to that specified by CYCLES, a string in the
      *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
@@ -32,49 +30,46 @@ class Permutation {
         _alphabet = alphabet;
         String p = cycles.replaceAll("[()]", " ");
         _cleanCycle = p.split(" ");
-        for (int i = 0; i < _alphabet.size(); i++) {
-            _altCycle.put(i, -1);
-            _altCycleReverse.put(i, -1);
+        _forward = new int[_alphabet.size()];
+        _inverse = new int[_alphabet.size()];
+        for (int i = 0; i < _forward.length; i++) {
+            _forward[i] = i;
+            _inverse[i] = i;
         }
         for (int i = 0; i < _cleanCycle.length; i++) {
             addCycle(_cleanCycle[i]);
         }
     }
 
-    /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
-    void addCycle(String cycle) {
-        for (int i = 0; i < cycle.length(); i++) {
-            if (cycle.length() == 1) {
-                _altCycle.replace(_alphabet.toInt(cycle.charAt(i)),
-                        _alphabet.toInt(cycle.charAt(i)));
-            } else if (i == cycle.length() - 1) {
-                _altCycle.replace(_alphabet.toInt(cycle.charAt(i)),
-                        _alphabet.toInt(cycle.charAt(0)));
-            } else {
-                _altCycle.replace(_alphabet.toInt(cycle.charAt(i)),
-                        _alphabet.toInt(cycle.charAt(i + 1)));
-            }
+    /** Set this Permutation to the one mapping each index I of ALPHABET to
+     *  FORWARD[I], which must be a permutation of 0 .. ALPHABET.size()-1.
+     *  FORWARD is not copied and must not be modified afterwards. */
+    Permutation(int[] forward, Alphabet alphabet) {
+        _alphabet = alphabet;
+        if (forward.length != alphabet.size()) {
+            throw error("permutation has wrong size");
         }
-        for (int i = 0; i < cycle.length(); i++) {
-            if (cycle.length() == 1) {
-                _altCycleReverse.replace(_alphabet.toInt(cycle.charAt(i)),
-                        _alphabet.toInt(cycle.charAt(i)));
-            } else if (i == 0) {
-                _altCycleReverse.replace(_alphabet.toInt(cycle.charAt(i)),
-                        _alphabet.toInt(cycle.charAt(cycle.length() - 1)));
-            } else {
-                _altCycleReverse.replace(_alphabet.toInt(cycle.charAt(i)),
-                        _alphabet.toInt(cycle.charAt(i - 1)));
+        _forward = forward;
+        _inverse = new int[forward.length];
+        Arrays.fill(_inverse, -1);
+        for (int i = 0; i < forward.length; i++) {
+            int to = forward[i];
+            if (to < 0 || to >= forward.length || _inverse[to] >= 0) {
+                throw error("not a permutation");
             }
+            _inverse[to] = i;
         }
-        for (int i = 0; i < _alphabet.size(); i++) {
-            if (_altCycle.get(i) == -1) {
-                _altCycle.replace(i, i);
-            }
-            if (_altCycleReverse.get(i) == -1) {
-                _altCycleReverse.replace(i, i);
-            }
+    }
+
+    /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
+     *  c0c1...cm. */
+    void addCycle(String cycle) {
+        int n = cycle.length();
+        for (int i = 0; i < n; i++) {
+            int from = _alphabet.toInt(cycle.charAt(i));
+            int to = _alphabet.toInt(cycle.charAt((i + 1) % n));
+            _forward[from] = to;
+            _inverse[to] = from;
         }
     }
 
@@ -89,19 +84,19 @@ class Permutation {
 
     /** Returns the size of the alphabet I permute. */
     int size() {
-        return _alphabet.size();
+        return _forward.length;
     }
 
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        return _altCycle.get(p);
+        return _forward[p];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        return _altCycleReverse.get(c);
+        return _inverse[c];
     }
 
     /** Return the result of applying this permutation to the index of P
@@ -124,8 +119,8 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        for (Map.Entry<Integer, Integer> entry : _altCycle.entrySet()) {
-            if (entry.getValue().equals(entry.getKey())) {
+        for (int i = 0; i < _forward.length; i++) {
+            if (_forward[i] == i) {
                 return false;
             }
         }
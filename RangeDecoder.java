@@ -0,0 +1,130 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+
+import static enigma.EnigmaException.*;
+
+/** Converts arbitrary ranges of a long message stored in a file as Main
+ *  writes it (grouped in fives, possibly over several lines), without
+ *  converting the characters before them.  The rotor settings at the
+ *  start of the range are computed with Machine.jump, and a LineIndex
+ *  locates its first byte, so the cost depends on the length of the
+ *  range rather than on its offset.
+ *  @author Rayan Taghizadeh
+ */
+class RangeDecoder {
+
+    /** Size in bytes of the chunks in which a range is read. */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /** A decoder for the message in FILE, encoded in CHARSET and described
+     *  by INDEX.  MACHINE must be set as it was at the start of the
+     *  message; its rotors are not changed. */
+    RangeDecoder(Machine machine, FileChannel file, LineIndex index,
+                 Charset charset) {
+        _machine = machine;
+        _file = file;
+        _index = index;
+        _charset = charset;
+    }
+
+    /** Return the number of bytes each character of ALPHA occupies in
+     *  CHARSET, which must be the same for all of them, with blanks and
+     *  newlines taking one byte. */
+    static int width(Alphabet alpha, Charset charset) {
+        CharsetEncoder encoder = charset.newEncoder();
+        try {
+            if (encoder.encode(CharBuffer.wrap(" \n")).remaining() != 2) {
+                throw error("%s cannot be accessed by offset", charset);
+            }
+            int width = 0;
+            for (int i = 0; i < alpha.size(); i += 1) {
+                String c = String.valueOf(alpha.toChar(i));
+                int w = encoder.encode(CharBuffer.wrap(c)).remaining();
+                if (width != 0 && w != width) {
+                    throw error("alphabet characters differ in length in %s",
+                                charset);
+                }
+                width = w;
+            }
+            return width;
+        } catch (CharacterCodingException excp) {
+            throw error("alphabet cannot be encoded in %s", charset);
+        }
+    }
+
+    /** Write the conversion of the LENGTH message characters starting
+     *  at character OFFSET (numbering from 0) to OUT. */
+    void decode(long offset, long length, Writer out) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        if (offset < 0 || length > _index.chars() - offset) {
+            throw error("range %d+%d extends past the end of the message",
+                        offset, length);
+        }
+        Alphabet alpha = _machine.alphabet();
+        int[] state = _machine.positions();
+        _machine.jump(state, offset);
+        CharsetDecoder decoder = _charset.newDecoder();
+        ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+        long pos = _index.locate(_file, offset);
+        long left = length;
+        while (left > 0) {
+            int n = _file.read(bytes, pos);
+            if (n < 0) {
+                throw error("message ends before the requested range");
+            }
+            pos += n;
+            bytes.flip();
+            if (decoder.decode(bytes, chars, false).isError()) {
+                throw error("malformed input near byte %d", pos);
+            }
+            bytes.compact();
+            chars.flip();
+            int k = 0;
+            for (int i = chars.position(); i < chars.limit() && left > 0;
+                 i += 1) {
+                char c = chars.get(i);
+                if (!Transcriber.isBlank(c) && !Transcriber.isTerminator(c)) {
+                    int e = _machine.convert(alpha.toInt(c), state);
+                    chars.put(k++, alpha.toChar(e));
+                    left -= 1;
+                }
+            }
+            out.write(chars.array(), 0, k);
+            chars.clear();
+        }
+    }
+
+    /** Return the conversion of the LENGTH message characters starting at
+     *  character OFFSET. */
+    String decode(long offset, int length) throws IOException {
+        StringWriter out = new StringWriter(length);
+        decode(offset, length, out);
+        return out.toString();
+    }
+
+    /** Machine set for the start of the message. */
+    private final Machine _machine;
+
+    /** File holding the message. */
+    private final FileChannel _file;
+
+    /** Index of _file. */
+    private final LineIndex _index;
+
+    /** Encoding of _file. */
+    private final Charset _charset;
+}
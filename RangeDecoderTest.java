@@ -0,0 +1,161 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the RangeDecoder and LineIndex
+ *  classes.
+ *  @author Rayan Taghizadeh
+ */
+public class RangeDecoderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Encoding of the test files. */
+    private static final Charset ASCII = StandardCharsets.US_ASCII;
+
+    /** Return a machine with the naval rotors B Beta III IV I at AXLE and
+     *  plugboard (HQ) (EX). */
+    private Machine machine() {
+        Machine mach = TestUtils.navalMachine(5, 3, "B", "Beta", "III",
+                                              "IV", "I");
+        mach.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("(HQ) (EX)", TestUtils.UPPER));
+        return mach;
+    }
+
+    /** Write the conversion of the lines of PLAIN with a fresh machine to
+     *  FILE, as Main would, and return PLAIN's characters without line
+     *  breaks. */
+    private String encrypt(String[] plain, Path file) throws IOException {
+        Machine mach = machine();
+        StringBuilder all = new StringBuilder();
+        try (Writer sink = new OutputStreamWriter(
+                Files.newOutputStream(file), ASCII)) {
+            GroupWriter out = new GroupWriter(sink);
+            for (String line : plain) {
+                char[] chars = mach.convert(line).toCharArray();
+                out.write(chars, 0, chars.length);
+                out.endLine();
+                all.append(line);
+            }
+            out.flush();
+        }
+        return all.toString();
+    }
+
+    /** Return random lines, many empty and some longer than an index
+     *  interval, using RAND. */
+    private String[] randomLines(Random rand) {
+        String[] lines = new String[200];
+        for (int i = 0; i < lines.length; i += 1) {
+            int len = rand.nextInt(2000);
+            if (rand.nextInt(5) == 0) {
+                len = 0;
+            } else if (rand.nextInt(10) == 0) {
+                len += LineIndex.INTERVAL;
+            }
+            char[] chars = new char[len];
+            for (int k = 0; k < len; k += 1) {
+                chars[k] = (char) ('A' + rand.nextInt(26));
+            }
+            lines[i] = new String(chars);
+        }
+        return lines;
+    }
+
+    /** Check that every range of PLAIN tried, read from FILE through INDEX
+     *  with a decoder, matches, using RAND. */
+    private void checkRanges(String plain, Path file, Random rand)
+        throws IOException {
+        try (FileChannel in = FileChannel.open(file)) {
+            LineIndex index = LineIndex.open(file, in, 1, false);
+            assertEquals(plain.length(), index.chars());
+            RangeDecoder decoder =
+                new RangeDecoder(machine(), in, index, ASCII);
+            for (int t = 0; t < 200; t += 1) {
+                int off = rand.nextInt(plain.length());
+                int len = Math.min(plain.length() - off, rand.nextInt(300));
+                assertEquals(plain.substring(off, off + len),
+                             decoder.decode(off, len));
+            }
+            assertEquals(plain.substring(plain.length() - 1),
+                         decoder.decode(plain.length() - 1, 1));
+        }
+    }
+
+    @Test
+    public void testRanges() throws IOException {
+        Path file = Files.createTempFile("enigma", ".txt");
+        try {
+            Random rand = new Random(9);
+            String plain = encrypt(randomLines(rand), file);
+            checkRanges(plain, file, rand);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testSidecar() throws IOException {
+        Path file = Files.createTempFile("enigma", ".txt");
+        Path sidecar = LineIndex.sidecar(file);
+        try {
+            Random rand = new Random(10);
+            String plain = encrypt(randomLines(rand), file);
+            try (FileChannel in = FileChannel.open(file)) {
+                LineIndex built = LineIndex.open(file, in, 1, true);
+                assertTrue(Files.exists(sidecar));
+                assertTrue(built.size() > 1);
+                LineIndex loaded = LineIndex.open(file, in, 1, false);
+                assertEquals(built.size(), loaded.size());
+                assertEquals(built.chars(), loaded.chars());
+            }
+            checkRanges(plain, file, rand);
+            String shorter = encrypt(new String[] { "HELLOWORLD" }, file);
+            checkRanges(shorter, file, rand);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(sidecar);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testPastEnd() throws IOException {
+        Path file = Files.createTempFile("enigma", ".txt");
+        try {
+            String plain = encrypt(new String[] { "ABCDEFG", "" }, file);
+            try (FileChannel in = FileChannel.open(file)) {
+                LineIndex index = LineIndex.open(file, in, 1, false);
+                new RangeDecoder(machine(), in, index, ASCII)
+                    .decode(plain.length() - 2, 3);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testWidth() {
+        assertEquals(1, RangeDecoder.width(TestUtils.UPPER, ASCII));
+        assertEquals(2, RangeDecoder.width(new Alphabet("\u00c4\u00d6"),
+                                           StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,227 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static enigma.EnigmaException.*;
+
+/** A Tracer that records each conversion into a preallocated ring of
+ *  fixed-width integer records, which a background thread drains to an
+ *  output stream.  The producing Machine never formats or allocates; it
+ *  only waits if the writer falls a whole ring behind.
+ *
+ *  A record holds the settings of rotors 1 .. numRotors-1, the input
+ *  index, the output of each of the 2 * numRotors stages (the plugboard
+ *  and every rotor pass) and the final output index.  In text form a
+ *  record is written the way --verbose has always printed it:
+ *  "[AXLE] F -> Y -> ... -> Z".  In binary form the stream starts with
+ *  the four bytes "ETRC" and the ints 1 (format version), the alphabet
+ *  size and the record width, followed by the records as big-endian
+ *  unsigned 16-bit values.
+ *  @author Rayan Taghizadeh
+ */
+class RingTracer implements Tracer {
+
+    /** Default number of records in the ring. */
+    static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /** A tracer for machines with NUMROTORS rotors over ALPHABET that
+     *  writes to OUT as text, or in binary if BINARY, buffering up to
+     *  CAPACITY records. */
+    RingTracer(Alphabet alphabet, int numRotors, OutputStream out,
+               boolean binary, int capacity) {
+        _alphabet = alphabet;
+        _numRotors = numRotors;
+        _width = 3 * numRotors + 1;
+        _capacity = capacity;
+        _ring = new int[capacity * _width];
+        _binary = binary;
+        _out = out;
+        _writer = new Thread(this::drain, "enigma-trace");
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+    @Override
+    public void start(Machine machine, int c) {
+        while (_head.get() - _tail.get() >= _capacity) {
+            LockSupport.unpark(_writer);
+            Thread.onSpinWait();
+        }
+        _pos = (int) (_head.get() % _capacity) * _width;
+        for (int r = 1; r < _numRotors; r += 1) {
+            _ring[_pos++] = machine.setting(r);
+        }
+        _ring[_pos++] = c;
+    }
+
+    @Override
+    public void step(int c) {
+        _ring[_pos++] = c;
+    }
+
+    @Override
+    public void finish(int c) {
+        _ring[_pos] = c;
+        _head.lazySet(_head.get() + 1);
+    }
+
+    @Override
+    public void close() {
+        _closed = true;
+        LockSupport.unpark(_writer);
+        try {
+            _writer.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        if (_failure != null) {
+            throw error("could not write trace: %s", _failure.getMessage());
+        }
+    }
+
+    /** Body of the writer thread: copy published records to _out until
+     *  closed and empty. */
+    private void drain() {
+        try {
+            Sink sink = _binary ? new BinarySink() : new TextSink();
+            while (true) {
+                boolean closed = _closed;
+                long head = _head.get();
+                long tail = _tail.get();
+                if (tail == head) {
+                    if (closed) {
+                        break;
+                    }
+                    sink.flush();
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                for (; tail < head; tail += 1) {
+                    sink.write((int) (tail % _capacity) * _width);
+                }
+                _tail.lazySet(tail);
+            }
+            sink.flush();
+        } catch (IOException excp) {
+            _failure = excp;
+            _tail.set(Long.MAX_VALUE / 2);
+        }
+    }
+
+    /** Destination for drained records. */
+    private interface Sink {
+        /** Write the record starting at _ring[START]. */
+        void write(int start) throws IOException;
+
+        /** Push buffered output to _out. */
+        void flush() throws IOException;
+    }
+
+    /** Writes records in the --verbose text format. */
+    private class TextSink implements Sink {
+        @Override
+        public void write(int start) throws IOException {
+            int k = start;
+            _text.write('[');
+            for (int r = 1; r < _numRotors; r += 1) {
+                _text.write(_alphabet.toChar(_ring[k++]));
+            }
+            _text.write("] ");
+            _text.write(_alphabet.toChar(_ring[k++]));
+            for (int end = start + _width; k < end; k += 1) {
+                _text.write(" -> ");
+                _text.write(_alphabet.toChar(_ring[k]));
+            }
+            _text.write(LINE_SEPARATOR);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _text.flush();
+        }
+
+        /** Buffered text output. */
+        private final Writer _text =
+            new OutputStreamWriter(new BufferedOutputStream(_out));
+    }
+
+    /** Writes records in the compact binary format. */
+    private class BinarySink implements Sink {
+        /** Write the stream header. */
+        BinarySink() throws IOException {
+            _data.writeBytes("ETRC");
+            _data.writeInt(1);
+            _data.writeInt(_alphabet.size());
+            _data.writeInt(_width);
+        }
+
+        @Override
+        public void write(int start) throws IOException {
+            for (int k = start; k < start + _width; k += 1) {
+                _data.writeShort(_ring[k]);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _data.flush();
+        }
+
+        /** Buffered binary output. */
+        private final DataOutputStream _data =
+            new DataOutputStream(new BufferedOutputStream(_out));
+    }
+
+    /** How long the writer sleeps when it finds the ring empty. */
+    private static final long IDLE_NANOS = 200_000;
+
+    /** Line terminator for text records. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** Alphabet for text output. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor slots in the traced machine. */
+    private final int _numRotors;
+
+    /** Number of ints per record. */
+    private final int _width;
+
+    /** Number of records in the ring. */
+    private final int _capacity;
+
+    /** The records. */
+    private final int[] _ring;
+
+    /** True for binary output. */
+    private final boolean _binary;
+
+    /** Destination of the trace. */
+    private final OutputStream _out;
+
+    /** Background thread writing records to _out. */
+    private final Thread _writer;
+
+    /** Number of records published by the producer. */
+    private final AtomicLong _head = new AtomicLong();
+
+    /** Number of records written out by the writer thread. */
+    private final AtomicLong _tail = new AtomicLong();
+
+    /** Next index in _ring to fill in the record being produced. */
+    private int _pos;
+
+    /** Set when no more records will be produced. */
+    private volatile boolean _closed;
+
+    /** Error encountered by the writer thread, if any. */
+    private volatile IOException _failure;
+}
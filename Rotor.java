@@ -2,15 +2,50 @@ package enigma;
 
 import static enigma.EnigmaException.*;
 
-/** Superclass that represents a rotor in the enigma machine.
+/** Superclass that represents a rotor in the enigma machine.  A rotor's
+ *  wiring and notches never change.  It also has a setting of its own,
+ *  used by the methods that take none, for working with a single rotor;
+ *  a Machine keeps the settings of its rotors itself and never uses or
+ *  changes this one, so one Rotor may serve in any number of machines.
+ *
+ *  A rotor at setting S maps P to perm(P + S) - S, modulo the alphabet
+ *  size.  For alphabets of up to MAX_TABLE_SIZE characters, these
+ *  conjugated permutations are tabulated for every setting, so a pass
+ *  through the rotor is one array load.  Larger alphabets would need too
+ *  much memory for that, and use tables of the permutation repeated
+ *  twice over instead, which need no remainder operation either.
  *  @author Rayan Taghizadeh
  */
 class Rotor {
 
+    /** Largest alphabet size for which conversions are tabulated for
+     *  every setting, in two tables of 4 * size * size bytes (1 MB each
+     *  at this size). */
+    static final int MAX_TABLE_SIZE = 512;
+
     /** A rotor named NAME whose permutation is given by PERM. */
     Rotor(String name, Permutation perm) {
         _name = name;
         _permutation = perm;
+        _size = perm.size();
+        if (_size <= MAX_TABLE_SIZE) {
+            _forward = new int[_size * _size];
+            _backward = new int[_size * _size];
+            for (int s = 0; s < _size; s += 1) {
+                for (int p = 0; p < _size; p += 1) {
+                    int k = perm.wrap(p + s);
+                    _forward[s * _size + p] = perm.wrap(perm.permute(k) - s);
+                    _backward[s * _size + p] = perm.wrap(perm.invert(k) - s);
+                }
+            }
+        } else {
+            _forward = new int[2 * _size];
+            _backward = new int[2 * _size];
+            for (int k = 0; k < 2 * _size; k += 1) {
+                _forward[k] = perm.permute(k % _size);
+                _backward[k] = perm.invert(k % _size);
+            }
+        }
     }
 
     /** Return my name. */
@@ -61,25 +96,50 @@ class Rotor {
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int result = _permutation.wrap(p + _setting);
-        result = permutation().permute(result);
-        result = permutation().wrap(result - _setting);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
-        }
-        return result;
+        return convertForward(p, _setting);
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int result = _permutation.wrap(e + _setting);
-        result = permutation().invert(result);
-        result = permutation().wrap(result - _setting);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
+        return convertBackward(e, _setting);
+    }
+
+    /** Return the conversion of P according to my permutation when I am
+     *  at setting SETTING, regardless of my current setting. */
+    int convertForward(int p, int setting) {
+        return convert(_forward, p, setting);
+    }
+
+    /** Return the conversion of E according to the inverse of my
+     *  permutation when I am at setting SETTING, regardless of my current
+     *  setting. */
+    int convertBackward(int e, int setting) {
+        return convert(_backward, e, setting);
+    }
+
+    /** Return my conversions at every setting by my permutation: element
+     *  S * size() + P is the conversion of P at setting S.  Return null
+     *  if my alphabet has more than MAX_TABLE_SIZE characters.  The table
+     *  is shared and must not be modified. */
+    int[] forwardTable() {
+        return _size <= MAX_TABLE_SIZE ? _forward : null;
+    }
+
+    /** Return my conversions at every setting by the inverse of my
+     *  permutation, laid out as for forwardTable(), or null. */
+    int[] backwardTable() {
+        return _size <= MAX_TABLE_SIZE ? _backward : null;
+    }
+
+    /** Return the image of P at setting SETTING under the permutation
+     *  tabulated in TABLE, which is _forward or _backward. */
+    private int convert(int[] table, int p, int setting) {
+        if (_size <= MAX_TABLE_SIZE) {
+            return table[setting * _size + p];
         }
-        return result;
+        int result = table[p + setting] - setting;
+        return result + (result >> 31 & _size);
     }
 
     /** Returns the positions of the notches, as a string giving the letters
@@ -91,6 +151,12 @@ class Rotor {
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
+        return atNotch(_setting);
+    }
+
+    /** Returns true iff at setting SETTING I allow the rotor to my left
+     *  to advance. */
+    boolean atNotch(int setting) {
         return false;
     }
 
@@ -107,9 +173,19 @@ class Rotor {
     private final String _name;
 
     /** The permutation implemented by this rotor in its 0 position. */
-    private Permutation _permutation;
+    private final Permutation _permutation;
+
+    /** Size of my alphabet. */
+    private final int _size;
+
+    /** Conversions by my permutation and its inverse.  Where _size is at
+     *  most MAX_TABLE_SIZE, _forward[S * _size + P] is the conversion of
+     *  P at setting S; otherwise _forward[K] is the image of K modulo
+     *  _size under my permutation, for 0 <= K < 2 * _size.  Likewise
+     *  _backward for the inverse. */
+    private final int[] _forward, _backward;
 
-    /** setting. */
+    /** Setting used by the methods that take none. */
     private int _setting;
 
 }
@@ -0,0 +1,115 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** The plugboard-free scramblers of one rotor order, for attacks that
+ *  evaluate them at a great many rotor settings.  The scrambler at some
+ *  settings is the fast rotor's wiring at its setting on either side of
+ *  the permutation formed by all the other rotors.  That permutation,
+ *  the upper table, changes only when a slower rotor moves, so a few
+ *  hundred recent ones are kept, and a conversion costs three lookups.
+ *
+ *  A Scrambler is not thread-safe; each worker should have its own.
+ *  @author Rayan Taghizadeh
+ */
+class Scrambler {
+
+    /** Number of upper tables kept. */
+    static final int TABLES = 256;
+
+    /** A Scrambler for the rotors now in the slots of MACHINE. */
+    Scrambler(Machine machine) {
+        _slots = machine.numRotors();
+        _size = machine.alphabet().size();
+        _rotors = new Rotor[_slots];
+        for (int i = 0; i < _slots; i += 1) {
+            _rotors[i] = machine.getRotor(i);
+        }
+        _stepper = new Stepper(Arrays.asList(_rotors), _size);
+        Rotor fast = _rotors[_slots - 1];
+        _forward = new int[_size][_size];
+        _backward = new int[_size][_size];
+        for (int f = 0; f < _size; f += 1) {
+            for (int c = 0; c < _size; c += 1) {
+                _forward[f][c] = fast.convertForward(c, f);
+                _backward[f][c] = fast.convertBackward(c, f);
+            }
+        }
+        _keys = new long[TABLES];
+        Arrays.fill(_keys, -1);
+        _used = new long[TABLES];
+        Arrays.fill(_used, -1);
+        _tables = new int[TABLES][_size];
+    }
+
+    /** Return the stepping rules of my rotors. */
+    Stepper stepper() {
+        return _stepper;
+    }
+
+    /** Return the conversion of C at settings whose fast rotor is at FAST
+     *  and whose upper table is UPPER. */
+    int convert(int c, int fast, int[] upper) {
+        return _backward[fast][upper[_forward[fast][c]]];
+    }
+
+    /** Return the conversion of C at the settings STATE, indexed by
+     *  slot. */
+    int convert(int c, int[] state) {
+        return convert(c, state[_slots - 1], upper(state, -1));
+    }
+
+    /** Return the upper table at the settings STATE, indexed by slot.
+     *  Tables returned with the same nonnegative STAMP remain valid
+     *  until a call with a different stamp; others may be overwritten
+     *  by the next call. */
+    int[] upper(int[] state, long stamp) {
+        long key = 0;
+        for (int i = 1; i < _slots - 1; i += 1) {
+            key = key * _size + state[i];
+        }
+        int slot = (int) (key % TABLES);
+        int[] table = _tables[slot];
+        if (_keys[slot] != key) {
+            if (stamp >= 0 && _used[slot] == stamp) {
+                table = new int[_size];
+            } else {
+                _keys[slot] = key;
+            }
+            for (int c = 0; c < _size; c += 1) {
+                int x = c;
+                for (int i = _slots - 2; i >= 0; i -= 1) {
+                    x = _rotors[i].convertForward(x, state[i]);
+                }
+                for (int i = 1; i < _slots - 1; i += 1) {
+                    x = _rotors[i].convertBackward(x, state[i]);
+                }
+                table[c] = x;
+            }
+        }
+        _used[slot] = stamp;
+        return table;
+    }
+
+    /** Number of rotor slots and alphabet size. */
+    private final int _slots, _size;
+
+    /** Rotor in each slot. */
+    private final Rotor[] _rotors;
+
+    /** Stepping rules of _rotors. */
+    private final Stepper _stepper;
+
+    /** _forward[f][c] and _backward[f][c] are the conversions of C by the
+     *  fast rotor at setting F. */
+    private final int[][] _forward, _backward;
+
+    /** Keys of the upper tables in _tables, or -1. */
+    private final long[] _keys;
+
+    /** Stamp of the last use of each table, or -1. */
+    private final long[] _used;
+
+    /** Upper tables. */
+    private final int[][] _tables;
+}
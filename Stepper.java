@@ -0,0 +1,383 @@
+package enigma;
+
+import java.util.List;
+
+/** The stepping rules of a machine's rotor slots, applied to arrays of
+ *  rotor settings indexed by slot (slot 0 being the reflector).  Besides
+ *  single steps, a Stepper can jump a state ahead by any number of steps.
+ *
+ *  For the usual arrangement, in which the moving rotors occupy the
+ *  rightmost slots and no rotor that drives a neighbour has two adjacent
+ *  notches, jumps are computed arithmetically in time independent of the
+ *  distance.  The fast rotor's position is a simple sum.  Every other
+ *  moving rotor advances once per trigger from its right-hand neighbour;
+ *  a middle rotor that lands on a notch then steps off it on the very next
+ *  keystroke (the double step), so a count of triggers moves it a known
+ *  number of non-notch positions, and the notches it passes are the
+ *  triggers it sends to its left.  Only the last keystroke or two need
+ *  care, because a rotor may be caught sitting on a notch.  Any other
+ *  arrangement is stepped one keystroke at a time.
+ *
+ *  Each slot's notches are compiled into a bitmask over its positions,
+ *  and a keystroke gathers one bit per slot into a word of the slots
+ *  sitting at notches, from which the slots to advance follow by a few
+ *  shifts and masks.  Where everything fits, a whole state can also be
+ *  packed into a single odometer word (see pack), the last slot in the
+ *  low bits, which also caches which of the other slots sit at notches.
+ *  Only the last slot moves unless one of them is, so most keystrokes
+ *  take one notch lookup and an increment.
+ *  @author Rayan Taghizadeh
+ */
+class Stepper {
+
+    /** Jumps shorter than this are simply stepped. */
+    private static final int MIN_JUMP = 64;
+
+    /** A Stepper for the rotors in SLOTS, all over an alphabet of SIZE
+     *  characters. */
+    Stepper(List<Rotor> slots, int size) {
+        _n = slots.size();
+        _size = size;
+        _rotates = new boolean[_n];
+        _wordsLog = 32 - Integer.numberOfLeadingZeros((size - 1) >>> 6);
+        _notchBits = new long[_n << _wordsLog];
+        _notches = new int[_n][size + 1];
+        _rank = new int[_n][size];
+        _stable = new int[_n][size];
+        for (int i = 0; i < _n; i += 1) {
+            Rotor rotor = slots.get(i);
+            _rotates[i] = rotor.rotates();
+            int k = 0;
+            for (int p = 0; p < size; p += 1) {
+                _notches[i][p + 1] = _notches[i][p];
+                if (_rotates[i] && rotor.atNotch(p)) {
+                    _notchBits[(i << _wordsLog) + (p >>> 6)] |= 1L << p;
+                    _notches[i][p + 1] += 1;
+                    _rank[i][p] = -1;
+                } else {
+                    _rank[i][p] = k;
+                    _stable[i][k++] = p;
+                }
+            }
+        }
+        int first = _n;
+        while (first > 1 && _rotates[first - 1]) {
+            first -= 1;
+        }
+        boolean arithmetic = true;
+        for (int i = 0; i < first; i += 1) {
+            arithmetic &= !_rotates[i];
+        }
+        for (int i = first + 1; i < _n; i += 1) {
+            for (int p = 0; p < size; p += 1) {
+                arithmetic &= !(notch(i, p) && notch(i, (p + 1) % size));
+            }
+        }
+        _first = first;
+        _arithmetic = arithmetic;
+
+        int moving = 0;
+        long pawls = 0, driven = 0, last = 0;
+        for (int i = 1; i < _n; i += 1) {
+            if (_rotates[i]) {
+                moving += 1;
+                if (i == _n - 1) {
+                    last = 1L << i;
+                } else {
+                    pawls |= 1L << i;
+                }
+                if (_rotates[i - 1]) {
+                    driven |= 1L << i;
+                }
+            }
+        }
+        _moving = new int[moving];
+        for (int i = 1, k = 0; i < _n; i += 1) {
+            if (_rotates[i]) {
+                _moving[k++] = i;
+            }
+        }
+        _pawls = pawls;
+        _driven = driven;
+        _last = last;
+        _bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, size - 1));
+        _flagShift = (_n - 1) * _bits;
+        _packable = _n >= 2 && _n <= Long.SIZE
+            && (long) _flagShift + _n - 2 < Long.SIZE;
+    }
+
+    /** Return the number of slots I step. */
+    int numSlots() {
+        return _n;
+    }
+
+    /** Return true iff jumps are computed without stepping. */
+    boolean arithmetic() {
+        return _arithmetic;
+    }
+
+    /** Return true iff states can be packed into odometer words. */
+    boolean packable() {
+        return _packable;
+    }
+
+    /** Advance the settings in STATE by one keystroke.  A moving rotor
+     *  other than the last advances when its right-hand neighbour is at
+     *  a notch, or when it is itself at a notch and its left-hand
+     *  neighbour moves (the double step); the last moves every time. */
+    void step(int[] state) {
+        if (_n > Long.SIZE) {
+            stepSlowly(state);
+            return;
+        }
+        long notched = 0;
+        for (int i : _moving) {
+            notched |= notchBit(i, state[i]) << i;
+        }
+        if (notched == 0) {
+            if (_last != 0) {
+                state[_n - 1] = advance(state[_n - 1]);
+            }
+            return;
+        }
+        for (long moves = advancing(notched); moves != 0;
+             moves &= moves - 1) {
+            int i = Long.numberOfTrailingZeros(moves);
+            state[i] = advance(state[i]);
+        }
+    }
+
+    /** Return the odometer word holding the settings in STATE of all
+     *  slots but the first, which never moves.  Requires packable(). */
+    long pack(int[] state) {
+        long word = 0;
+        for (int i = 1; i < _n; i += 1) {
+            word |= (long) state[i] << shift(i);
+        }
+        return withFlags(word);
+    }
+
+    /** Store the settings in the odometer WORD into slots 1 and up of
+     *  STATE. */
+    void unpack(long word, int[] state) {
+        long mask = (1L << _bits) - 1;
+        for (int i = 1; i < _n; i += 1) {
+            state[i] = (int) (word >>> shift(i) & mask);
+        }
+    }
+
+    /** Return the odometer word WORD advanced by one keystroke. */
+    long step(long word) {
+        int p = (int) word & ((1 << _bits) - 1);
+        if (word >>> _flagShift != 0 || _last == 0
+            || notchBit(_n - 1, p) != 0) {
+            return stepAtNotch(word);
+        }
+        return p + 1 == _size ? word - p : word + 1;
+    }
+
+    /** Return the odometer word WORD advanced by one keystroke, when some
+     *  slot may be at a notch. */
+    private long stepAtNotch(long word) {
+        long mask = (1L << _bits) - 1;
+        long notched = 0;
+        for (int i : _moving) {
+            notched |= notchBit(i, (int) (word >>> shift(i) & mask)) << i;
+        }
+        word &= (1L << _flagShift) - 1;
+        for (long moves = advancing(notched); moves != 0;
+             moves &= moves - 1) {
+            int shift = shift(Long.numberOfTrailingZeros(moves));
+            long p = (word >>> shift & mask) + 1;
+            word += p == _size ? -(p - 1) << shift : 1L << shift;
+        }
+        return withFlags(word);
+    }
+
+    /** Return the odometer word WORD, whose flags are clear, with the
+     *  flags of the slots other than the last that sit at notches
+     *  set. */
+    private long withFlags(long word) {
+        long mask = (1L << _bits) - 1;
+        for (int i : _moving) {
+            if (i < _n - 1) {
+                long bit = notchBit(i, (int) (word >>> shift(i) & mask));
+                word |= bit << (_flagShift + i - 1);
+            }
+        }
+        return word;
+    }
+
+    /** Return the odometer word WORD advanced by STEPS keystrokes. */
+    private long step(long word, long steps) {
+        for (long k = 0; k < steps; k += 1) {
+            word = step(word);
+        }
+        return word;
+    }
+
+    /** Return the set of slots that advance on a keystroke, as bits,
+     *  when the slots sitting at notches are NOTCHED. */
+    private long advancing(long notched) {
+        return _pawls & (notched >>> 1 | notched & _driven) | _last;
+    }
+
+    /** Advance the settings in STATE by one keystroke, one slot at a
+     *  time, for machines with too many slots for step's bit sets. */
+    private void stepSlowly(int[] state) {
+        for (int i = 1; i < _n - 1; i += 1) {
+            if (_rotates[i] && (notch(i + 1, state[i + 1])
+                                || _rotates[i - 1] && notch(i, state[i]))) {
+                state[i] = advance(state[i]);
+            }
+        }
+        if (_rotates[_n - 1]) {
+            state[_n - 1] = advance(state[_n - 1]);
+        }
+    }
+
+    /** Return 1 if slot I at position P is at a notch, and otherwise
+     *  0. */
+    private long notchBit(int i, int p) {
+        return _notchBits[(i << _wordsLog) + (p >>> 6)] >>> p & 1;
+    }
+
+    /** Return true iff slot I at position P is at a notch. */
+    private boolean notch(int i, int p) {
+        return notchBit(i, p) != 0;
+    }
+
+    /** Return the position of the setting of slot I in odometer
+     *  words. */
+    private int shift(int i) {
+        return (_n - 1 - i) * _bits;
+    }
+
+    /** Advance the settings in STATE as STEPS keystrokes would. */
+    void jump(int[] state, long steps) {
+        if (!_arithmetic || steps < MIN_JUMP) {
+            if (_packable) {
+                unpack(step(pack(state), steps), state);
+            } else {
+                for (long k = 0; k < steps; k += 1) {
+                    step(state);
+                }
+            }
+            return;
+        }
+        int last = _n - 1;
+        if (_first > last) {
+            return;
+        }
+        int depth = last - _first;
+        long[] emitted = new long[depth + 1];
+        for (int a = 0; a <= depth; a += 1) {
+            emitted[a] = count(last, state[last], steps - a);
+        }
+        int[] result = state.clone();
+        result[last] = (int) ((state[last] + steps) % _size);
+        for (int j = last - 1; j > _first; j -= 1) {
+            int p = state[j];
+            boolean startNotch = notch(j, p);
+            boolean absorbed = startNotch && notch(j + 1, state[j + 1]);
+            int start = startNotch ? advance(p) : p;
+            int stableCount = _size - _notches[j][_size];
+            for (int a = 0; a < j - _first; a += 1) {
+                long moves = emitted[a] - (absorbed ? 1 : 0);
+                boolean lastTriggered = emitted[a] - emitted[a + 1] == 1
+                    && !(steps - a == 1 && startNotch);
+                long r = _rank[j][start] + moves;
+                int end = _stable[j][(int) (r % stableCount)];
+                long distance = (r / stableCount) * _size + end - start;
+                int before = end == 0 ? _size - 1 : end - 1;
+                boolean pending = lastTriggered && notch(j, before);
+                if (a == 0) {
+                    result[j] = pending ? before : end;
+                }
+                emitted[a] = (startNotch ? 1 : 0) + distance - moves
+                    - (pending ? 1 : 0);
+            }
+        }
+        if (_first < last) {
+            result[_first] = (int) ((state[_first] + emitted[0]) % _size);
+        }
+        System.arraycopy(result, 0, state, 0, _n);
+    }
+
+    /** Return the number of times slot J, starting at position P and
+     *  advancing every keystroke, is at a notch during LEN keystrokes. */
+    private long count(int j, int p, long len) {
+        long full = len / _size;
+        int rem = (int) (len % _size);
+        long c = full * _notches[j][_size];
+        if (p + rem <= _size) {
+            c += _notches[j][p + rem] - _notches[j][p];
+        } else {
+            c += _notches[j][_size] - _notches[j][p]
+                + _notches[j][p + rem - _size];
+        }
+        return c;
+    }
+
+    /** Return the position after P. */
+    private int advance(int p) {
+        return p + 1 == _size ? 0 : p + 1;
+    }
+
+    /** Number of slots. */
+    private final int _n;
+
+    /** Alphabet size. */
+    private final int _size;
+
+    /** True for the slots whose rotors move. */
+    private final boolean[] _rotates;
+
+    /** Bit p of the words starting at _notchBits[i << _wordsLog] is set
+     *  iff slot i at position p is at a notch. */
+    private final long[] _notchBits;
+
+    /** Base-2 logarithm of the number of words per slot in
+     *  _notchBits. */
+    private final int _wordsLog;
+
+    /** _notches[i][p] is the number of notches of slot i below p. */
+    private final int[][] _notches;
+
+    /** _rank[i][p] is the index of p among the non-notch positions of
+     *  slot i, or -1 if p is a notch. */
+    private final int[][] _rank;
+
+    /** _stable[i][k] is the non-notch position of slot i of index k. */
+    private final int[][] _stable;
+
+    /** Leftmost slot of the block of moving rotors ending in the last
+     *  slot, or the number of slots if the last slot does not move. */
+    private final int _first;
+
+    /** True iff jumps can be computed arithmetically. */
+    private final boolean _arithmetic;
+
+    /** The slots whose rotors move, in order. */
+    private final int[] _moving;
+
+    /** Bit i is set for each moving slot i with a pawl, that is, every
+     *  one but the last slot. */
+    private final long _pawls;
+
+    /** Bit i is set for each slot i whose left-hand neighbour moves. */
+    private final long _driven;
+
+    /** Bit i is set for the last slot i if its rotor moves. */
+    private final long _last;
+
+    /** Number of bits per setting in odometer words. */
+    private final int _bits;
+
+    /** Position in odometer words of the flag of slot 1; the flag of
+     *  slot I is I - 1 bits above it. */
+    private final int _flagShift;
+
+    /** True iff states can be packed into odometer words. */
+    private final boolean _packable;
+}
@@ -0,0 +1,176 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Stepper class.
+ *  @author Rayan Taghizadeh
+ */
+public class StepperTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Return random rotor slots for a machine with NUMROTORS slots and
+     *  PAWLS moving rotors over ALPHA, using RAND.  Notches are chosen
+     *  at random, and are kept apart unless ADJACENT. */
+    private ArrayList<Rotor> slots(Alphabet alpha, int numRotors, int pawls,
+                                   Random rand, boolean adjacent) {
+        ArrayList<Rotor> result = new ArrayList<>();
+        Permutation id = new Permutation("", alpha);
+        result.add(new Reflector("R", id));
+        for (int i = 1; i < numRotors; i += 1) {
+            if (i < numRotors - pawls) {
+                result.add(new FixedRotor("F" + i, id));
+                continue;
+            }
+            StringBuilder notches = new StringBuilder();
+            int count = rand.nextInt(4);
+            for (int k = 0; k < count; k += 1) {
+                char c = alpha.toChar(rand.nextInt(alpha.size()));
+                if (notches.indexOf(String.valueOf(c)) >= 0) {
+                    continue;
+                }
+                int p = alpha.toInt(c);
+                char prev = alpha.toChar((p + alpha.size() - 1)
+                                         % alpha.size());
+                char next = alpha.toChar((p + 1) % alpha.size());
+                if (adjacent || notches.indexOf(String.valueOf(prev)) < 0
+                    && notches.indexOf(String.valueOf(next)) < 0) {
+                    notches.append(c);
+                }
+            }
+            result.add(new MovingRotor("M" + i, id, notches.toString()));
+        }
+        return result;
+    }
+
+    /** Check that jumps from random states agree with stepping, for
+     *  random rotor arrangements drawn with ADJACENT notches allowed or
+     *  not. */
+    private void checkJumps(boolean adjacent) {
+        Random rand = new Random(61);
+        for (int trial = 0; trial < 300; trial += 1) {
+            Alphabet alpha = new Alphabet(UPPER_STRING.substring(
+                    0, 3 + rand.nextInt(24)));
+            int numRotors = 2 + rand.nextInt(5);
+            int pawls = 1 + rand.nextInt(numRotors - 1);
+            Stepper stepper = new Stepper(slots(alpha, numRotors, pawls,
+                                                rand, adjacent),
+                                          alpha.size());
+            assertTrue(adjacent || stepper.arithmetic());
+            int[] stepped = new int[numRotors];
+            for (int i = 1; i < numRotors; i += 1) {
+                stepped[i] = rand.nextInt(alpha.size());
+            }
+            int[] start = stepped.clone();
+            long total = 0;
+            for (int k = 0; k < 6; k += 1) {
+                int steps = rand.nextInt(5000);
+                for (int s = 0; s < steps; s += 1) {
+                    stepper.step(stepped);
+                }
+                total += steps;
+                int[] jumped = start.clone();
+                stepper.jump(jumped, total);
+                assertArrayEquals(msg("trial " + trial, "%s + %d",
+                                      Arrays.toString(start), total),
+                                  stepped, jumped);
+            }
+        }
+    }
+
+    /** Advance STATE of the rotors in SLOTS by one keystroke, asking the
+     *  rotors themselves where their notches are. */
+    private static void referenceStep(ArrayList<Rotor> slots, int[] state) {
+        int n = slots.size();
+        boolean[] advances = new boolean[n];
+        for (int i = 1; i < n - 1; i += 1) {
+            Rotor left = slots.get(i - 1), rotor = slots.get(i),
+                right = slots.get(i + 1);
+            advances[i] = rotor.rotates()
+                && (right.rotates() && right.atNotch(state[i + 1])
+                    || left.rotates() && rotor.atNotch(state[i]));
+        }
+        advances[n - 1] = slots.get(n - 1).rotates();
+        for (int i = 1; i < n; i += 1) {
+            if (advances[i]) {
+                state[i] = (state[i] + 1) % slots.get(i).size();
+            }
+        }
+    }
+
+    @Test
+    public void testStepMatchesRotors() {
+        Random rand = new Random(21);
+        for (int trial = 0; trial < 300; trial += 1) {
+            Alphabet alpha = new Alphabet(UPPER_STRING.substring(
+                    0, 2 + rand.nextInt(25)));
+            int numRotors = trial == 0 ? 70 : 2 + rand.nextInt(6);
+            int pawls = 1 + rand.nextInt(numRotors - 1);
+            ArrayList<Rotor> slots = slots(alpha, numRotors, pawls, rand,
+                                           rand.nextBoolean());
+            Stepper stepper = new Stepper(slots, alpha.size());
+            assertEquals(numRotors <= 64, stepper.packable());
+            int[] expected = new int[numRotors];
+            for (int i = 1; i < numRotors; i += 1) {
+                expected[i] = rand.nextInt(alpha.size());
+            }
+            int[] stepped = expected.clone();
+            long word = stepper.packable() ? stepper.pack(stepped) : 0;
+            int[] unpacked = new int[numRotors];
+            for (int k = 0; k < 2000; k += 1) {
+                referenceStep(slots, expected);
+                stepper.step(stepped);
+                String msg = msg("trial " + trial, "step %d", k);
+                assertArrayEquals(msg, expected, stepped);
+                if (stepper.packable()) {
+                    word = stepper.step(word);
+                    stepper.unpack(word, unpacked);
+                    assertArrayEquals(msg, expected, unpacked);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testJumpMatchesSteps() {
+        checkJumps(false);
+    }
+
+    @Test
+    public void testJumpWithAdjacentNotches() {
+        checkJumps(true);
+    }
+
+    @Test
+    public void testLongJump() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        Permutation id = new Permutation("", UPPER);
+        rotors.add(new Reflector("B", id));
+        rotors.add(new FixedRotor("Beta", id));
+        rotors.add(new MovingRotor("III", id, "V"));
+        rotors.add(new MovingRotor("IV", id, "J"));
+        rotors.add(new MovingRotor("I", id, "Q"));
+        Stepper stepper = new Stepper(rotors, 26);
+        int[] state = { 0, 0, 20, 8, 15 };
+        stepper.jump(state, 9_000_000_000L);
+        int[] split = { 0, 0, 20, 8, 15 };
+        for (int k = 0; k < 9; k += 1) {
+            stepper.jump(split, 999_999_999L);
+        }
+        for (int k = 0; k < 9; k += 1) {
+            stepper.step(split);
+        }
+        assertArrayEquals(split, state);
+    }
+}
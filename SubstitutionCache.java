@@ -0,0 +1,229 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** A bounded, least-recently-used cache of compiled substitutions.  Each
+ *  entry maps a key (normally a packed tuple of rotor positions) to a
+ *  table giving the complete substitution the machine performs in that
+ *  state.  Entries live in preallocated parallel arrays, so lookups,
+ *  insertions and evictions do not allocate once the cache is full.
+ *  @author Rayan Taghizadeh
+ */
+class SubstitutionCache {
+
+    /** Approximate bookkeeping cost of one entry beyond its table. */
+    private static final int ENTRY_OVERHEAD = 48;
+
+    /** A cache of substitutions over an alphabet of WIDTH characters
+     *  using about MAXBYTES bytes for its tables and bookkeeping.  At
+     *  least one entry is always retained. */
+    SubstitutionCache(int width, long maxBytes) {
+        if (width <= 0 || maxBytes < 0) {
+            throw error("invalid substitution cache size");
+        }
+        long perEntry = 4L * width + ENTRY_OVERHEAD;
+        _capacity = (int) Math.max(1, Math.min(1 << 30,
+                                               maxBytes / perEntry));
+        _width = width;
+        int buckets = Integer.highestOneBit(Math.max(1, _capacity - 1)) << 1;
+        _heads = new int[buckets];
+        _mask = buckets - 1;
+        _keys = new long[_capacity];
+        _tables = new int[_capacity][];
+        _chain = new int[_capacity];
+        _older = new int[_capacity];
+        _newer = new int[_capacity];
+        clear();
+    }
+
+    /** Return the number of characters in each table. */
+    int width() {
+        return _width;
+    }
+
+    /** Return the maximum number of entries I hold. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Return the number of entries I currently hold. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of lookups that found an entry. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that found no entry. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Return the number of entries evicted to make room for others. */
+    long evictions() {
+        return _evictions;
+    }
+
+    /** Return the table cached under KEY, marking it most recently used,
+     *  or null if there is none.  The table must not be modified. */
+    int[] get(long key) {
+        for (int e = _heads[bucket(key)]; e >= 0; e = _chain[e]) {
+            if (_keys[e] == key) {
+                _hits += 1;
+                touch(e);
+                return _tables[e];
+            }
+        }
+        _misses += 1;
+        return null;
+    }
+
+    /** Return a table to be filled in and passed to put before any other
+     *  call on me.  The array is recycled from the slot that the put
+     *  will fill, if that slot held a table before. */
+    int[] allocate() {
+        int e = _size < _capacity ? _size : _oldest;
+        if (_tables[e] != null) {
+            return _tables[e];
+        }
+        return new int[_width];
+    }
+
+    /** Cache TABLE under KEY, which must not already be present, evicting
+     *  the least recently used entry if I am full. */
+    void put(long key, int[] table) {
+        if (table.length != _width) {
+            throw error("substitution table has wrong size");
+        }
+        int e;
+        if (_size < _capacity) {
+            e = _size;
+            _size += 1;
+        } else {
+            e = _oldest;
+            unlink(e);
+            unchain(e);
+            _evictions += 1;
+        }
+        _keys[e] = key;
+        _tables[e] = table;
+        int b = bucket(key);
+        _chain[e] = _heads[b];
+        _heads[b] = e;
+        link(e);
+    }
+
+    /** Remove all entries.  The counters are not reset. */
+    void clear() {
+        Arrays.fill(_heads, -1);
+        _size = 0;
+        _oldest = _newest = -1;
+    }
+
+    /** Reset the hit, miss and eviction counters. */
+    void resetCounters() {
+        _hits = _misses = _evictions = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d entries, %d hits, %d misses, "
+                             + "%d evictions", _size, _capacity,
+                             _hits, _misses, _evictions);
+    }
+
+    /** Return the bucket for KEY. */
+    private int bucket(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & _mask;
+    }
+
+    /** Make entry E the most recently used. */
+    private void touch(int e) {
+        if (e != _newest) {
+            unlink(e);
+            link(e);
+        }
+    }
+
+    /** Append entry E to the recency list as its newest element. */
+    private void link(int e) {
+        _older[e] = _newest;
+        _newer[e] = -1;
+        if (_newest >= 0) {
+            _newer[_newest] = e;
+        } else {
+            _oldest = e;
+        }
+        _newest = e;
+    }
+
+    /** Remove entry E from the recency list. */
+    private void unlink(int e) {
+        if (_older[e] >= 0) {
+            _newer[_older[e]] = _newer[e];
+        } else {
+            _oldest = _newer[e];
+        }
+        if (_newer[e] >= 0) {
+            _older[_newer[e]] = _older[e];
+        } else {
+            _newest = _older[e];
+        }
+    }
+
+    /** Remove entry E from its hash chain. */
+    private void unchain(int e) {
+        int b = bucket(_keys[e]);
+        if (_heads[b] == e) {
+            _heads[b] = _chain[e];
+            return;
+        }
+        for (int p = _heads[b]; p >= 0; p = _chain[p]) {
+            if (_chain[p] == e) {
+                _chain[p] = _chain[e];
+                return;
+            }
+        }
+    }
+
+    /** Number of characters per table. */
+    private final int _width;
+
+    /** Maximum number of entries. */
+    private final int _capacity;
+
+    /** First entry of each hash chain, or -1. */
+    private final int[] _heads;
+
+    /** Mask reducing hashes to indices of _heads. */
+    private final int _mask;
+
+    /** Key of each entry. */
+    private final long[] _keys;
+
+    /** Table of each entry. */
+    private final int[][] _tables;
+
+    /** Next entry in the same hash chain, or -1. */
+    private final int[] _chain;
+
+    /** Next less recently used entry, or -1. */
+    private final int[] _older;
+
+    /** Next more recently used entry, or -1. */
+    private final int[] _newer;
+
+    /** Number of entries in use. */
+    private int _size;
+
+    /** Least and most recently used entries, or -1 when empty. */
+    private int _oldest, _newest;
+
+    /** Usage counters. */
+    private long _hits, _misses, _evictions;
+}
@@ -0,0 +1,67 @@
+package enigma;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the SubstitutionCache class.
+ *  @author Rayan Taghizadeh
+ */
+public class SubstitutionCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return a cache holding exactly ENTRIES tables of width 4. */
+    private SubstitutionCache cache(int entries) {
+        return new SubstitutionCache(4, entries * (4 * 4 + 48));
+    }
+
+    /** Put a table filled with V under KEY in CACHE. */
+    private void put(SubstitutionCache cache, long key, int v) {
+        int[] table = cache.allocate();
+        Arrays.fill(table, v);
+        cache.put(key, table);
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        SubstitutionCache cache = cache(3);
+        assertEquals(3, cache.capacity());
+        assertNull(cache.get(7));
+        put(cache, 7, 1);
+        assertEquals(1, cache.get(7)[0]);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testLruEviction() {
+        SubstitutionCache cache = cache(2);
+        put(cache, 1, 1);
+        put(cache, 2, 2);
+        cache.get(1);
+        put(cache, 3, 3);
+        assertEquals(1, cache.evictions());
+        assertNull(cache.get(2));
+        assertEquals(1, cache.get(1)[0]);
+        assertEquals(3, cache.get(3)[0]);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testClear() {
+        SubstitutionCache cache = cache(2);
+        put(cache, 1, 1);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1));
+        put(cache, 1, 5);
+        assertEquals(5, cache.get(1)[0]);
+    }
+}
@@ -0,0 +1,548 @@
+package enigma;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import static enigma.EnigmaException.*;
+
+/** An exhaustive search of the keys of a machine configuration: every
+ *  rotor order, reflector included, at every starting position, with an
+ *  empty plugboard.  Each key decrypts the whole message, and the
+ *  settings lines of the keys whose decryptions pass a test are
+ *  reported.
+ *
+ *  Keys are numbered by rotor order, as listed by KeySpace.rotorOrders,
+ *  then by starting position, and cut into shards of consecutive keys.
+ *  Worker W of N searches shards W, W + N, W + 2N, and so on, so the
+ *  workers need not communicate.  They share a checkpoint directory, in
+ *  which each keeps a log of the shards it has completed: the settings
+ *  lines found in a shard, each preceded by the shard's number, and then
+ *  a line "K done N C", where K is the shard, N the number of lines found
+ *  and C the CRC-32 of the block up to C, in eight hexadecimal digits.
+ *  A log is forced to disk after each shard.  A block counts only if it
+ *  follows complete blocks, its done line ends in a newline and its
+ *  checksum matches, so no block cut short counts, and a worker started
+ *  again first cuts its log back to the end of its last complete block.
+ *  A worker killed at any point and started again, with any number of
+ *  workers, thus skips every shard that some worker has completed and
+ *  repeats only the one it was in.  The results are merged from all the
+ *  logs once every shard is done.
+ *  @author Rayan Taghizadeh
+ */
+class Sweep {
+
+    /** Default number of keys per shard. */
+    static final long SHARD = 1 << 20;
+
+    /** Number of times a failed worker process is started again. */
+    static final int RETRIES = 3;
+
+    /** A sweep of the machines configurable from the available rotors of
+     *  CONFIG, decrypting CIPHER and reporting the keys whose decryptions
+     *  pass the test described by TEST (see test()), in shards of SHARD
+     *  keys. */
+    Sweep(Machine config, String cipher, String test, long shard) {
+        this(config, cipher, test,
+             test(config.alphabet(), test, cipher.length()), shard);
+    }
+
+    /** A sweep of the machines configurable from the available rotors of
+     *  CONFIG, decrypting CIPHER and reporting the keys whose decryptions,
+     *  as alphabet indices, satisfy TEST, in shards of SHARD keys.  NAME
+     *  identifies TEST in checkpoints. */
+    Sweep(Machine config, String cipher, String name, Predicate<int[]> test,
+          long shard) {
+        _config = config;
+        _alphabet = config.alphabet();
+        _size = _alphabet.size();
+        _slots = config.numRotors();
+        if (cipher.isEmpty()) {
+            throw error("no ciphertext");
+        }
+        if (shard < 1) {
+            throw error("shards must have at least one key");
+        }
+        _cipher = KeySpace.indices(_alphabet, cipher);
+        _orders = KeySpace.rotorOrders(config);
+        double keys = Math.pow(_size, _slots - 1) * _orders.size();
+        if (keys >= Long.MAX_VALUE) {
+            throw error("too many keys to search");
+        }
+        _positions = (long) Math.pow(_size, _slots - 1);
+        _keys = _positions * _orders.size();
+        _shard = shard;
+        _test = test;
+        _noPlugs = new int[_size];
+        Arrays.fill(_noPlugs, -1);
+        _identity = String.format("%d orders of %d positions, shards of %d,"
+                                  + " test %s, digest %s%n",
+                                  _orders.size(), _positions, shard, name,
+                                  digest(config, cipher));
+    }
+
+    /** Return the SHA-256 digest, in hexadecimal, of all that CONFIG
+     *  and CIPHER contribute to the result of a sweep: the alphabet, the
+     *  numbers of slots and pawls, the kind, name, notches and wiring of
+     *  each available rotor, and the whole message. */
+    private static String digest(Machine config, String cipher) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException excp) {
+            throw error("no SHA-256 digest available");
+        }
+        Alphabet alpha = config.alphabet();
+        ArrayList<Rotor> rotors = new ArrayList<>(config.availableRotors());
+        rotors.sort(Comparator.comparing(Rotor::name));
+        try (DataOutputStream out = new DataOutputStream(
+                 new DigestOutputStream(OutputStream.nullOutputStream(),
+                                        md))) {
+            out.writeInt(alpha.size());
+            for (int i = 0; i < alpha.size(); i += 1) {
+                out.writeChar(alpha.toChar(i));
+            }
+            out.writeInt(config.numRotors());
+            out.writeInt(config.numPawls());
+            out.writeInt(rotors.size());
+            for (Rotor rotor : rotors) {
+                out.writeChar(rotor.reflecting() ? 'R'
+                              : rotor.rotates() ? 'M' : 'N');
+                out.writeUTF(rotor.name());
+                out.writeUTF(rotor.notches());
+                for (int i = 0; i < alpha.size(); i += 1) {
+                    out.writeInt(rotor.permutation().permute(i));
+                }
+            }
+            out.writeInt(cipher.length());
+            out.writeChars(cipher);
+        } catch (IOException excp) {
+            throw error("could not digest configuration: %s",
+                        excp.getMessage());
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /** Return the number of keys I search. */
+    long numKeys() {
+        return _keys;
+    }
+
+    /** Return the number of shards into which my keys are cut. */
+    long numShards() {
+        return (_keys + _shard - 1) / _shard;
+    }
+
+    /** Return the settings lines of the keys numbered LO .. HI-1 that
+     *  pass my test, in order of key. */
+    List<String> search(long lo, long hi) {
+        ArrayList<String> hits = new ArrayList<>();
+        int[] state = new int[_slots];
+        int[] text = new int[_cipher.length];
+        for (long key = lo; key < hi;) {
+            int order = (int) (key / _positions);
+            long end = Math.min(hi, (order + 1) * _positions);
+            Machine machine = _config.fork();
+            machine.insertRotors(_orders.get(order));
+            Scrambler scrambler = new Scrambler(machine);
+            Stepper stepper = scrambler.stepper();
+            int[] start =
+                KeySpace.startSettings(_slots, _size, key % _positions);
+            for (; key < end; key += 1) {
+                System.arraycopy(start, 0, state, 0, _slots);
+                for (int i = 0; i < text.length; i += 1) {
+                    stepper.step(state);
+                    text[i] = scrambler.convert(_cipher[i], state);
+                }
+                if (_test.test(text)) {
+                    hits.add(KeySpace.settingsLine(_alphabet,
+                                                   _orders.get(order), start,
+                                                   _noPlugs));
+                }
+                KeySpace.nextStart(start, _size);
+            }
+        }
+        return hits;
+    }
+
+    /** Make DIR the checkpoint directory of this sweep, creating it if
+     *  need be.  Workers may do so at the same time.  It is an error if DIR holds checkpoints of a different
+     *  sweep. */
+    void prepare(Path dir) {
+        Path id = dir.resolve(ID_FILE);
+        try {
+            Files.createDirectories(dir);
+            if (!Files.exists(id)) {
+                Path temp = Files.createTempFile(dir, ID_FILE, ".tmp");
+                try {
+                    Files.writeString(temp, _identity);
+                    Files.move(temp, id);
+                } catch (FileAlreadyExistsException excp) {
+                    /* Another worker created it first; compare with it. */
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            if (!Files.readString(id).equals(_identity)) {
+                throw error("%s holds checkpoints of a different sweep", dir);
+            }
+        } catch (IOException excp) {
+            if (!Files.exists(id)) {
+                throw error("could not create checkpoints in %s", dir);
+            }
+            throw error("could not read checkpoints in %s", dir);
+        }
+    }
+
+    /** Search the shards of worker WORKER of WORKERS that no worker has
+     *  completed, logging each in the checkpoint directory DIR, which
+     *  prepare() has set up.  Return the number of shards searched. */
+    int work(Path dir, int worker, int workers) {
+        if (worker < 0 || worker >= workers) {
+            throw error("no worker %d of %d", worker, workers);
+        }
+        Map<Long, List<String>> done = completed(dir);
+        Path log = dir.resolve(String.format(LOG_FILE, worker));
+        int searched = 0;
+        try (FileChannel out = FileChannel.open(log,
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.WRITE)) {
+            int valid = readLog(Files.readAllBytes(log), done);
+            out.truncate(valid);
+            out.position(valid);
+            StringBuilder block = new StringBuilder();
+            for (long k = worker; k < numShards(); k += workers) {
+                if (done.containsKey(k)) {
+                    continue;
+                }
+                List<String> hits =
+                    search(k * _shard, Math.min(_keys, (k + 1) * _shard));
+                for (String line : hits) {
+                    block.append(k).append(' ').append(line).append('\n');
+                }
+                block.append(k).append(" done ").append(hits.size())
+                    .append(' ');
+                byte[] body = block.toString()
+                    .getBytes(StandardCharsets.UTF_8);
+                byte[] sum = String.format("%08x\n",
+                                           checksum(body, 0, body.length))
+                    .getBytes(StandardCharsets.UTF_8);
+                ByteBuffer bytes =
+                    ByteBuffer.allocate(body.length + sum.length);
+                bytes.put(body).put(sum).flip();
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                out.force(false);
+                block.setLength(0);
+                searched += 1;
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s: %s", log, excp.getMessage());
+        }
+        return searched;
+    }
+
+    /** Return the settings lines found by all the workers logging in the
+     *  checkpoint directory DIR, in order of key.  It is an error if some
+     *  shard is not yet done. */
+    List<String> merge(Path dir) {
+        Map<Long, List<String>> done = completed(dir);
+        ArrayList<String> result = new ArrayList<>();
+        for (long k = 0; k < numShards(); k += 1) {
+            if (!done.containsKey(k)) {
+                throw error("%d of %d shards not done; run again to resume",
+                            numShards() - done.size(), numShards());
+            }
+            result.addAll(done.get(k));
+        }
+        return result;
+    }
+
+    /** Return the settings lines found in each shard completed in the
+     *  logs in DIR, indexed by shard. */
+    private Map<Long, List<String>> completed(Path dir) {
+        HashMap<Long, List<String>> result = new HashMap<>();
+        try (DirectoryStream<Path> logs =
+                 Files.newDirectoryStream(dir, String.format(LOG_FILE, "*"))) {
+            for (Path log : logs) {
+                readLog(Files.readAllBytes(log), result);
+            }
+        } catch (IOException excp) {
+            throw error("could not read checkpoints in %s", dir);
+        }
+        return result;
+    }
+
+    /** Add to DONE the settings lines of each shard completed in the log
+     *  whose contents are DATA, and return the length of the complete
+     *  blocks at the start of DATA.  Whatever follows them is a block cut
+     *  short, or one still being written. */
+    private int readLog(byte[] data, Map<Long, List<String>> done) {
+        ArrayList<String> lines = new ArrayList<>();
+        int valid = 0;
+        for (int start = 0, end = 0; end < data.length; end += 1) {
+            if (data[end] != '\n') {
+                continue;
+            }
+            String line = new String(data, start, end - start,
+                                     StandardCharsets.UTF_8);
+            start = end + 1;
+            String[] words = line.split(" ");
+            if (words.length != 4 || !words[1].equals("done")) {
+                lines.add(line);
+                continue;
+            }
+            int sum = end - words[3].length();
+            List<String> hits =
+                readShard(lines, words, checksum(data, valid, sum - valid));
+            if (hits == null) {
+                break;
+            }
+            done.putIfAbsent(Long.parseLong(words[0]), hits);
+            lines.clear();
+            valid = start;
+        }
+        return valid;
+    }
+
+    /** Return the settings lines of the shard whose done line, split into
+     *  WORDS, follows LINES in its block, whose text up to its checksum
+     *  has the CRC-32 CRC.  Return null if LINES are not the lines it
+     *  counts or the checksum does not match. */
+    private List<String> readShard(List<String> lines, String[] words,
+                                   int crc) {
+        long k;
+        int n;
+        try {
+            k = Long.parseLong(words[0]);
+            n = Integer.parseInt(words[2]);
+        } catch (NumberFormatException excp) {
+            return null;
+        }
+        if (!words[3].equals(String.format("%08x", crc))) {
+            return null;
+        }
+        if (n != lines.size() || k < 0 || k >= numShards()) {
+            return null;
+        }
+        String prefix = k + " *";
+        ArrayList<String> hits = new ArrayList<>();
+        for (String line : lines) {
+            if (!line.startsWith(prefix)) {
+                return null;
+            }
+            hits.add(line.substring(prefix.length() - 1));
+        }
+        return hits;
+    }
+
+    /** Return the CRC-32 of the LEN bytes of DATA from OFF on. */
+    private static int checksum(byte[] data, int off, int len) {
+        CRC32 crc = new CRC32();
+        crc.update(data, off, len);
+        return (int) crc.getValue();
+    }
+
+    /** Run WORKERS worker processes at once, worker W running the
+     *  command COMMAND.apply(W), and wait for all of them.  A worker that
+     *  fails is started again, up to RETRIES times.  Its standard error
+     *  goes to mine, and its standard output is discarded. */
+    static void runWorkers(int workers, IntFunction<List<String>> command) {
+        String[] failures = new String[workers];
+        Thread[] threads = new Thread[workers];
+        for (int w = 0; w < workers; w += 1) {
+            List<String> args = command.apply(w);
+            int worker = w;
+            threads[w] = new Thread(() -> {
+                failures[worker] = runWorker(args);
+            }, "enigma-sweep-" + w);
+            threads[w].start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("sweep interrupted");
+        }
+        for (int w = 0; w < workers; w += 1) {
+            if (failures[w] != null) {
+                throw error("worker %d failed: %s", w, failures[w]);
+            }
+        }
+    }
+
+    /** Run the process COMMAND until it succeeds, at most RETRIES + 1
+     *  times, and return null if it did, or else why it did not. */
+    private static String runWorker(List<String> command) {
+        String failure = null;
+        for (int k = 0; k <= RETRIES; k += 1) {
+            try {
+                Process process = new ProcessBuilder(command)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+                int status = process.waitFor();
+                if (status == 0) {
+                    return null;
+                }
+                failure = "exit status " + status;
+            } catch (IOException excp) {
+                return excp.getMessage();
+            } catch (InterruptedException excp) {
+                return "interrupted";
+            }
+        }
+        return failure;
+    }
+
+    /** Return the command that runs the class MAIN with ARGS in a new
+     *  JVM like this one. */
+    static List<String> javaCommand(Class<?> main, List<String> args) {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin",
+                              "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean()
+                       .getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(main.getName());
+        command.addAll(args);
+        return command;
+    }
+
+    /** Return the test described by SPEC for decryptions of LENGTH
+     *  characters of ALPHABET.  SPEC is a comma-separated list of
+     *  conditions, all of which must hold: "crib:WORD@N", met when the
+     *  decryption has WORD at position N (0 if @N is omitted), and
+     *  "ioc:X", met when its index of coincidence is at least X. */
+    static Predicate<int[]> test(Alphabet alphabet, String spec,
+                                 int length) {
+        Predicate<int[]> result = null;
+        for (String part : spec.split(",")) {
+            int colon = part.indexOf(':');
+            String kind = colon < 0 ? part : part.substring(0, colon);
+            String arg = part.substring(colon + 1);
+            Predicate<int[]> cond;
+            try {
+                if (kind.equals("crib")) {
+                    int at = arg.lastIndexOf('@');
+                    cond = crib(alphabet,
+                                at < 0 ? arg : arg.substring(0, at),
+                                at < 0 ? 0
+                                : Integer.parseInt(arg.substring(at + 1)),
+                                length);
+                } else if (kind.equals("ioc")) {
+                    cond = coincidence(alphabet.size(),
+                                       Double.parseDouble(arg));
+                } else {
+                    throw error("bad sweep test: %s", part);
+                }
+            } catch (NumberFormatException excp) {
+                throw error("bad sweep test: %s", part);
+            }
+            result = result == null ? cond : result.and(cond);
+        }
+        return result;
+    }
+
+    /** Return the test met by decryptions of LENGTH characters of
+     *  ALPHABET that have CRIB at OFFSET. */
+    static Predicate<int[]> crib(Alphabet alphabet, String crib, int offset,
+                                 int length) {
+        if (offset < 0 || crib.isEmpty()
+            || offset > length - crib.length()) {
+            throw error("crib does not fit within the ciphertext");
+        }
+        int[] word = KeySpace.indices(alphabet, crib);
+        return text -> {
+            for (int i = 0; i < word.length; i += 1) {
+                if (text[offset + i] != word[i]) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    /** Return the test met by decryptions over an alphabet of SIZE
+     *  symbols whose index of coincidence, the chance that two of their
+     *  characters chosen at random are equal, is at least THRESHOLD.  The
+     *  test is not thread-safe. */
+    static Predicate<int[]> coincidence(int size, double threshold) {
+        int[] count = new int[size];
+        return text -> {
+            Arrays.fill(count, 0);
+            long pairs = 0;
+            for (int c : text) {
+                pairs += count[c];
+                count[c] += 1;
+            }
+            double n = text.length;
+            return n > 1 && 2 * pairs / (n * (n - 1)) >= threshold;
+        };
+    }
+
+    /** Name of the file identifying the sweep in a checkpoint
+     *  directory. */
+    private static final String ID_FILE = "sweep";
+
+    /** Format of the names of the workers' logs. */
+    private static final String LOG_FILE = "worker-%s.log";
+
+    /** Machine whose available rotors are searched. */
+    private final Machine _config;
+
+    /** Alphabet of the machines. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet and number of rotor slots. */
+    private final int _size, _slots;
+
+    /** The message, as indices. */
+    private final int[] _cipher;
+
+    /** Rotor orders searched. */
+    private final ArrayList<String[]> _orders;
+
+    /** Number of starting positions of each rotor order, and of keys. */
+    private final long _positions, _keys;
+
+    /** Number of keys per shard. */
+    private final long _shard;
+
+    /** Test of decryptions. */
+    private final Predicate<int[]> _test;
+
+    /** Plugboard partners of an empty plugboard, for settings lines. */
+    private final int[] _noPlugs;
+
+    /** Description of this sweep, including a digest of its
+     *  configuration and message, which checkpoints must match. */
+    private final String _identity;
+}
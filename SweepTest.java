@@ -0,0 +1,195 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Sweep class.
+ *  @author Rayan Taghizadeh
+ */
+public class SweepTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Settings under which MESSAGE is enciphered. */
+    private static final String KEY = "* B II I XY";
+
+    /** Plaintext of the test message. */
+    private static final String MESSAGE = "ATTACKTHEBRIDGEATDAWNWITHTANKS";
+
+    /** Return a three-slot machine with the naval reflectors and rotors
+     *  I to III available. */
+    private static Machine config() {
+        return TestUtils.navalMachine(3, 2, "B", "C", "I", "II", "III");
+    }
+
+    /** Return MESSAGE enciphered under KEY. */
+    private static String cipher() {
+        Machine mach = config();
+        Main.setUp(mach, KEY);
+        return mach.convert(MESSAGE);
+    }
+
+    /** Return a new sweep of config() for cipher() with shards of SHARD
+     *  keys, reporting decryptions that start with the first LEN
+     *  characters of MESSAGE. */
+    private static Sweep sweep(int len, long shard) {
+        return new Sweep(config(), cipher(),
+                         "crib:" + MESSAGE.substring(0, len), shard);
+    }
+
+    /** Delete the checkpoint directory DIR and its files. */
+    private static void delete(Path dir) throws IOException {
+        for (Path file : Files.list(dir).toArray(Path[]::new)) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testFindsKey() {
+        Sweep sweep = sweep(MESSAGE.length(), 1000);
+        assertEquals(2 * 3 * 2 * 26 * 26, sweep.numKeys());
+        assertEquals(List.of(KEY), sweep.search(0, sweep.numKeys()));
+        List<String> hits = sweep(3, 1000).search(0, sweep.numKeys());
+        assertTrue(hits.contains(KEY));
+        assertTrue(hits.size() > 1);
+    }
+
+    @Test
+    public void testShardsAndResume() throws IOException {
+        Sweep sweep = sweep(3, 1000);
+        List<String> expected = sweep.search(0, sweep.numKeys());
+        assertEquals(9, sweep.numShards());
+        Path dir = Files.createTempDirectory("enigma-sweep");
+        try {
+            sweep.prepare(dir);
+            assertEquals(5, sweep.work(dir, 0, 2));
+            try {
+                sweep.merge(dir);
+                fail("merged unfinished sweep");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+            assertEquals(4, sweep.work(dir, 1, 2));
+            assertEquals(expected, sweep.merge(dir));
+            Path log = dir.resolve("worker-1.log");
+            byte[] whole = Files.readAllBytes(log);
+            for (int cut : new int[] { 1, 4, 10 }) {
+                Files.write(log, Arrays.copyOf(whole, whole.length - cut));
+                try {
+                    sweep.merge(dir);
+                    fail("merged a log cut short by " + cut);
+                } catch (EnigmaException excp) {
+                    /* Expected. */
+                }
+                assertEquals(1, sweep.work(dir, 1, 3));
+                assertArrayEquals(whole, Files.readAllBytes(log));
+            }
+            Files.writeString(log, "7 * B I", StandardOpenOption.APPEND);
+            assertEquals(0, sweep.work(dir, 0, 1));
+            assertEquals(0, sweep.work(dir, 1, 2));
+            assertArrayEquals(whole, Files.readAllBytes(log));
+            sweep.prepare(dir);
+            assertEquals(expected, sweep.merge(dir));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testOtherSweep() throws IOException {
+        Path dir = Files.createTempDirectory("enigma-sweep");
+        try {
+            sweep(3, 1000).prepare(dir);
+            Machine notched =
+                TestUtils.navalMachine(3, 2, "B", "C", "I", "II", "III:W");
+            for (Sweep other : new Sweep[] {
+                    sweep(4, 1000), sweep(3, 999),
+                    new Sweep(notched, cipher(), "crib:ATT", 1000),
+                    new Sweep(config(), cipher().substring(1) + "A",
+                              "crib:ATT", 1000) }) {
+                try {
+                    other.prepare(dir);
+                    fail("reused checkpoints of another sweep");
+                } catch (EnigmaException excp) {
+                    /* Expected. */
+                }
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testConcurrentPrepare() throws Exception {
+        Sweep sweep = sweep(3, 1000);
+        for (int trial = 0; trial < 20; trial += 1) {
+            Path dir = Files.createTempDirectory("enigma-sweep");
+            CyclicBarrier start = new CyclicBarrier(2);
+            ExecutorService pool = Executors.newFixedThreadPool(2);
+            try {
+                List<Future<?>> workers = new ArrayList<>();
+                for (int w = 0; w < 2; w += 1) {
+                    workers.add(pool.submit(() -> {
+                        start.await();
+                        sweep.prepare(dir.resolve("ck"));
+                        return null;
+                    }));
+                }
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+                assertEquals(List.of(dir.resolve("ck").resolve("sweep")),
+                             List.of(Files.list(dir.resolve("ck"))
+                                     .toArray(Path[]::new)));
+            } finally {
+                pool.shutdownNow();
+                delete(dir.resolve("ck"));
+                delete(dir);
+            }
+        }
+    }
+
+    @Test
+    public void testTests() {
+        int[] text = { 0, 1, 0, 1, 2, 0 };
+        Predicate<int[]> test =
+            Sweep.test(TestUtils.UPPER, "crib:AB", text.length);
+        assertTrue(test.test(text));
+        assertFalse(Sweep.test(TestUtils.UPPER, "crib:AC", 6).test(text));
+        assertTrue(Sweep.test(TestUtils.UPPER, "crib:BC@3", 6).test(text));
+        assertTrue(Sweep.test(TestUtils.UPPER, "ioc:0.26", 6).test(text));
+        assertFalse(Sweep.test(TestUtils.UPPER, "ioc:0.27", 6).test(text));
+        assertTrue(Sweep.test(TestUtils.UPPER, "crib:ABA,ioc:0.2", 6)
+                   .test(text));
+        assertFalse(Sweep.test(TestUtils.UPPER, "crib:ABB,ioc:0.2", 6)
+                    .test(text));
+        for (String spec : new String[] {
+                "crib:ABCDEFG", "crib:AB@5", "crib:a", "crib:A@x", "ioc:",
+                "ioc", "ngram:0.5", "" }) {
+            try {
+                Sweep.test(TestUtils.UPPER, spec, 6);
+                fail("no error for " + spec);
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+}
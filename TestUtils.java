@@ -1,5 +1,6 @@
 package enigma;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /** Utility definitions for use in unit tests.
@@ -39,6 +40,44 @@ class TestUtils {
                   + "(PW) (QZ) (SX) (UY)");
     }
 
+    /** The notches of the naval moving rotors. */
+    static final HashMap<String, String> NAVAL_NOTCHES = new HashMap<>();
+    static {
+        NAVAL_NOTCHES.put("I", "Q");
+        NAVAL_NOTCHES.put("II", "E");
+        NAVAL_NOTCHES.put("III", "V");
+        NAVAL_NOTCHES.put("IV", "J");
+        NAVAL_NOTCHES.put("V", "Z");
+        NAVAL_NOTCHES.put("VI", "ZM");
+        NAVAL_NOTCHES.put("VII", "ZM");
+        NAVAL_NOTCHES.put("VIII", "ZM");
+    }
+
+    /** Return a machine over UPPER with NUMROTORS slots and PAWLS pawls,
+     *  offering the naval rotors named in ROTORS, in the A setting.  B
+     *  and C are reflectors, Beta and Gamma fixed rotors, and the others
+     *  moving rotors with their usual notches, unless a colon and other
+     *  notches follow the name, as in "IV:JR". */
+    static Machine navalMachine(int numRotors, int pawls,
+                                String... rotors) {
+        ArrayList<Rotor> available = new ArrayList<>();
+        for (String rotor : rotors) {
+            String[] spec = rotor.split(":");
+            String name = spec[0];
+            Permutation perm = new Permutation(NAVALA.get(name), UPPER);
+            if (name.equals("B") || name.equals("C")) {
+                available.add(new Reflector(name, perm));
+            } else if (name.equals("Beta") || name.equals("Gamma")) {
+                available.add(new FixedRotor(name, perm));
+            } else {
+                available.add(new MovingRotor(name, perm, spec.length > 1
+                                              ? spec[1]
+                                              : NAVAL_NOTCHES.get(name)));
+            }
+        }
+        return new Machine(UPPER, numRotors, pawls, available);
+    }
+
     /** The mapping of the upper-case alphabet by NAVALA. */
     static final HashMap<String, String> NAVALA_MAP = new HashMap<>();
     static {
@@ -0,0 +1,40 @@
+package enigma;
+
+/** Receives the intermediate values of each character a Machine converts.
+ *  A Machine reports every conversion as one call to start, a call to
+ *  step for each stage (the plugboard and each pass through a rotor), and
+ *  one call to finish.
+ *  @author Rayan Taghizadeh
+ */
+interface Tracer {
+
+    /** A Tracer that ignores everything.  Its methods are empty, so calls
+     *  through it compile away once inlined. */
+    Tracer NONE = new Tracer() {
+        @Override
+        public void start(Machine machine, int c) {
+        }
+
+        @Override
+        public void step(int c) {
+        }
+
+        @Override
+        public void finish(int c) {
+        }
+    };
+
+    /** Record that MACHINE, having just advanced its rotors, is about to
+     *  convert C. */
+    void start(Machine machine, int c);
+
+    /** Record that the next stage of the current conversion produced C. */
+    void step(int c);
+
+    /** Record that the current conversion produced C. */
+    void finish(int c);
+
+    /** Write out anything still buffered and release my resources. */
+    default void close() {
+    }
+}
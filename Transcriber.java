@@ -0,0 +1,203 @@
+package enigma;
+
+import java.nio.CharBuffer;
+import java.util.function.Consumer;
+
+import static enigma.EnigmaException.*;
+
+/** Converts a stream of input text, delivered in chunks of any size, the
+ *  way Main always has: each line whose first non-blank character is '*'
+ *  is a settings line handed to a settings handler, and every other line
+ *  is a message whose non-whitespace characters are converted by a
+ *  Machine and written out in groups.  The first line must be a settings
+ *  line.  Lines end at the same terminators that Scanner.nextLine
+ *  recognizes.  Memory use does not depend on line length.
+ *  @author Rayan Taghizadeh
+ */
+class Transcriber {
+
+    /** A Transcriber converting messages with MACHINE, passing settings
+     *  lines to SETUP and writing converted lines to OUT. */
+    Transcriber(Machine machine, Consumer<String> setup, GroupWriter out) {
+        this(machine, setup, out, Metrics.NONE);
+    }
+
+    /** A Transcriber converting messages with MACHINE, passing settings
+     *  lines to SETUP and writing converted lines to OUT, and recording
+     *  its work in METRICS. */
+    Transcriber(Machine machine, Consumer<String> setup, GroupWriter out,
+                Metrics metrics) {
+        _machine = machine;
+        _setup = setup;
+        _out = out;
+        _metrics = metrics;
+    }
+
+    /** Process the characters remaining in CHUNK. */
+    void feed(CharBuffer chunk) {
+        if (chunk.hasArray()) {
+            feed(chunk.array(), chunk.arrayOffset() + chunk.position(),
+                 chunk.remaining());
+            chunk.position(chunk.limit());
+        } else {
+            while (chunk.hasRemaining()) {
+                accept(chunk.get());
+            }
+        }
+    }
+
+    /** Process the LEN characters of CHARS starting at OFF. */
+    void feed(char[] chars, int off, int len) {
+        for (int i = off; i < off + len; i += 1) {
+            char c = chars[i];
+            if (_state == MESSAGE && !isBlank(c) && !isTerminator(c)
+                && c != '*' && _len < _pending.length) {
+                _pending[_len++] = c;
+                _lineHasChars = true;
+            } else {
+                accept(c);
+            }
+        }
+    }
+
+    /** Finish processing at the end of input. */
+    void finish() {
+        if (_lineHasChars) {
+            endLine();
+        }
+        if (_lines == 0) {
+            throw error("missing settings line");
+        }
+        _out.flush();
+    }
+
+    /** Process character C. */
+    private void accept(char c) {
+        if (_afterCR) {
+            _afterCR = false;
+            if (c == '\n') {
+                return;
+            }
+        }
+        if (isTerminator(c)) {
+            _afterCR = c == '\r';
+            endLine();
+            return;
+        }
+        _lineHasChars = true;
+        switch (_state) {
+        case LINE_START:
+            if (c == '*') {
+                _state = SETTINGS;
+                _settings.append(c);
+            } else if (!isBlank(c)) {
+                if (_lines == 0) {
+                    throw error("erroneous setting line start");
+                }
+                _state = MESSAGE;
+                message(c);
+            }
+            break;
+        case SETTINGS:
+            _settings.append(c);
+            break;
+        default:
+            if (c == '*') {
+                throw error("erroneous setting line start");
+            } else if (!isBlank(c)) {
+                message(c);
+            }
+            break;
+        }
+    }
+
+    /** Queue message character C for conversion. */
+    private void message(char c) {
+        if (_len == _pending.length) {
+            convertPending();
+        }
+        _pending[_len++] = c;
+    }
+
+    /** Convert and write the queued message characters. */
+    private void convertPending() {
+        long start = _metrics.start();
+        _machine.convert(_pending, 0, _pending, 0, _len);
+        start = _metrics.lap(Metrics.Stage.CONVERT, start);
+        _out.write(_pending, 0, _len);
+        _metrics.stop(Metrics.Stage.OUTPUT, start);
+        _metrics.countChars(_len);
+        _len = 0;
+    }
+
+    /** Complete the current line. */
+    private void endLine() {
+        if (_state == SETTINGS) {
+            long start = _metrics.start();
+            _setup.accept(_settings.toString());
+            _metrics.stop(Metrics.Stage.SETUP, start);
+            _metrics.countSettings();
+            _settings.setLength(0);
+        } else if (_lines == 0) {
+            throw error("erroneous setting line start");
+        } else {
+            convertPending();
+            _out.endLine();
+            _metrics.countMessage();
+        }
+        _lines += 1;
+        _state = LINE_START;
+        _lineHasChars = false;
+    }
+
+    /** Return true iff C is one of the whitespace characters that
+     *  messages may contain (those matched by the regex \s, less the
+     *  line terminators). */
+    static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\u000B' || c == '\f';
+    }
+
+    /** Return true iff C ends a line. */
+    static boolean isTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085'
+            || c == '\u2028' || c == '\u2029';
+    }
+
+    /** Line states: nothing but blanks seen, reading a settings line, or
+     *  reading a message line. */
+    private static final int LINE_START = 0, SETTINGS = 1, MESSAGE = 2;
+
+    /** Machine converting messages. */
+    private final Machine _machine;
+
+    /** Receiver of settings lines. */
+    private final Consumer<String> _setup;
+
+    /** Destination of converted lines. */
+    private final GroupWriter _out;
+
+    /** Record of my work. */
+    private final Metrics _metrics;
+
+    /** Message characters waiting to be converted. */
+    private final char[] _pending = new char[1 << 12];
+
+    /** Number of characters in _pending. */
+    private int _len;
+
+    /** Text of the settings line being read. */
+    private final StringBuilder _settings = new StringBuilder();
+
+    /** State of the current line. */
+    private int _state = LINE_START;
+
+    /** True iff the current line has any characters. */
+    private boolean _lineHasChars;
+
+    /** True iff the last character was a carriage return, so that a
+     *  following newline belongs to the same terminator. */
+    private boolean _afterCR;
+
+    /** Number of lines completed. */
+    private long _lines;
+}
@@ -0,0 +1,78 @@
+package enigma;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Transcriber class.
+ *  @author Rayan Taghizadeh
+ */
+public class TranscriberTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Line terminator used in output. */
+    private static final String NL = System.lineSeparator();
+
+    /** Settings lines seen by the last call to transcribe. */
+    private ArrayList<String> settings = new ArrayList<>();
+
+    /** Return the output of transcribing INPUT, delivered in chunks of
+     *  CHUNK characters, through a machine whose plugboard is the
+     *  identity and whose conversion swaps A and B. */
+    private String transcribe(String input, int chunk) {
+        Alphabet alpha = new Alphabet("ABCD");
+        Rotor refl = new Reflector("R", new Permutation("(AB) (CD)", alpha));
+        Rotor fast = new FixedRotor("F", new Permutation("", alpha));
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(refl);
+        rotors.add(fast);
+        Machine mach = new Machine(alpha, 2, 0, rotors);
+        mach.insertRotors(new String[] { "R", "F" });
+        StringWriter result = new StringWriter();
+        GroupWriter out = new GroupWriter(result);
+        settings.clear();
+        Transcriber t = new Transcriber(mach, settings::add, out);
+        char[] chars = input.toCharArray();
+        for (int i = 0; i < chars.length; i += chunk) {
+            t.feed(chars, i, Math.min(chunk, chars.length - i));
+        }
+        t.finish();
+        return result.toString();
+    }
+
+    @Test
+    public void testGrouping() {
+        for (int chunk = 1; chunk < 8; chunk += 1) {
+            assertEquals("BADCB ADCBA" + NL + NL + "B" + NL,
+                         transcribe("* x\nAB CD\tABCDAB\n \t\nA", chunk));
+            assertEquals(1, settings.size());
+        }
+    }
+
+    @Test
+    public void testTerminators() {
+        for (int chunk = 1; chunk < 4; chunk += 1) {
+            assertEquals("B" + NL + "A" + NL + NL + "D" + NL,
+                         transcribe("* x\r\nA\rB\r\n\r* y\u0085C\n", chunk));
+            assertEquals(2, settings.size());
+            assertEquals("* y", settings.get(1));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingSettings() {
+        transcribe("ABCD\n", 3);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMisplacedStar() {
+        transcribe("* x\nAB*CD\n", 3);
+    }
+}
@@ -16,7 +16,24 @@ public class UnitTest {
         }
         System.exit(textui.runClasses(PermutationTest.class,
                 MovingRotorTest.class,
-                MachineTest.class));
+                MachineTest.class,
+                AlphabetTest.class,
+                SubstitutionCacheTest.class,
+                TranscriberTest.class,
+                StepperTest.class,
+                RangeDecoderTest.class,
+                ParallelTranscriberTest.class,
+                CompiledConfigTest.class,
+                BombeTest.class,
+                KeySpaceTest.class,
+                HillClimberTest.class,
+                BatchConverterTest.class,
+                DaemonTest.class,
+                MetricsTest.class,
+                GroupWriterTest.class,
+                ByteStreamTest.class,
+                AllocationTest.class,
+                SweepTest.class));
     }
 
 }
@@ -0,0 +1,337 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** A BatchConverter that runs one message in each lane of an int vector
+ *  of the platform's preferred size (8 lanes for AVX2, 16 for AVX-512).
+ *  Messages are sorted by length and taken a vector at a time, with
+ *  their characters interleaved so that each time step loads and stores
+ *  one vector; lanes whose messages have ended simply stop stepping.
+ *
+ *  Each lane has its own rotor settings, one vector per slot.  Stepping
+ *  gathers each slot's notch flags and advances the settings by the
+ *  same rules as Stepper.step.  Each rotor is tabulated at every
+ *  setting, so a pass through a rotor is a single gather at the lane's
+ *  table offset plus setting times alphabet size plus character.  Lanes
+ *  may use different rotors and plugboards; each distinct Rotor and
+ *  plugboard object in a batch is tabulated once.  The rotor tables,
+ *  copied from the Rotors' own, are kept for later batches whose rotors
+ *  they all cover, so batches of machines forked from one configuration
+ *  build them only once.  Plugboards, which differ from machine to
+ *  machine, are tabulated for each batch.
+ *
+ *  This class needs the incubating jdk.incubator.vector module, and
+ *  should be obtained only through BatchConverter.newConverter().
+ *  @author Rayan Taghizadeh
+ */
+class VectorBatchConverter extends BatchConverter {
+
+    /** Species of the vectors used. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Number of lanes. */
+    private static final int LANES = SPECIES.length();
+
+    @Override
+    int lanes() {
+        return LANES;
+    }
+
+    @Override
+    String[] convert(Machine[] machines, String[] messages) {
+        check(machines, messages);
+        String[] result = new String[messages.length];
+        if (messages.length == 0) {
+            return result;
+        }
+        Tables tables = _tables;
+        if (tables == null || !tables.covers(machines)) {
+            tables = new Tables(machines);
+            _tables = tables;
+        }
+        Plugboards plugs = new Plugboards(machines, tables._size);
+        Integer[] order = new Integer[messages.length];
+        for (int i = 0; i < order.length; i += 1) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> messages[y].length()
+                    - messages[x].length());
+        int[] group = new int[LANES];
+        for (int g = 0; g < order.length; g += LANES) {
+            int n = Math.min(LANES, order.length - g);
+            for (int k = 0; k < LANES; k += 1) {
+                group[k] = order[g + Math.min(k, n - 1)];
+            }
+            convertGroup(tables, plugs, machines, messages, group, n,
+                         result);
+        }
+        return result;
+    }
+
+    /** Convert the messages GROUP[0 .. N-1] of MESSAGES into RESULT, using
+     *  TABLES and PLUGS, one per lane.  Lanes N and above repeat lane N-1
+     *  but are never active. */
+    private void convertGroup(Tables tables, Plugboards plugs,
+                              Machine[] machines, String[] messages,
+                              int[] group, int n, String[] result) {
+        int slots = tables._slots;
+        int size = tables._size;
+        int[] length = new int[LANES];
+        for (int k = 0; k < n; k += 1) {
+            length[k] = messages[group[k]].length();
+        }
+        int steps = length[0];
+        int[] in = new int[steps * LANES];
+        for (int k = 0; k < n; k += 1) {
+            Alphabet alpha = machines[group[k]].alphabet();
+            String msg = messages[group[k]];
+            for (int t = 0; t < length[k]; t += 1) {
+                in[t * LANES + k] = alpha.toInt(msg.charAt(t));
+            }
+        }
+        int[] out = new int[in.length];
+
+        int[] posn = new int[slots * LANES];
+        int[] forward = new int[slots * LANES];
+        int[] backward = new int[slots * LANES];
+        int[] notches = new int[slots * LANES];
+        int[] rotates = new int[slots * LANES];
+        int[] plug = new int[LANES];
+        int[] scratch = new int[LANES];
+        for (int k = 0; k < LANES; k += 1) {
+            Machine machine = machines[group[k]];
+            for (int s = 0; s < slots; s += 1) {
+                Rotor rotor = machine.getRotor(s);
+                int i = s * LANES + k;
+                posn[i] = machine.setting(s);
+                int r = tables._index.get(rotor);
+                forward[i] = backward[i] = r * size * size;
+                notches[i] = r * size;
+                rotates[i] = rotor.rotates() ? 1 : 0;
+            }
+            plug[k] = plugs._base.get(machine.plugboard());
+        }
+        for (int t = 0; t < steps; t += 1) {
+            step(tables, slots, t, length, posn, notches, rotates, scratch);
+            convert(tables, plugs, slots, t, in, out, posn, forward,
+                    backward, plug, scratch);
+        }
+
+        for (int k = 0; k < n; k += 1) {
+            Machine machine = machines[group[k]];
+            Alphabet alpha = machine.alphabet();
+            int[] state = new int[slots];
+            for (int s = 0; s < slots; s += 1) {
+                state[s] = posn[s * LANES + k];
+            }
+            machine.setPositions(state);
+            char[] chars = new char[length[k]];
+            for (int i = 0; i < chars.length; i += 1) {
+                chars[i] = alpha.toChar(out[i * LANES + k]);
+            }
+            result[group[k]] = new String(chars);
+        }
+    }
+
+    /** Advance the settings POSN of each lane whose message has more
+     *  than T characters, as given by LENGTH, as Stepper.step would.
+     *  NOTCHES and ROTATES give the offsets in TABLES of the notches of
+     *  the rotors in each of the SLOTS slots, and whether they rotate.
+     *  POSN, NOTCHES and ROTATES hold one vector for each slot, and
+     *  SCRATCH holds the indices of each gather.  Masks
+     *  are not used, as the Vector API of JDK 17 does not yet compile
+     *  their logical operations well; conditions are vectors of 0 and
+     *  1 instead. */
+    private static void step(Tables tables, int slots, int t, int[] length,
+                             int[] posn, int[] notches, int[] rotates,
+                             int[] scratch) {
+        int size = tables._size;
+        IntVector active = IntVector.broadcast(SPECIES, t)
+            .sub(IntVector.fromArray(SPECIES, length, 0))
+            .lanewise(VectorOperators.LSHR, 31);
+        IntVector rotatesLeft = IntVector.zero(SPECIES);
+        IntVector notch = IntVector.zero(SPECIES);
+        for (int s = 1; s < slots; s += 1) {
+            int i = s * LANES;
+            IntVector posnNow = IntVector.fromArray(SPECIES, posn, i);
+            IntVector rotatesNow = IntVector.fromArray(SPECIES, rotates, i);
+            if (s == 1) {
+                notch = gather(tables._notch,
+                               IntVector.fromArray(SPECIES, notches, i)
+                               .add(posnNow), scratch);
+            }
+            IntVector advance;
+            if (s == slots - 1) {
+                advance = rotatesNow;
+            } else {
+                IntVector notchRight =
+                    gather(tables._notch,
+                           IntVector.fromArray(SPECIES, notches, i + LANES)
+                           .add(IntVector.fromArray(SPECIES, posn,
+                                                    i + LANES)), scratch);
+                advance = rotatesNow.and(notchRight.or(rotatesLeft.and(
+                    notch)));
+                notch = notchRight;
+            }
+            IntVector next = posnNow.add(advance.and(active));
+            next = next.sub(next.broadcast(size - 1).sub(next)
+                            .lanewise(VectorOperators.ASHR, 31)
+                            .and(size));
+            next.intoArray(posn, i);
+            rotatesLeft = rotatesNow;
+        }
+    }
+
+    /** Convert the characters at time T of each lane of IN into OUT,
+     *  using TABLES, for rotors in SLOTS slots at settings POSN whose
+     *  forward and backward tables are at offsets FORWARD and BACKWARD,
+     *  and the plugboards of PLUGS at offsets PLUG.  IN and OUT hold one
+     *  vector for each time, POSN, FORWARD and BACKWARD one for each
+     *  slot.  SCRATCH holds the indices of each gather. */
+    private static void convert(Tables tables, Plugboards plugs, int slots,
+                                int t, int[] in, int[] out, int[] posn,
+                                int[] forward, int[] backward, int[] plug,
+                                int[] scratch) {
+        int size = tables._size;
+        IntVector plugBase = IntVector.fromArray(SPECIES, plug, 0);
+        IntVector c = IntVector.fromArray(SPECIES, in, t * LANES);
+        c = gather(plugs._plug, plugBase.add(c), scratch);
+        for (int s = slots - 1; s >= 0; s -= 1) {
+            c = gather(tables._forward,
+                       IntVector.fromArray(SPECIES, posn, s * LANES).mul(size)
+                       .add(IntVector.fromArray(SPECIES, forward, s * LANES))
+                       .add(c), scratch);
+        }
+        for (int s = 1; s < slots; s += 1) {
+            c = gather(tables._backward,
+                       IntVector.fromArray(SPECIES, posn, s * LANES).mul(size)
+                       .add(IntVector.fromArray(SPECIES, backward,
+                                                s * LANES))
+                       .add(c), scratch);
+        }
+        c = gather(plugs._plug, plugBase.add(c), scratch);
+        c.intoArray(out, t * LANES);
+    }
+
+    /** Return the elements of TABLE at the indices in INDEX, using
+     *  SCRATCH, of LANES elements, to hold them. */
+    private static IntVector gather(int[] table, IntVector index,
+                                    int[] scratch) {
+        index.intoArray(scratch, 0);
+        return IntVector.fromArray(SPECIES, table, 0, scratch, 0);
+    }
+
+    /** The tables of the rotors of one or more batches. */
+    private static class Tables {
+
+        /** Tables for the rotors of MACHINES. */
+        Tables(Machine[] machines) {
+            _slots = machines[0].numRotors();
+            _size = machines[0].alphabet().size();
+            for (Machine machine : machines) {
+                for (int s = 0; s < _slots; s += 1) {
+                    Rotor rotor = machine.getRotor(s);
+                    if (!_index.containsKey(rotor)) {
+                        _index.put(rotor, _index.size());
+                    }
+                }
+            }
+            int area = _size * _size;
+            _forward = new int[_index.size() * area];
+            _backward = new int[_forward.length];
+            _notch = new int[_index.size() * _size];
+            for (Rotor rotor : _index.keySet()) {
+                int r = _index.get(rotor);
+                if (rotor.forwardTable() != null) {
+                    System.arraycopy(rotor.forwardTable(), 0, _forward,
+                                     r * area, area);
+                    System.arraycopy(rotor.backwardTable(), 0, _backward,
+                                     r * area, area);
+                } else {
+                    for (int k = 0; k < area; k += 1) {
+                        _forward[r * area + k] =
+                            rotor.convertForward(k % _size, k / _size);
+                        _backward[r * area + k] =
+                            rotor.convertBackward(k % _size, k / _size);
+                    }
+                }
+                for (int p = 0; p < _size; p += 1) {
+                    _notch[r * _size + p] =
+                        rotor.rotates() && rotor.atNotch(p) ? 1 : 0;
+                }
+            }
+        }
+
+        /** Return true iff I have tables for all the rotors of MACHINES,
+         *  which have my number of slots and alphabet size. */
+        boolean covers(Machine[] machines) {
+            if (machines[0].numRotors() != _slots
+                || machines[0].alphabet().size() != _size) {
+                return false;
+            }
+            for (Machine machine : machines) {
+                for (int s = 0; s < _slots; s += 1) {
+                    if (!_index.containsKey(machine.getRotor(s))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Number of slots and alphabet size. */
+        private final int _slots, _size;
+
+        /** _forward[(r * size + p) * size + c] is the forward conversion
+         *  of C by the rotor whose index is R at setting P; likewise
+         *  _backward for backward conversions. */
+        private final int[] _forward, _backward;
+
+        /** _notch[r * size + p] is 1 iff the rotor whose index is R
+         *  moves and is at a notch at setting P. */
+        private final int[] _notch;
+
+        /** Index of each rotor in the tables. */
+        private final IdentityHashMap<Rotor, Integer> _index =
+            new IdentityHashMap<>();
+    }
+
+    /** The tables of the plugboards of one batch. */
+    private static class Plugboards {
+
+        /** Tables for the plugboards of MACHINES, whose alphabets have
+         *  SIZE characters. */
+        Plugboards(Machine[] machines, int size) {
+            for (Machine machine : machines) {
+                if (!_base.containsKey(machine.plugboard())) {
+                    _base.put(machine.plugboard(), _base.size() * size);
+                }
+            }
+            _plug = new int[_base.size() * size];
+            for (Permutation perm : _base.keySet()) {
+                int base = _base.get(perm);
+                for (int c = 0; c < size; c += 1) {
+                    _plug[base + c] = perm.permute(c);
+                }
+            }
+        }
+
+        /** _plug[b + c] is the plugboard whose offset is B applied to
+         *  C. */
+        private final int[] _plug;
+
+        /** Offset of each plugboard's table. */
+        private final IdentityHashMap<Permutation, Integer> _base =
+            new IdentityHashMap<>();
+    }
+
+    /** Rotor tables of the latest batch, which later batches share while
+     *  it covers them. */
+    private volatile Tables _tables;
+}
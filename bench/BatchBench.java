@@ -0,0 +1,85 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of BatchConverter.convert on batches of short messages,
+ *  each with its own machine forked from one configuration and set up
+ *  with its own settings.  One operation converts one batch; the
+ *  machines are not reset between batches.
+ *  @author Rayan Taghizadeh
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class BatchBench {
+
+    /** Size of the machines' alphabet. */
+    @Param({ "26", "62" })
+    public int alphabetSize;
+
+    /** Number of rotor slots. */
+    @Param({ "5" })
+    public int numRotors;
+
+    /** Characters per message. */
+    @Param({ "16", "64" })
+    public int messageLength;
+
+    /** Messages per batch. */
+    @Param({ "4096" })
+    public int batchSize;
+
+    /** True to use BatchConverter.newConverter(), and false for the
+     *  scalar BatchConverter. */
+    @Param({ "false", "true" })
+    public boolean vector;
+
+    /** Create and set up the machines and the messages. */
+    @Setup
+    public void setUp() {
+        BenchConfig config = new BenchConfig(alphabetSize, numRotors, 1);
+        Random random = new Random(2);
+        Machine template = config.machine();
+        _machines = new Machine[batchSize];
+        _messages = new String[batchSize];
+        for (int i = 0; i < batchSize; i += 1) {
+            _machines[i] = template.fork();
+            Main.setUp(_machines[i],
+                       config.settings(alphabetSize / 4, random));
+            _messages[i] = config.message(messageLength, random);
+        }
+        _converter = vector ? BatchConverter.newConverter()
+            : new BatchConverter();
+    }
+
+    /** Return the conversions of the batch. */
+    @Benchmark
+    public String[] convert() {
+        return _converter.convert(_machines, _messages);
+    }
+
+    /** Converter measured. */
+    private BatchConverter _converter;
+
+    /** Machines of the batch. */
+    private Machine[] _machines;
+
+    /** Messages of the batch. */
+    private String[] _messages;
+}
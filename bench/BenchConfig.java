@@ -0,0 +1,176 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** Randomly generated, but reproducible, machine configurations for the
+ *  benchmarks.  A configuration has a reflector named B, one fixed rotor
+ *  named F and as many moving rotors, named M1, M2, ..., as are needed to
+ *  fill its slots.
+ *  @author Rayan Taghizadeh
+ */
+class BenchConfig {
+
+    /** Characters from which benchmark alphabets are drawn, in order. */
+    static final String CHARS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    /** A configuration with an alphabet of the first ALPHASIZE characters
+     *  of CHARS, which must be even, and NUMROTORS > 2 slots, generated
+     *  from SEED. */
+    BenchConfig(int alphaSize, int numRotors, long seed) {
+        if (alphaSize % 2 != 0 || alphaSize > CHARS.length()
+            || numRotors < 3) {
+            throw new IllegalArgumentException("bad benchmark configuration");
+        }
+        _chars = CHARS.substring(0, alphaSize);
+        _alphabet = new Alphabet(_chars);
+        _numRotors = numRotors;
+        _pawls = numRotors - 2;
+        _random = new Random(seed);
+        _reflector = reflector();
+        _fixed = cycles();
+        for (int i = 0; i < _pawls; i += 1) {
+            _moving.add(cycles());
+            _notches.add(String.valueOf(_chars.charAt(
+                _random.nextInt(alphaSize))));
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the text of my configuration file. */
+    String text() {
+        StringBuilder text = new StringBuilder();
+        text.append(_chars).append('\n');
+        text.append(' ').append(_numRotors).append(' ').append(_pawls)
+            .append('\n');
+        text.append(" B R ").append(_reflector).append('\n');
+        text.append(" F N ").append(_fixed).append('\n');
+        for (int i = 0; i < _pawls; i += 1) {
+            text.append(" M").append(i + 1).append(" M")
+                .append(_notches.get(i)).append(' ').append(_moving.get(i))
+                .append('\n');
+        }
+        return text.toString();
+    }
+
+    /** Return a permutation of my alphabet: that of my fixed rotor. */
+    Permutation permutation() {
+        return new Permutation(_fixed, _alphabet);
+    }
+
+    /** Return a new copy of my first moving rotor. */
+    Rotor rotor() {
+        return new MovingRotor("M1", new Permutation(_moving.get(0),
+                                                     _alphabet),
+                               _notches.get(0));
+    }
+
+    /** Return a new machine with my configuration. */
+    Machine machine() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(_reflector, _alphabet)));
+        rotors.add(new FixedRotor("F", new Permutation(_fixed, _alphabet)));
+        for (int i = 0; i < _pawls; i += 1) {
+            rotors.add(new MovingRotor("M" + (i + 1),
+                           new Permutation(_moving.get(i), _alphabet),
+                           _notches.get(i)));
+        }
+        return new Machine(_alphabet, _numRotors, _pawls, rotors);
+    }
+
+    /** Return a settings line for my rotors, with random rotor settings
+     *  and PLUGS random plugboard pairs, using RANDOM. */
+    String settings(int plugs, Random random) {
+        StringBuilder line = new StringBuilder("* B F");
+        for (int i = 0; i < _pawls; i += 1) {
+            line.append(" M").append(i + 1);
+        }
+        line.append(' ');
+        for (int i = 1; i < _numRotors; i += 1) {
+            line.append(_chars.charAt(random.nextInt(_chars.length())));
+        }
+        List<Character> shuffled = shuffled(random);
+        for (int i = 0; i < 2 * plugs && i + 1 < shuffled.size(); i += 2) {
+            line.append(" (").append(shuffled.get(i))
+                .append(shuffled.get(i + 1)).append(')');
+        }
+        return line.toString();
+    }
+
+    /** Return a random message of LEN characters of my alphabet, using
+     *  RANDOM. */
+    String message(int len, Random random) {
+        char[] msg = new char[len];
+        for (int i = 0; i < len; i += 1) {
+            msg[i] = _chars.charAt(random.nextInt(_chars.length()));
+        }
+        return new String(msg);
+    }
+
+    /** Return random cycles forming a derangement of my alphabet made of
+     *  pairs, as for a reflector. */
+    private String reflector() {
+        List<Character> shuffled = shuffled(_random);
+        StringBuilder cycles = new StringBuilder();
+        for (int i = 0; i < shuffled.size(); i += 2) {
+            cycles.append('(').append(shuffled.get(i))
+                .append(shuffled.get(i + 1)).append(')');
+        }
+        return cycles.toString();
+    }
+
+    /** Return the cycles of a random permutation of my alphabet. */
+    private String cycles() {
+        List<Character> shuffled = shuffled(_random);
+        StringBuilder cycles = new StringBuilder();
+        int i = 0;
+        while (i < shuffled.size()) {
+            int len = 1 + _random.nextInt(shuffled.size() - i);
+            cycles.append('(');
+            for (int k = 0; k < len; k += 1, i += 1) {
+                cycles.append(shuffled.get(i));
+            }
+            cycles.append(')');
+        }
+        return cycles.toString();
+    }
+
+    /** Return the characters of my alphabet in an order chosen with
+     *  RANDOM. */
+    private List<Character> shuffled(Random random) {
+        ArrayList<Character> chars = new ArrayList<>();
+        for (int i = 0; i < _chars.length(); i += 1) {
+            chars.add(_chars.charAt(i));
+        }
+        Collections.shuffle(chars, random);
+        return chars;
+    }
+
+    /** Characters of my alphabet. */
+    private final String _chars;
+
+    /** My alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Numbers of slots and pawls. */
+    private final int _numRotors, _pawls;
+
+    /** Source of my rotor wirings. */
+    private final Random _random;
+
+    /** Cycles of my reflector and fixed rotor. */
+    private final String _reflector, _fixed;
+
+    /** Cycles of my moving rotors. */
+    private final ArrayList<String> _moving = new ArrayList<>();
+
+    /** Notches of my moving rotors. */
+    private final ArrayList<String> _notches = new ArrayList<>();
+}
@@ -0,0 +1,226 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** Generator of synthetic input for Main, shaped like production traffic
+ *  and reproducible from a seed.  Usage:
+ *
+ *      java enigma.Corpus [--seed=N] [--lines=MIN,MAX]
+ *          [--settings-every=N] [--plugs=N] [--grouped]
+ *          CONFIG SIZE OUTPUT
+ *
+ *  writes about SIZE bytes (a number optionally followed by K, M or G)
+ *  of input for the machine configured in CONFIG to OUTPUT.  Message
+ *  lines have between MIN and MAX characters (default 40 to 120),
+ *  written in groups of five if --grouped.  Each line is a settings line
+ *  with probability 1/N (default 1/50), and the first always is.  A
+ *  settings line chooses the configuration's rotors at random, moving
+ *  ones for the slots with pawls, sets them at random, and adds up to
+ *  --plugs (default 10) random plugboard pairs.  The same arguments
+ *  always produce the same file.
+ *  @author Rayan Taghizadeh
+ */
+public class Corpus {
+
+    /** Write a corpus as described by ARGS (see above). */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--seed=(\\d+) --lines=(\\d+,\\d+) "
+                                + "--settings-every=(\\d+) --plugs=(\\d+) "
+                                + "--grouped --=(.*){1,3}", args);
+            if (!options.ok() || options.get("--").size() != 3) {
+                throw error("Usage: java enigma.Corpus [--seed=N] "
+                            + "[--lines=MIN,MAX] [--settings-every=N] "
+                            + "[--plugs=N] [--grouped] CONFIG SIZE "
+                            + "OUTPUT");
+            }
+            List<String> files = options.get("--");
+            String lines = options.contains("--lines")
+                ? options.getFirst("--lines") : "40,120";
+            int comma = lines.indexOf(',');
+            Corpus corpus =
+                new Corpus(Main.loadConfig(files.get(0)),
+                           number(options, "--seed", 1),
+                           Integer.parseInt(lines.substring(0, comma)),
+                           Integer.parseInt(lines.substring(comma + 1)),
+                           (int) number(options, "--settings-every", 50),
+                           (int) number(options, "--plugs", 10),
+                           options.contains("--grouped"));
+            corpus.write(files.get(2), Main.parseSize(files.get(1)));
+            return;
+        } catch (EnigmaException | NumberFormatException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the value of the numeric option NAME in OPTIONS, or DEFLT
+     *  if it is absent. */
+    private static long number(CommandArgs options, String name,
+                               long deflt) {
+        return options.contains(name)
+            ? Long.parseLong(options.getFirst(name)) : deflt;
+    }
+
+    /** A generator of input for the machine configured as CONFIG, drawing
+     *  from a generator seeded with SEED, with message lines of MINLINE
+     *  to MAXLINE characters, a settings line once in about EVERY lines,
+     *  at most PLUGS plugboard pairs per settings line, and message
+     *  characters in groups of five iff GROUPED. */
+    Corpus(Machine config, long seed, int minLine, int maxLine, int every,
+           int plugs, boolean grouped) {
+        if (minLine < 1 || maxLine < minLine || every < 1) {
+            throw error("bad corpus shape");
+        }
+        _alphabet = config.alphabet();
+        if (ByteStream.isBytes(_alphabet)) {
+            throw error("corpora are text; use random bytes for --bytes");
+        }
+        _slots = config.numRotors();
+        _pawls = config.numPawls();
+        for (Rotor rotor : config.availableRotors()) {
+            if (rotor.reflecting()) {
+                _reflectors.add(rotor.name());
+            } else if (rotor.rotates()) {
+                _moving.add(rotor.name());
+            } else {
+                _fixed.add(rotor.name());
+            }
+        }
+        if (_reflectors.isEmpty() || _pawls >= _slots
+            || _moving.size() < _pawls
+            || _fixed.size() < _slots - _pawls - 1) {
+            throw error("configuration has too few rotors for its slots");
+        }
+        for (List<String> names : List.of(_reflectors, _moving, _fixed)) {
+            names.sort(Comparator.naturalOrder());
+        }
+        _random = new Random(seed);
+        _minLine = minLine;
+        _maxLine = maxLine;
+        _every = every;
+        _plugs = Math.min(plugs, _alphabet.size() / 2);
+        _grouped = grouped;
+    }
+
+    /** Write about SIZE bytes of input to the file named NAME. */
+    void write(String name, long size) {
+        try (Writer out = Files.newBufferedWriter(Paths.get(name),
+                                                  Charset.defaultCharset())) {
+            StringBuilder line = new StringBuilder();
+            long written = 0;
+            for (long n = 0; written < size; n += 1) {
+                line.setLength(0);
+                if (n == 0 || _random.nextInt(_every) == 0) {
+                    settings(line);
+                } else {
+                    message(line);
+                }
+                line.append('\n');
+                out.append(line);
+                written += line.length();
+            }
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Append a random settings line to LINE. */
+    private void settings(StringBuilder line) {
+        line.append('*');
+        line.append(' ').append(pick(_reflectors, 1).get(0));
+        for (String name : pick(_fixed, _slots - _pawls - 1)) {
+            line.append(' ').append(name);
+        }
+        for (String name : pick(_moving, _pawls)) {
+            line.append(' ').append(name);
+        }
+        line.append(' ');
+        for (int i = 1; i < _slots; i += 1) {
+            line.append(randomChar());
+        }
+        int size = _alphabet.size();
+        int[] order = new int[size];
+        for (int i = 0; i < size; i += 1) {
+            int j = _random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        int plugs = _random.nextInt(_plugs + 1);
+        for (int k = 0; k < plugs; k += 1) {
+            line.append(" (").append(_alphabet.toChar(order[2 * k]))
+                .append(_alphabet.toChar(order[2 * k + 1])).append(')');
+        }
+    }
+
+    /** Append a random message line to LINE. */
+    private void message(StringBuilder line) {
+        int len = _minLine + _random.nextInt(_maxLine - _minLine + 1);
+        for (int i = 0; i < len; i += 1) {
+            if (_grouped && i > 0 && i % GROUP == 0) {
+                line.append(' ');
+            }
+            char c = randomChar();
+            while (i == 0 && c == '*') {
+                c = randomChar();
+            }
+            line.append(c);
+        }
+    }
+
+    /** Return N of NAMES, chosen at random. */
+    private List<String> pick(List<String> names, int n) {
+        ArrayList<String> shuffled = new ArrayList<>(names);
+        Collections.shuffle(shuffled, _random);
+        return shuffled.subList(0, n);
+    }
+
+    /** Return a random character of my alphabet. */
+    private char randomChar() {
+        return _alphabet.toChar(_random.nextInt(_alphabet.size()));
+    }
+
+    /** Number of characters per group for --grouped. */
+    private static final int GROUP = 5;
+
+    /** Alphabet of the machine. */
+    private final Alphabet _alphabet;
+
+    /** Numbers of rotor slots and pawls of the machine. */
+    private final int _slots, _pawls;
+
+    /** Names of the machine's reflectors, moving rotors and other
+     *  rotors, in order. */
+    private final List<String> _reflectors = new ArrayList<>(),
+        _moving = new ArrayList<>(), _fixed = new ArrayList<>();
+
+    /** Source of all random choices. */
+    private final Random _random;
+
+    /** Shortest and longest message lines. */
+    private final int _minLine, _maxLine;
+
+    /** One line in about _every is a settings line. */
+    private final int _every;
+
+    /** Most plugboard pairs on a settings line. */
+    private final int _plugs;
+
+    /** True iff message characters are written in groups. */
+    private final boolean _grouped;
+}
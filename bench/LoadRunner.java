@@ -0,0 +1,319 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** Throughput regression gate for Main.  Usage:
+ *
+ *      java enigma.LoadRunner [--runs=N] [--threshold=PERCENT]
+ *          [--options=OPTIONS] [--update] CONFIG INPUT BASELINES
+ *
+ *  runs Main on CONFIG and INPUT, with the blank-separated command-line
+ *  OPTIONS if given, N times (default 3), each in a fresh JVM started
+ *  with the same JVM options as this one.  It reports the best rate in
+ *  message characters per second, as counted by --stats-file, and that
+ *  run's peak resident set size and total GC time, alongside the figures
+ *  recorded for the same input and options in the file BASELINES.  It
+ *  fails if the rate is more than PERCENT (default 10) percent below the
+ *  recorded one, or if none is recorded.  With --update, it records the
+ *  new figures instead.  Baselines belong to the machine they were
+ *  recorded on.
+ *  @author Rayan Taghizadeh
+ */
+public class LoadRunner {
+
+    /** Run the gate as described by ARGS (see above).  Internally, with
+     *  a first argument of --child, run Main on the remaining arguments
+     *  and print the peak RSS and GC time of this JVM. */
+    public static void main(String... args) {
+        if (args.length > 0 && args[0].equals("--child")) {
+            Main.main(Arrays.copyOfRange(args, 1, args.length));
+            System.out.printf("%d %d%n", peakRss(), gcTime());
+            return;
+        }
+        try {
+            CommandArgs options =
+                new CommandArgs("--runs=(\\d+) --threshold=(\\d+) "
+                                + "--options=(.+) --update --=(.*){1,3}",
+                                args);
+            if (!options.ok() || options.get("--").size() != 3) {
+                throw error("Usage: java enigma.LoadRunner [--runs=N] "
+                            + "[--threshold=PERCENT] [--options=OPTIONS] "
+                            + "[--update] CONFIG INPUT BASELINES");
+            }
+            List<String> files = options.get("--");
+            String extra = options.contains("--options")
+                ? options.getFirst("--options").trim() : "";
+            LoadRunner runner =
+                new LoadRunner(files.get(0), files.get(1), extra);
+            int runs = options.contains("--runs")
+                ? Integer.parseInt(options.getFirst("--runs")) : RUNS;
+            int threshold = options.contains("--threshold")
+                ? Integer.parseInt(options.getFirst("--threshold"))
+                : THRESHOLD;
+            Result best = null;
+            for (int k = 0; k < runs; k += 1) {
+                Result result = runner.run();
+                if (best == null || result.rate > best.rate) {
+                    best = result;
+                }
+            }
+            if (best == null) {
+                throw error("--runs must be positive");
+            }
+            if (!runner.check(best, Paths.get(files.get(2)), threshold,
+                              options.contains("--update"))) {
+                System.exit(1);
+            }
+            return;
+        } catch (EnigmaException | NumberFormatException
+                 | InvalidPathException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** The figures measured by one run. */
+    static class Result {
+        /** A result of RATE message characters per second, a peak
+         *  resident set of RSS kilobytes (or -1 if unknown), and GC
+         *  pauses totalling GC milliseconds. */
+        Result(double rate, long rss, long gc) {
+            this.rate = rate;
+            this.rss = rss;
+            this.gc = gc;
+        }
+
+        /** Message characters per second. */
+        final double rate;
+        /** Peak resident set size in kilobytes, or -1. */
+        final long rss;
+        /** Total GC time in milliseconds. */
+        final long gc;
+    }
+
+    /** A runner of Main on the configuration file CONFIG and the input
+     *  file INPUT, with the blank-separated command-line OPTIONS. */
+    LoadRunner(String config, String input, String options) {
+        _config = config;
+        _input = input;
+        _options = options.isEmpty() ? List.of()
+            : Arrays.asList(options.split("\\s+"));
+        Path name = Paths.get(input).getFileName();
+        _key = name + (options.isEmpty() ? ""
+                       : "[" + String.join(",", _options) + "]");
+    }
+
+    /** Run Main once in a fresh JVM and return what it measured. */
+    Result run() {
+        Path stats = null, output = null, errors = null;
+        try {
+            stats = Files.createTempFile("enigma-perf", ".json");
+            output = Files.createTempFile("enigma-perf", ".out");
+            errors = Files.createTempFile("enigma-perf", ".err");
+            ArrayList<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin",
+                                  "java").toString());
+            command.addAll(ManagementFactory.getRuntimeMXBean()
+                           .getInputArguments());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(LoadRunner.class.getName());
+            command.add("--child");
+            command.addAll(_options);
+            command.add("--stats-file=" + stats);
+            command.add(_config);
+            command.add(_input);
+            command.add(output.toString());
+            Process child = new ProcessBuilder(command)
+                .redirectError(errors.toFile()).start();
+            String line;
+            try (BufferedReader out = new BufferedReader(
+                     new InputStreamReader(child.getInputStream(),
+                                           StandardCharsets.UTF_8))) {
+                line = out.readLine();
+            }
+            if (child.waitFor() != 0 || line == null) {
+                throw error("Main failed on %s: %s", _input,
+                            Files.readString(errors).trim());
+            }
+            String json = Files.readString(stats);
+            double seconds = field(json, "elapsed_ns") * 1e-9;
+            String[] figures = line.trim().split(" ");
+            return new Result(field(json, "chars") / seconds,
+                              Long.parseLong(figures[0]),
+                              Long.parseLong(figures[1]));
+        } catch (IOException excp) {
+            throw error("could not run Main: %s", excp.getMessage());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("interrupted");
+        } finally {
+            for (Path file : new Path[] { stats, output, errors }) {
+                delete(file);
+            }
+        }
+    }
+
+    /** Report RESULT against the baseline recorded in the file
+     *  BASELINES, and return false iff its rate is more than THRESHOLD
+     *  percent below the baseline's or there is none.  If UPDATE,
+     *  record RESULT as the new baseline instead. */
+    boolean check(Result result, Path baselines, int threshold,
+                  boolean update) {
+        Map<String, Result> recorded = readBaselines(baselines);
+        Result base = recorded.get(_key);
+        System.out.printf("%s: %,.0f chars/s, peak RSS %s, GC %d ms%n",
+                          _key, result.rate, rss(result.rss), result.gc);
+        if (update) {
+            recorded.put(_key, result);
+            writeBaselines(baselines, recorded);
+            System.out.printf("  recorded as the baseline in %s%n",
+                              baselines);
+            return true;
+        }
+        if (base == null) {
+            System.out.printf("  FAILED: no baseline in %s%n", baselines);
+            return false;
+        }
+        double change = 100 * (result.rate / base.rate - 1);
+        System.out.printf("  baseline %,.0f chars/s (%+.1f%%), peak RSS %s, "
+                          + "GC %d ms%n", base.rate, change, rss(base.rss),
+                          base.gc);
+        if (change < -threshold) {
+            System.out.printf("  FAILED: throughput fell more than %d%%%n",
+                              threshold);
+            return false;
+        }
+        return true;
+    }
+
+    /** Return the baselines recorded in the file BASELINES, indexed by
+     *  key, or none if it does not exist.  Each line holds a key, a
+     *  rate, a peak RSS and a GC time; lines starting with '#' are
+     *  comments. */
+    private static Map<String, Result> readBaselines(Path baselines) {
+        LinkedHashMap<String, Result> result = new LinkedHashMap<>();
+        if (!Files.exists(baselines)) {
+            return result;
+        }
+        try {
+            for (String line : Files.readAllLines(baselines)) {
+                String[] words = line.trim().split("\\s+");
+                if (line.startsWith("#") || words.length != 4) {
+                    continue;
+                }
+                result.put(words[0],
+                           new Result(Double.parseDouble(words[1]),
+                                      Long.parseLong(words[2]),
+                                      Long.parseLong(words[3])));
+            }
+        } catch (IOException | NumberFormatException excp) {
+            throw error("could not read %s", baselines);
+        }
+        return result;
+    }
+
+    /** Write BASELINES, indexed by key, to the file FILE. */
+    private static void writeBaselines(Path file,
+                                       Map<String, Result> baselines) {
+        StringBuilder text = new StringBuilder(
+            "# input[options] chars/s peak-RSS-KB GC-ms\n");
+        for (Map.Entry<String, Result> entry : baselines.entrySet()) {
+            Result result = entry.getValue();
+            text.append(String.format("%s %.0f %d %d%n", entry.getKey(),
+                                      result.rate, result.rss, result.gc));
+        }
+        try {
+            Files.writeString(file, text);
+        } catch (IOException excp) {
+            throw error("could not write %s", file);
+        }
+    }
+
+    /** Return the numeric field NAME of the JSON object JSON. */
+    private static long field(String json, String name) {
+        Matcher m = Pattern.compile("\"" + name + "\":(\\d+)").matcher(json);
+        if (!m.find()) {
+            throw error("no %s in statistics", name);
+        }
+        return Long.parseLong(m.group(1));
+    }
+
+    /** Return the peak resident set size of this JVM in kilobytes, or -1
+     *  if the system does not say. */
+    private static long peakRss() {
+        try {
+            for (String line
+                     : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException excp) {
+            /* Not Linux; fall through. */
+        }
+        return -1;
+    }
+
+    /** Return the total time spent in GC by this JVM, in
+     *  milliseconds. */
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc
+                 : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /** Return the description of a peak RSS of KB kilobytes. */
+    private static String rss(long kb) {
+        return kb < 0 ? "unknown" : String.format("%,d KB", kb);
+    }
+
+    /** Delete FILE, if it is not null, ignoring failures. */
+    private static void delete(Path file) {
+        try {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException excp) {
+            /* Only a temporary file. */
+        }
+    }
+
+    /** Default number of runs. */
+    private static final int RUNS = 3;
+
+    /** Default percentage by which throughput may fall. */
+    private static final int THRESHOLD = 10;
+
+    /** Configuration and input files. */
+    private final String _config, _input;
+
+    /** Command-line options for Main. */
+    private final List<String> _options;
+
+    /** Name of my input and options in baseline files. */
+    private final String _key;
+}
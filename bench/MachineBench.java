@@ -0,0 +1,72 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Machine.convert(String) on whole messages.  One
+ *  operation converts one message of messageLength characters; the
+ *  machine is not reset between messages.
+ *  @author Rayan Taghizadeh
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MachineBench {
+
+    /** Size of the machine's alphabet. */
+    @Param({ "26", "62" })
+    public int alphabetSize;
+
+    /** Number of rotor slots. */
+    @Param({ "3", "5", "8" })
+    public int numRotors;
+
+    /** Characters per message. */
+    @Param({ "16", "1024", "65536" })
+    public int messageLength;
+
+    /** Bytes of substitution cache, or 0 for none. */
+    @Param({ "0", "16777216" })
+    public long cacheBytes;
+
+    /** Create and set up the machine and the message. */
+    @Setup
+    public void setUp() {
+        BenchConfig config = new BenchConfig(alphabetSize, numRotors, 1);
+        Random random = new Random(2);
+        _machine = config.machine();
+        Main.setUp(_machine, config.settings(alphabetSize / 4, random));
+        if (cacheBytes > 0) {
+            _machine.setCache(new SubstitutionCache(alphabetSize,
+                                                    cacheBytes));
+        }
+        _message = config.message(messageLength, random);
+    }
+
+    /** Return the conversion of the message. */
+    @Benchmark
+    public String convert() {
+        return _machine.convert(_message);
+    }
+
+    /** Machine measured. */
+    private Machine _machine;
+
+    /** Message converted. */
+    private String _message;
+}
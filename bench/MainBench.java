@@ -0,0 +1,114 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end benchmarks of Main: one operation runs the program on a
+ *  configuration file and an input file of inputChars message
+ *  characters, writing an output file, just as from the command line.
+ *  Every fork starts with fresh command-line options.
+ *  @author Rayan Taghizadeh
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MainBench {
+
+    /** Characters per line of message input. */
+    static final int LINE_LENGTH = 60;
+
+    /** Size of the machine's alphabet. */
+    @Param({ "26", "62" })
+    public int alphabetSize;
+
+    /** Number of rotor slots. */
+    @Param({ "5" })
+    public int numRotors;
+
+    /** Total message characters in the input. */
+    @Param({ "1048576" })
+    public int inputChars;
+
+    /** Message lines between settings lines. */
+    @Param({ "1", "16", "1024" })
+    public int linesPerSetting;
+
+    /** Command-line options, separated by blanks, or "none". */
+    @Param({ "none", "--cache=16M", "--jobs=4" })
+    public String options;
+
+    /** Write the configuration and input files. */
+    @Setup
+    public void setUp() throws IOException {
+        BenchConfig config = new BenchConfig(alphabetSize, numRotors, 1);
+        Random random = new Random(2);
+        _dir = Files.createTempDirectory("enigma-bench");
+        Path conf = _dir.resolve("bench.conf");
+        Path input = _dir.resolve("bench.in");
+        Path output = _dir.resolve("bench.out");
+        Files.write(conf, config.text().getBytes());
+        try (Writer in = Files.newBufferedWriter(input)) {
+            for (int n = 0; n * LINE_LENGTH < inputChars; n += 1) {
+                if (n % linesPerSetting == 0) {
+                    in.write(config.settings(alphabetSize / 4, random));
+                    in.write('\n');
+                }
+                in.write(config.message(LINE_LENGTH, random));
+                in.write('\n');
+            }
+        }
+        ArrayList<String> args = new ArrayList<>();
+        if (!options.equals("none")) {
+            for (String option : options.split(" ")) {
+                args.add(option);
+            }
+        }
+        args.add(conf.toString());
+        args.add(input.toString());
+        args.add(output.toString());
+        _args = args.toArray(new String[0]);
+    }
+
+    /** Remove the files written by setUp and the benchmark. */
+    @TearDown
+    public void tearDown() throws IOException {
+        for (String name : new String[] { "bench.conf", "bench.in",
+                                          "bench.out" }) {
+            Files.deleteIfExists(_dir.resolve(name));
+        }
+        Files.deleteIfExists(_dir);
+    }
+
+    /** Run the program once over the input. */
+    @Benchmark
+    public void process() {
+        Main.main(_args);
+    }
+
+    /** Directory holding the benchmark's files. */
+    private Path _dir;
+
+    /** Command-line arguments. */
+    private String[] _args;
+}
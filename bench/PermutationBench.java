@@ -0,0 +1,92 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of single Permutation lookups.  Each invocation performs
+ *  BATCH lookups of random indices, and is reported as that many
+ *  operations.
+ *  @author Rayan Taghizadeh
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermutationBench {
+
+    /** Lookups per invocation. */
+    static final int BATCH = 1024;
+
+    /** Size of the alphabet permuted. */
+    @Param({ "10", "26", "62" })
+    public int alphabetSize;
+
+    /** Create the permutation and its inputs. */
+    @Setup
+    public void setUp() {
+        BenchConfig config = new BenchConfig(alphabetSize, 3, 1);
+        _perm = config.permutation();
+        Random random = new Random(2);
+        for (int i = 0; i < BATCH; i += 1) {
+            _indices[i] = random.nextInt(alphabetSize);
+            _chars[i] = config.alphabet().toChar(_indices[i]);
+        }
+    }
+
+    /** Return the sum of the images of the indices. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int permute() {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i += 1) {
+            sum += _perm.permute(_indices[i]);
+        }
+        return sum;
+    }
+
+    /** Return the sum of the preimages of the indices. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int invert() {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i += 1) {
+            sum += _perm.invert(_indices[i]);
+        }
+        return sum;
+    }
+
+    /** Return the sum of the images of the characters. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int permuteChar() {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i += 1) {
+            sum += _perm.permute(_chars[i]);
+        }
+        return sum;
+    }
+
+    /** Permutation measured. */
+    private Permutation _perm;
+
+    /** Inputs as indices. */
+    private final int[] _indices = new int[BATCH];
+
+    /** Inputs as characters. */
+    private final char[] _chars = new char[BATCH];
+}
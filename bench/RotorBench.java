@@ -0,0 +1,80 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of single passes through a rotor in either direction, at
+ *  random settings.  Each invocation performs BATCH conversions, and is
+ *  reported as that many operations.
+ *  @author Rayan Taghizadeh
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RotorBench {
+
+    /** Conversions per invocation. */
+    static final int BATCH = 1024;
+
+    /** Size of the rotor's alphabet. */
+    @Param({ "10", "26", "62" })
+    public int alphabetSize;
+
+    /** Create the rotor and its inputs. */
+    @Setup
+    public void setUp() {
+        _rotor = new BenchConfig(alphabetSize, 3, 1).rotor();
+        Random random = new Random(2);
+        for (int i = 0; i < BATCH; i += 1) {
+            _indices[i] = random.nextInt(alphabetSize);
+            _settings[i] = random.nextInt(alphabetSize);
+        }
+    }
+
+    /** Return the sum of the forward conversions of the inputs. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int convertForward() {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i += 1) {
+            sum += _rotor.convertForward(_indices[i], _settings[i]);
+        }
+        return sum;
+    }
+
+    /** Return the sum of the backward conversions of the inputs. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int convertBackward() {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i += 1) {
+            sum += _rotor.convertBackward(_indices[i], _settings[i]);
+        }
+        return sum;
+    }
+
+    /** Rotor measured. */
+    private Rotor _rotor;
+
+    /** Inputs, as indices. */
+    private final int[] _indices = new int[BATCH];
+
+    /** Rotor settings for each input. */
+    private final int[] _settings = new int[BATCH];
+}
@@ -0,0 +1,73 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Main.setUp, which applies one settings line to a
+ *  machine.  Successive operations cycle through LINES random settings
+ *  lines.
+ *  @author Rayan Taghizadeh
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetUpBench {
+
+    /** Number of distinct settings lines. */
+    static final int LINES = 64;
+
+    /** Size of the machine's alphabet. */
+    @Param({ "26", "62" })
+    public int alphabetSize;
+
+    /** Number of rotor slots. */
+    @Param({ "3", "5", "8" })
+    public int numRotors;
+
+    /** Plugboard pairs per settings line. */
+    @Param({ "0", "10" })
+    public int plugs;
+
+    /** Create the machine and the settings lines. */
+    @Setup
+    public void setUp() {
+        BenchConfig config = new BenchConfig(alphabetSize, numRotors, 1);
+        Random random = new Random(2);
+        _machine = config.machine();
+        for (int i = 0; i < LINES; i += 1) {
+            _lines[i] = config.settings(plugs, random);
+        }
+    }
+
+    /** Set up the machine from the next settings line and return it. */
+    @Benchmark
+    public Machine setUpMachine() {
+        Main.setUp(_machine, _lines[_next]);
+        _next = (_next + 1) % LINES;
+        return _machine;
+    }
+
+    /** Machine set up. */
+    private Machine _machine;
+
+    /** Settings lines. */
+    private final String[] _lines = new String[LINES];
+
+    /** Index of the next settings line to use. */
+    private int _next;
+}